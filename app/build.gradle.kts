@@ -60,6 +60,8 @@ dependencies {
     // ✅ Activity & Lifecycle (recommended for Material3)
     implementation("androidx.activity:activity:1.9.2")
     implementation("androidx.lifecycle:lifecycle-runtime:2.8.5")
+    implementation("androidx.lifecycle:lifecycle-viewmodel:2.8.5")
+    implementation("androidx.lifecycle:lifecycle-livedata:2.8.5")
 
     // ✅ Image Cropping Library
     implementation("com.github.yalantis:ucrop:2.2.8")
@@ -0,0 +1,114 @@
+package com.AbdulPaito.medtrack;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.view.View;
+
+import androidx.lifecycle.Lifecycle;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
+import com.AbdulPaito.medtrack.database.DatabaseHelper;
+import com.AbdulPaito.medtrack.database.Medicine;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.action.ViewActions.click;
+import static androidx.test.espresso.matcher.RootMatchers.isDialog;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Opens the data-heavy screens with StrictMode set to crash on main-thread disk access.
+ * If any of them queries SQLite on the UI thread the instrumentation process dies and the test fails.
+ * The reminder list is also tapped, since marking a dose writes history, alarms and the medicine.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainThreadDiskAccessTest {
+
+    @Before
+    public void enableStrictMode() {
+        InstrumentationRegistry.getInstrumentation()
+                .runOnMainSync(DatabaseExecutor::enableStrictMainThreadMode);
+    }
+
+    @Test
+    public void statisticsScreen() {
+        launchAndSettle(StatisticsActivity.class);
+    }
+
+    @Test
+    public void historyScreen() {
+        launchAndSettle(HistoryActivity.class);
+    }
+
+    @Test
+    public void calendarScreen() {
+        launchAndSettle(CalendarActivity.class);
+    }
+
+    @Test
+    public void reminderListScreen() {
+        launchAndSettle(ReminderListActivity.class);
+    }
+
+    @Test
+    public void markTakenFromReminderList() {
+        // Seeded from the test thread; StrictMode only watches the main thread
+        DatabaseHelper db = DatabaseHelper.getInstance(
+                InstrumentationRegistry.getInstrumentation().getTargetContext());
+        int id = (int) db.addMedicine(new Medicine("StrictMode check", "1 tablet", null,
+                "08:00", "01/01/2025", "Daily"));
+
+        try (ActivityScenario<ReminderListActivity> scenario = ActivityScenario.launch(ReminderListActivity.class)) {
+            scenario.moveToState(Lifecycle.State.RESUMED);
+            waitFor(() -> {
+                boolean[] shown = new boolean[1];
+                scenario.onActivity(activity -> shown[0] = cardOf(activity, id) != null);
+                return shown[0];
+            });
+            scenario.onActivity(activity -> cardOf(activity, id)
+                    .findViewById(R.id.btn_mark_taken).performClick());
+            onView(withText("Yes")).inRoot(isDialog()).perform(click());
+
+            // The write runs on a database thread; the card is removed straight away
+            waitFor(() -> db.getMedicineById(id) == null);
+            assertNull(db.getMedicineById(id));
+        } finally {
+            db.deleteMedicine(id);
+        }
+    }
+
+    private static View cardOf(ReminderListActivity activity, int medicineId) {
+        RecyclerView list = activity.findViewById(R.id.recycler_view_medicines);
+        RecyclerView.ViewHolder holder = list.findViewHolderForItemId(medicineId);
+        return holder != null ? holder.itemView : null;
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private static void waitFor(Condition condition) {
+        long deadline = SystemClock.uptimeMillis() + 5_000;
+        while (!condition.met()) {
+            assertTrue("timed out", SystemClock.uptimeMillis() < deadline);
+            SystemClock.sleep(50);
+        }
+    }
+
+    private <A extends Activity> void launchAndSettle(Class<A> activityClass) {
+        try (ActivityScenario<A> scenario = ActivityScenario.launch(activityClass)) {
+            scenario.moveToState(Lifecycle.State.RESUMED);
+            // Let queued query results reach the main looper before tearing down
+            InstrumentationRegistry.getInstrumentation().waitForIdleSync();
+        }
+    }
+}
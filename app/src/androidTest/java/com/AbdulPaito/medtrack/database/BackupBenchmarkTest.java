@@ -0,0 +1,365 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.AbdulPaito.medtrack.HistoryItem;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Streaming backup/restore throughput. Results are written to logcat under the
+ * "BackupBenchmark" tag; run with:
+ * ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.AbdulPaito.medtrack.database.BackupBenchmarkTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class BackupBenchmarkTest {
+
+    private static final String TAG = "BackupBenchmark";
+    private static final String DB_NAME = "medtrack_backup_benchmark.db";
+    private static final String RESTORE_DB_NAME = "medtrack_restore_benchmark.db";
+    private static final int HISTORY_ROWS = 100_000;
+    private static final int LEGACY_ROWS = 5_000; // the per-row path is too slow for 100k
+
+    private Context context;
+    private DatabaseHelper source;
+    private DatabaseHelper target;
+    private File backupFile;
+    private File binaryFile;
+    private File snapshotFile;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        context.deleteDatabase(RESTORE_DB_NAME);
+        source = new DatabaseHelper(context, DB_NAME);
+        target = new DatabaseHelper(context, RESTORE_DB_NAME);
+        backupFile = new File(context.getCacheDir(), "backup_benchmark.json");
+        binaryFile = new File(context.getCacheDir(), "backup_benchmark" + BinaryBackup.FILE_EXTENSION);
+        snapshotFile = new File(context.getCacheDir(), "backup_benchmark" + SnapshotBackup.FILE_EXTENSION);
+    }
+
+    @After
+    public void tearDown() {
+        source.close();
+        target.close();
+        context.deleteDatabase(DB_NAME);
+        context.deleteDatabase(RESTORE_DB_NAME);
+        backupFile.delete();
+        binaryFile.delete();
+        snapshotFile.delete();
+    }
+
+    @Test
+    public void restoreThroughputAt100kRows() throws IOException {
+        seed(source, HISTORY_ROWS);
+
+        long start = System.nanoTime();
+        int written;
+        try (OutputStream out = new FileOutputStream(backupFile)) {
+            written = new BackupWriter(source).write(out, null);
+        }
+        long writeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        BackupReader.Result result;
+        try (InputStream in = new FileInputStream(backupFile)) {
+            result = new BackupReader(target).read(in, null);
+        }
+        long readNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("%d rows, %d KB - write: %.0f rows/s, restore: %.0f rows/s",
+                written, backupFile.length() / 1024,
+                written / (writeNanos / 1e9), written / (readNanos / 1e9)));
+
+        assertEquals(HISTORY_ROWS, result.history);
+        assertEquals(source.getHistoryCount(null), target.getHistoryCount(null));
+        assertEquals(source.getStatsSnapshot().getTakenCount(), target.getStatsSnapshot().getTakenCount());
+        assertEquals(source.getStatsSnapshot().getBestStreak(), target.getStatsSnapshot().getBestStreak());
+        // Oldest-first export keeps newest-first paging in the original order
+        assertEquals(source.getHistoryPage(null, Long.MAX_VALUE, 1).get(0).getTakenAt(),
+                target.getHistoryPage(null, Long.MAX_VALUE, 1).get(0).getTakenAt());
+    }
+
+    @Test
+    public void binaryVersusJsonAt100kRows() throws IOException {
+        seed(source, HISTORY_ROWS);
+
+        long start = System.nanoTime();
+        try (OutputStream out = new FileOutputStream(backupFile)) {
+            new BackupWriter(source).write(out, null);
+        }
+        long jsonWriteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int written;
+        try (OutputStream out = new FileOutputStream(binaryFile)) {
+            written = new BinaryBackup(source).write(out, null);
+        }
+        long binaryWriteNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        try (InputStream in = new FileInputStream(backupFile)) {
+            new BackupReader(target).read(in, null);
+        }
+        long jsonReadNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        BackupReader.Result result;
+        try (InputStream in = new FileInputStream(binaryFile)) {
+            result = new BinaryBackup(target).read(in, null);
+        }
+        long binaryReadNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("%d rows - json: %d KB, write %.0f ms, restore %.0f ms"
+                        + " | binary: %d KB, write %.0f ms, restore %.0f ms",
+                written, backupFile.length() / 1024, jsonWriteNanos / 1e6, jsonReadNanos / 1e6,
+                binaryFile.length() / 1024, binaryWriteNanos / 1e6, binaryReadNanos / 1e6));
+
+        assertEquals(HISTORY_ROWS, result.history);
+        assertTrue(binaryFile.length() < backupFile.length());
+        assertEquals(source.getHistoryCount(null), target.getHistoryCount(null));
+        assertEquals(source.getStatsSnapshot().getTakenCount(), target.getStatsSnapshot().getTakenCount());
+        assertEquals(source.getStatsSnapshot().getBestStreak(), target.getStatsSnapshot().getBestStreak());
+        // Ids are kept too, so the newest row is the same row
+        HistoryItem newest = source.getHistoryPage(null, Long.MAX_VALUE, 1).get(0);
+        HistoryItem restored = target.getHistoryPage(null, Long.MAX_VALUE, 1).get(0);
+        assertEquals(newest.getId(), restored.getId());
+        assertEquals(newest.getTakenAt(), restored.getTakenAt());
+    }
+
+    @Test
+    public void corruptBinaryBackupRollsBack() throws IOException {
+        seed(source, 1_000);
+        seed(target, 100);
+        int before = target.getHistoryCount(null);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BinaryBackup(source).write(out, null);
+        byte[] bytes = out.toByteArray();
+        bytes[bytes.length - 2] ^= 0x01; // inside the deflated checksum
+        try {
+            new BinaryBackup(target).read(new ByteArrayInputStream(bytes), null);
+            fail("corrupt backup was accepted");
+        } catch (IOException expected) {
+            // rolled back
+        }
+        assertEquals(before, target.getHistoryCount(null));
+    }
+
+    @Test
+    public void incrementalChainRestoresLatestState() throws IOException {
+        int aspirin = (int) source.addMedicine(new Medicine("Aspirin", "1 tablet", null, "08:00", "01/01/2025", "Daily"));
+        int vitamin = (int) source.addMedicine(new Medicine("Vitamin D", "1 capsule", null, "09:00", "01/01/2025", "Daily"));
+        seed(source, HISTORY_ROWS);
+        IncrementalBackup incremental = new IncrementalBackup(source);
+        long now = System.currentTimeMillis();
+
+        byte[] base = writeSegment(incremental);
+
+        // A day of doses
+        for (int i = 0; i < 24; i++) {
+            source.addHistory(aspirin, "Aspirin", "01/01/2025", "08:00", "Taken", now + i * 60_000L);
+        }
+        byte[] day = writeSegment(incremental);
+
+        // A medicine deleted (its history keeps a NULL medicine_id), a few more doses
+        source.deleteMedicine(vitamin);
+        for (int i = 0; i < 5; i++) {
+            source.addHistory(aspirin, "Aspirin", "02/01/2025", "08:00", "Missed", now + (30 + i) * 60_000L);
+        }
+        byte[] edited = writeSegment(incremental);
+
+        // History wiped, then started again
+        source.deleteAllHistory();
+        for (int i = 0; i < 3; i++) {
+            source.addHistory(aspirin, "Aspirin", "03/01/2025", "08:00", "Taken", now + (60 + i) * 60_000L);
+        }
+        byte[] wiped = writeSegment(incremental);
+
+        Log.i(TAG, String.format("incremental: base %d KB, one day of doses %d bytes",
+                base.length / 1024, day.length));
+        assertTrue(day.length < base.length / 100);
+
+        // A gap in the chain is refused before anything is touched
+        seed(target, 10);
+        try {
+            new IncrementalBackup(target).restore(sources(base, edited), null);
+            fail("chain with a missing delta was accepted");
+        } catch (IOException expected) {
+            assertEquals(10, target.getHistoryCount(null));
+        }
+
+        // Picked out of order, applied in order
+        BackupReader.Result result = new IncrementalBackup(target).restore(sources(edited, wiped, base, day), null);
+        assertEquals(HISTORY_ROWS + 24 + 5 + 3, result.history); // rows applied, wiped ones included
+        assertEquals(source.getHistoryCount(null), target.getHistoryCount(null));
+        assertEquals(source.getMedicineCount(), target.getMedicineCount());
+        assertEquals(source.getStatsSnapshot().getTakenCount(), target.getStatsSnapshot().getTakenCount());
+        assertEquals(source.getStatsSnapshot().getBestStreak(), target.getStatsSnapshot().getBestStreak());
+        HistoryItem newest = source.getHistoryPage(null, Long.MAX_VALUE, 1).get(0);
+        HistoryItem restored = target.getHistoryPage(null, Long.MAX_VALUE, 1).get(0);
+        assertEquals(newest.getId(), restored.getId());
+        // The restored database starts a chain of its own
+        assertNull(target.getLastBackupSegment());
+    }
+
+    private static byte[] writeSegment(IncrementalBackup incremental) throws IOException {
+        BackupSegment segment = incremental.nextSegment();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        incremental.write(segment, out, null);
+        incremental.commit(segment);
+        return out.toByteArray();
+    }
+
+    private static List<IncrementalBackup.Source> sources(byte[]... files) {
+        List<IncrementalBackup.Source> sources = new ArrayList<>();
+        for (byte[] file : files) {
+            sources.add(() -> new ByteArrayInputStream(file));
+        }
+        return sources;
+    }
+
+    @Test
+    public void snapshotVersusJsonAt100kRows() throws IOException {
+        seed(source, HISTORY_ROWS);
+
+        long start = System.nanoTime();
+        try (OutputStream out = new FileOutputStream(backupFile)) {
+            new BackupWriter(source).write(out, null);
+        }
+        long jsonNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long bytes;
+        try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+            bytes = new SnapshotBackup(context, source).write(out);
+        }
+        long snapshotNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        BackupReader.Result result;
+        try (InputStream in = new FileInputStream(snapshotFile)) {
+            result = new SnapshotBackup(context, target).restore(in, null);
+        }
+        long restoreNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("snapshot: %d KB in %.0f ms (%.0f MB/s), json: %d KB in %.0f ms,"
+                        + " snapshot restore %.0f ms",
+                bytes / 1024, snapshotNanos / 1e6, bytes / (1024.0 * 1024.0) / (snapshotNanos / 1e9),
+                backupFile.length() / 1024, jsonNanos / 1e6, restoreNanos / 1e6));
+
+        assertEquals(snapshotFile.length(), bytes);
+        assertEquals(HISTORY_ROWS, result.history);
+        assertEquals(source.getHistoryCount(null), target.getHistoryCount(null));
+        assertEquals(source.getStatsSnapshot().getBestStreak(), target.getStatsSnapshot().getBestStreak());
+    }
+
+    @Test
+    public void olderSnapshotIsMigrated() throws IOException {
+        seed(source, 100);
+        try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+            new SnapshotBackup(context, source).write(out);
+        }
+        // Turn it into a v13 database: no backup_chain table yet
+        SQLiteDatabase old = SQLiteDatabase.openDatabase(snapshotFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        old.execSQL("DROP TABLE backup_chain");
+        old.setVersion(13);
+        old.close();
+
+        try (InputStream in = new FileInputStream(snapshotFile)) {
+            new SnapshotBackup(context, target).restore(in, null);
+        }
+        assertEquals(100, target.getHistoryCount(null));
+    }
+
+    @Test
+    public void newerSnapshotIsRejected() throws IOException {
+        seed(source, 100);
+        seed(target, 10);
+        try (FileOutputStream out = new FileOutputStream(snapshotFile)) {
+            new SnapshotBackup(context, source).write(out);
+        }
+        SQLiteDatabase newer = SQLiteDatabase.openDatabase(snapshotFile.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        newer.setVersion(DatabaseHelper.DATABASE_VERSION + 1);
+        newer.close();
+
+        try (InputStream in = new FileInputStream(snapshotFile)) {
+            new SnapshotBackup(context, target).restore(in, null);
+            fail("snapshot from a newer schema was accepted");
+        } catch (IOException expected) {
+            assertEquals(10, target.getHistoryCount(null));
+        }
+    }
+
+    @Test
+    public void legacyPerRowRestoreForComparison() {
+        // Old restore: one addHistory() - and one implicit transaction - per row
+        long start = System.nanoTime();
+        for (int i = 0; i < LEGACY_ROWS; i++) {
+            target.addHistory("Medicine " + (i % 20), "01/01/2025", "09:00", i % 10 == 3 ? "Missed" : "Taken");
+        }
+        long nanos = System.nanoTime() - start;
+        Log.i(TAG, String.format("legacy per-row restore: %.0f rows/s", LEGACY_ROWS / (nanos / 1e9)));
+    }
+
+    @Test
+    public void brokenBackupRollsBack() {
+        seed(target, 100);
+        int before = target.getHistoryCount(null);
+
+        String truncated = "{\"medicines\": [], \"history\": [{\"medicine\": \"A\", \"date\": \"2025-01-01\","
+                + " \"time\": \"09:00\", \"status\": \"Taken\"}, {\"medicine\": ";
+        try {
+            new BackupReader(target).read(
+                    new ByteArrayInputStream(truncated.getBytes(StandardCharsets.UTF_8)), null);
+            fail("truncated backup was accepted");
+        } catch (IOException expected) {
+            // rolled back
+        }
+        assertEquals(before, target.getHistoryCount(null));
+        assertTrue(before > 0);
+    }
+
+    private static void seed(DatabaseHelper helper, int rows) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < rows; i++) {
+                // Roughly 1 in 10 doses missed, spread over one dose per hour
+                String status = i % 10 == 3 ? "Missed" : "Taken";
+                helper.addHistory(0, "Medicine " + (i % 20), "01/01/2025", "09:00", status,
+                        now - (rows - i) * 3_600_000L);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Rough on-device benchmarks for DatabaseHelper. Results are written to logcat
+ * under the "DatabaseBenchmark" tag; run with:
+ * ./gradlew connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.AbdulPaito.medtrack.database.DatabaseBenchmarkTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseBenchmarkTest {
+
+    private static final String TAG = "DatabaseBenchmark";
+    private static final String DB_NAME = "medtrack_benchmark.db";
+    private static final int ITERATIONS = 200;
+
+    private Context context;
+    private DatabaseHelper helper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+        helper = new DatabaseHelper(context, DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void sharedConnectionVersusOpenClosePerCall() {
+        // Warm up both paths once so schema creation isn't measured
+        helper.addHistory("Warmup", "09:00", "Taken");
+        helper.getAdherenceRate();
+
+        // Old pattern: every call opened the file and closed it again
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            helper.addHistory("Paracetamol", "09:00", "Taken");
+            helper.close();
+            helper.getAdherenceRate();
+            helper.close();
+        }
+        long openCloseNanos = System.nanoTime() - start;
+
+        // New pattern: the connection stays open between calls
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            helper.addHistory("Paracetamol", "09:00", "Taken");
+            helper.getAdherenceRate();
+        }
+        long sharedNanos = System.nanoTime() - start;
+
+        double openCloseUs = openCloseNanos / 1000.0 / (ITERATIONS * 2);
+        double sharedUs = sharedNanos / 1000.0 / (ITERATIONS * 2);
+        Log.i(TAG, String.format("open/close per call: %.1f us/op, shared connection: %.1f us/op",
+                openCloseUs, sharedUs));
+
+        // Timings are only logged: a wall-clock comparison is noise under CI load or throttling
+        assertEquals(1 + ITERATIONS * 2, helper.getHistoryCount(null));
+    }
+
+    @Test
+    public void statsSnapshotAt10kRows() {
+        benchmarkStats(10_000);
+    }
+
+    @Test
+    public void statsSnapshotAt100kRows() {
+        benchmarkStats(100_000);
+    }
+
+    private void benchmarkStats(int rows) {
+        seedHistory(rows);
+        int runs = 20;
+
+        // Old dashboard + export sequence: one query (and scan) per number
+        long start = System.nanoTime();
+        int legacyTaken = 0;
+        for (int i = 0; i < runs; i++) {
+            helper.getAdherenceRate();
+            helper.getCurrentStreak();
+            legacyTaken = helper.getTotalTakenCount();
+            helper.getTotalMissedCount();
+            helper.getMedicineCount();
+        }
+        long legacyNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        StatsSnapshot snapshot = null;
+        for (int i = 0; i < runs; i++) {
+            snapshot = helper.getStatsSnapshot();
+        }
+        long snapshotNanos = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("%d rows - legacy sequence: %.2f ms, snapshot: %.2f ms",
+                rows, legacyNanos / 1e6 / runs, snapshotNanos / 1e6 / runs));
+        assertEquals(legacyTaken, snapshot.getTakenCount());
+        assertEquals(helper.getCurrentStreak(), snapshot.getCurrentStreak());
+    }
+
+    private void seedHistory(int rows) {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        long now = System.currentTimeMillis();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < rows; i++) {
+                // Roughly 1 in 10 doses missed, spread over one dose per hour
+                String status = i % 10 == 3 ? "Missed" : "Taken";
+                helper.addHistory(0, "Medicine " + (i % 20), "01/01/2025", "09:00", status,
+                        now - (rows - i) * 3_600_000L);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+}
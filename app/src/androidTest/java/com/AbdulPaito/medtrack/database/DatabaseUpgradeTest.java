@@ -0,0 +1,97 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * onUpgrade() steps added after v14 (empty streak sentinel, receiver_latency, whole-day hour
+ * intervals) run from every older version. The steps are cumulative "if (oldVersion < N)"
+ * blocks with no early return above v4, so starting from v11 - the oldest version whose
+ * steps can rerun on a current schema - exercises the same blocks as v5 to v10 would.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DatabaseUpgradeTest {
+
+    private static final String TAG = "DatabaseUpgradeTest";
+    private static final String DB_NAME = "medtrack_upgrade_test.db";
+    private static final String OLD_DAILY_SPEC = "every=1;times=08:00";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void laterStepsRunFromEveryOlderVersion() {
+        for (int version = 11; version < DatabaseHelper.DATABASE_VERSION; version++) {
+            context.deleteDatabase(DB_NAME);
+            long medicineId = seedOldSchema(version);
+
+            DatabaseHelper upgraded = new DatabaseHelper(context, DB_NAME);
+            try {
+                SQLiteDatabase db = upgraded.getWritableDatabase(); // runs onUpgrade(version, current)
+                assertEquals(DatabaseHelper.DATABASE_VERSION, db.getVersion());
+
+                if (version < 15) {
+                    assertEquals("v" + version, StreakState.EMPTY, lastStreakDay(db));
+                }
+                upgraded.getReceiverLatency("2000-01-01"); // throws if the table is missing
+                if (version < 17) {
+                    Medicine medicine = upgraded.getMedicineById((int) medicineId);
+                    assertEquals("v" + version, 2, medicine.getRecurrence().getIntervalDays());
+                }
+                Log.d(TAG, "✅ Upgraded from v" + version);
+            } finally {
+                upgraded.close();
+            }
+        }
+    }
+
+    // A current database turned back into what an older version left behind
+    private long seedOldSchema(int version) {
+        DatabaseHelper helper = new DatabaseHelper(context, DB_NAME);
+        long medicineId = helper.addMedicine(new Medicine("Med", "1 tab", "",
+                "08:00", "2025-10-20", "Every 48 hours"));
+        SQLiteDatabase db = helper.getWritableDatabase();
+        if (version < 15) {
+            db.execSQL("UPDATE streak SET last_day = 0, run_before = 0, current_run = 0");
+        }
+        if (version < 16) {
+            db.execSQL("DROP TABLE receiver_latency");
+        }
+        if (version < 17) {
+            db.execSQL("UPDATE medicines SET recurrence = ? WHERE id = ?",
+                    new Object[]{OLD_DAILY_SPEC, medicineId});
+        }
+        db.setVersion(version);
+        helper.close();
+        return medicineId;
+    }
+
+    private static long lastStreakDay(SQLiteDatabase db) {
+        try (Cursor cursor = db.rawQuery("SELECT last_day FROM streak WHERE id = 1", null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+}
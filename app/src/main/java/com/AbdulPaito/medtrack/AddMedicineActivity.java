@@ -12,6 +12,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 import com.AbdulPaito.medtrack.database.Medicine;
+import com.AbdulPaito.medtrack.database.Recurrence;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.android.material.textfield.TextInputEditText;
 import java.util.Calendar;
@@ -43,7 +44,7 @@ public class AddMedicineActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        databaseHelper = new DatabaseHelper(this);
+        databaseHelper = DatabaseHelper.getInstance(this);
         initViews();
         setupButtons();
         setupFrequencyListener();
@@ -166,6 +167,7 @@ public class AddMedicineActivity extends AppCompatActivity {
                 selectedDate,
                 frequency
         );
+        medicine.setRecurrence(Recurrence.fromFrequency(frequency, reminderTime, selectedDate));
 
         try {
             long id = databaseHelper.addMedicine(medicine);
@@ -2,29 +2,32 @@ package com.AbdulPaito.medtrack;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
-import android.os.PowerManager;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * AlarmReceiver - Completely rewritten for reliable alarm handling
+ * Runs on the AsyncReceiver pool: the batch query and notification posting stay off the main thread.
  */
-public class AlarmReceiver extends BroadcastReceiver {
+public class AlarmReceiver extends AsyncReceiver {
 
     private static final String TAG = "AlarmReceiver";
     private static final String CHANNEL_ID = "alarm_channel";
-    private static final int NOTIFICATION_ID = 1000;
+    // Screen wake on alert; the platform drops it, AlarmSoundService holds its own lock
+    private static final long WAKE_SCREEN_MS = 5 * 1000L;
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         long currentTime = System.currentTimeMillis();
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", java.util.Locale.getDefault());
-        Log.d(TAG, "🚨 ALARM RECEIVED! Time: " + sdf.format(new java.util.Date(currentTime)));
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "🚨 ALARM RECEIVED! Time: " + TimeUtils.formatLogTimestamp(currentTime));
+        }
+        boolean doseBatch = AlarmScheduler.ACTION_DOSE_BATCH.equals(intent.getAction());
         
         // Get medicine details
         int medicineId = intent.getIntExtra("medicine_id", -1);
@@ -33,81 +36,104 @@ public class AlarmReceiver extends BroadcastReceiver {
 
         Log.d(TAG, "💊 Medicine: " + medicineName + ", ID: " + medicineId + ", Dosage: " + dosage);
 
-        if (medicineId == -1 || medicineName == null) {
+        if (!doseBatch && (medicineId == -1 || medicineName == null)) {
             Log.e(TAG, "❌ Invalid medicine data received");
             return;
         }
 
-        // Acquire wake locks to ensure device wakes up
-        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-        PowerManager.WakeLock wakeLock = null;
-        
         try {
-            // Acquire wake lock to wake device
-            wakeLock = powerManager.newWakeLock(
-                    PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
-                    "MedTrack::AlarmWakeLock"
-            );
-            wakeLock.acquire(10 * 60 * 1000L); // Hold for 10 minutes
-            
-            Log.d(TAG, "✅ WakeLock acquired");
-            
-            // Show alarm notification
-            showAlarmNotification(context, medicineName, dosage, medicineId);
-            
-            // Start alarm service for continuous ringing
-            startAlarmService(context, medicineId, medicineName, dosage);
+            List<DoseEvent> doses;
+            if (doseBatch) {
+                // Next-due engine: everything due now, then re-arm for the next event
+                doses = handleDoseBatch(context, intent.getLongExtra(AlarmScheduler.EXTRA_TRIGGER_AT, 0));
+            } else {
+                // Snooze / auto-repeat: close the ledger slot that brought us here
+                int requestCode = intent.getIntExtra(AlarmScheduler.EXTRA_REQUEST_CODE, -1);
+                if (requestCode > 0) {
+                    new AlarmScheduler(context).markAlarmFired(requestCode);
+                }
+                doses = new ArrayList<>();
+                doses.add(new DoseEvent(medicineId, medicineName, dosage, currentTime, DoseEvent.Kind.DOSE));
+            }
+
+            if (!doses.isEmpty()) {
+                // Doses firing close together share one grouped notification; only the first
+                // post in the window wakes the screen and starts the ringing service
+                NotificationManager notificationManager =
+                        (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+                createAlarmChannel(notificationManager);
+                NotificationAggregator.Plan plan = new NotificationAggregator(context)
+                        .post(NotificationAggregator.Stream.DOSES, doses);
+
+                if (plan.alert) {
+                    WakeLocks.holdFor(context, WakeLocks.Tag.ALARM_RECEIVER, WAKE_SCREEN_MS);
+                    Log.d(TAG, "✅ Screen woken for " + WAKE_SCREEN_MS + " ms");
+                }
+                // Doses join the ringing session (if any) so each one is answered on its own
+                startAlarmService(context, doses);
+            }
             
             Log.d(TAG, "✅ Alarm processed successfully");
             
         } catch (Exception e) {
             Log.e(TAG, "❌ Error processing alarm", e);
-        } finally {
-            // Release wake lock after delay
-            if (wakeLock != null && wakeLock.isHeld()) {
-                final PowerManager.WakeLock finalWakeLock = wakeLock;
-                android.os.Handler handler = new android.os.Handler(context.getMainLooper());
-                handler.postDelayed(() -> {
-                    if (finalWakeLock != null && finalWakeLock.isHeld()) {
-                        finalWakeLock.release();
-                        Log.d(TAG, "✅ WakeLock released");
-                    }
-                }, 5000); // Release after 5 seconds
-            }
         }
     }
-    
+
     /**
-     * Start alarm service for continuous ringing
+     * The single batch alarm fired: return the doses due this minute and pass any
+     * 5-minute heads-ups on to ReminderNotificationReceiver in one broadcast.
      */
-    private void startAlarmService(Context context, int medicineId, String medicineName, String dosage) {
-        Intent serviceIntent = new Intent(context, AlarmSoundService.class);
-        serviceIntent.setAction("com.AbdulPaito.medtrack.ALARM_SERVICE");
-        serviceIntent.putExtra("medicine_id", medicineId);
-        serviceIntent.putExtra("medicine_name", medicineName);
-        serviceIntent.putExtra("dosage", dosage);
+    private List<DoseEvent> handleDoseBatch(Context context, long triggerAt) {
+        List<DoseEvent> due = new AlarmScheduler(context).onBatchAlarm(triggerAt);
+
+        List<DoseEvent> doses = new ArrayList<>();
+        List<DoseEvent> reminders = new ArrayList<>();
+        for (DoseEvent event : due) {
+            (event.getKind() == DoseEvent.Kind.DOSE ? doses : reminders).add(event);
+        }
+
+        if (!reminders.isEmpty()) {
+            forwardReminders(context, reminders);
+        }
+        Log.d(TAG, "✅ Dose batch processed: " + doses.size() + " dose(s), " + reminders.size() + " reminder(s)");
+        return doses;
+    }
+
+    private void forwardReminders(Context context, List<DoseEvent> reminders) {
+        int[] ids = new int[reminders.size()];
+        String[] names = new String[reminders.size()];
+        String[] dosages = new String[reminders.size()];
+        for (int i = 0; i < reminders.size(); i++) {
+            ids[i] = reminders.get(i).getMedicineId();
+            names[i] = reminders.get(i).getMedicineName();
+            dosages[i] = reminders.get(i).getDosage();
+        }
+        Intent intent = new Intent(context, ReminderNotificationReceiver.class);
+        intent.setAction("com.AbdulPaito.medtrack.REMINDER_TRIGGER");
+        intent.putExtra("medicine_id", ids[0]);
+        intent.putExtra("medicine_name", names[0]);
+        intent.putExtra("dosage", dosages[0]);
+        intent.putExtra(ReminderNotificationReceiver.EXTRA_MEDICINE_IDS, ids);
+        intent.putExtra(ReminderNotificationReceiver.EXTRA_MEDICINE_NAMES, names);
+        intent.putExtra(ReminderNotificationReceiver.EXTRA_DOSAGES, dosages);
+        context.sendBroadcast(intent);
+    }
 
+    /**
+     * Start alarm service for continuous ringing
+     */
+    private void startAlarmService(Context context, List<DoseEvent> doses) {
         try {
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                context.startForegroundService(serviceIntent);
-                Log.d(TAG, "✅ Started foreground alarm service");
-            } else {
-                context.startService(serviceIntent);
-                Log.d(TAG, "✅ Started alarm service");
-            }
+            AlarmSoundService.ring(context, doses);
+            Log.d(TAG, "✅ Alarm service ringing for " + doses.size() + " dose(s)");
         } catch (Exception e) {
             Log.e(TAG, "❌ Failed to start alarm service", e);
         }
     }
-    
-    /**
-     * Show alarm notification
-     */
-    private void showAlarmNotification(Context context, String medicineName, String dosage, int medicineId) {
-        NotificationManager notificationManager = 
-                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-        
-        // Create notification channel for Android 8.0+
+
+    // Create notification channel for Android 8.0+
+    private void createAlarmChannel(NotificationManager notificationManager) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                     CHANNEL_ID,
@@ -130,39 +156,5 @@ public class AlarmReceiver extends BroadcastReceiver {
             );
             notificationManager.createNotificationChannel(channel);
         }
-        
-        // Intent to open app when notification is tapped
-        Intent openAppIntent = new Intent(context, MainActivity.class);
-        openAppIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-                context,
-                medicineId,
-                openAppIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
-        // Build notification
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_lock_idle_alarm)
-                .setContentTitle("⏰ MEDICINE TIME!")
-                .setContentText(medicineName + " - " + dosage)
-                .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText("Time to take your medicine: " + medicineName + " (" + dosage + ")"))
-                .setPriority(NotificationCompat.PRIORITY_MAX)
-                .setCategory(NotificationCompat.CATEGORY_ALARM)
-                .setAutoCancel(false)
-                .setOngoing(true)
-                .setFullScreenIntent(pendingIntent, true)
-                .setContentIntent(pendingIntent)
-                .setVibrate(new long[]{0, 1000, 500, 1000, 500, 1000})
-                .setLights(0xFFFF0000, 1000, 1000) // Red light
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setDefaults(NotificationCompat.DEFAULT_ALL)
-                .setWhen(System.currentTimeMillis())
-                .setShowWhen(true);
-        
-        // Show notification
-        notificationManager.notify(NOTIFICATION_ID + medicineId, builder.build());
-        Log.d(TAG, "✅ Alarm notification shown");
     }
-}
\ No newline at end of file
+}
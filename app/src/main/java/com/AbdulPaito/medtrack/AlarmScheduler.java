@@ -7,9 +7,16 @@ import android.content.Intent;
 import android.os.Build;
 import android.util.Log;
 import android.widget.Toast;
+import androidx.annotation.NonNull;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
+import com.AbdulPaito.medtrack.database.AlarmLedgerEntry;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.Medicine;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
-import java.util.Calendar;
+import com.AbdulPaito.medtrack.database.Recurrence;
+import java.time.Clock;
+import java.util.ArrayList;
 import java.util.List;
 import android.provider.Settings;
 
@@ -19,12 +26,29 @@ import android.provider.Settings;
 public class AlarmScheduler {
 
     private static final String TAG = "AlarmScheduler";
+
+    public static final String ACTION_DOSE_BATCH = "com.AbdulPaito.medtrack.DOSE_BATCH";
+    public static final String EXTRA_TRIGGER_AT = "trigger_at";
+    public static final String ACTION_ALARM_TRIGGER = "com.AbdulPaito.medtrack.ALARM_TRIGGER";
+    public static final String EXTRA_REQUEST_CODE = "request_code";
+    private static final int BATCH_REQUEST_CODE = DatabaseHelper.BATCH_REQUEST_CODE;
+    private static final String PREFS_NAME = "AlarmSchedulerPrefs";
+    private static final String PREF_LEGACY_CLEARED = "legacy_alarms_cleared";
     private Context context;
     private AlarmManager alarmManager;
+    // Source of "now" and of the zone doses are resolved in. The system clock captures the
+    // default zone when created, so short-lived schedulers follow time zone changes.
+    private final Clock clock;
 
     public AlarmScheduler(Context context) {
+        this(context, Clock.systemDefaultZone());
+    }
+
+    @VisibleForTesting
+    AlarmScheduler(Context context, Clock clock) {
         this.context = context;
         this.alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        this.clock = clock;
     }
 
     /**
@@ -40,192 +64,349 @@ public class AlarmScheduler {
             return;
         }
         
-        // Parse time (format: "HH:mm")
-        String[] timeParts = medicine.getReminderTime().split(":");
-        int hour = Integer.parseInt(timeParts[0]);
-        int minute = Integer.parseInt(timeParts[1]);
-
-        // Create calendar for the alarm time
-        Calendar calendar = Calendar.getInstance();
-        calendar.set(Calendar.HOUR_OF_DAY, hour);
-        calendar.set(Calendar.MINUTE, minute);
-        calendar.set(Calendar.SECOND, 0);
-        calendar.set(Calendar.MILLISECOND, 0);
-
-        // If the time has passed today, schedule for tomorrow
-        if (calendar.getTimeInMillis() <= System.currentTimeMillis()) {
-            calendar.add(Calendar.DAY_OF_MONTH, 1);
-            Log.d(TAG, "⏰ Time passed today, scheduling for tomorrow");
+        // Next dose according to the medicine's recurrence
+        Recurrence recurrence = medicine.getRecurrence();
+        long currentTime = clock.millis();
+        long alarmTime = recurrence != null ? recurrence.nextAfter(currentTime, clock.getZone()) : -1;
+        if (alarmTime < 0) {
+            Log.w(TAG, "⚠️ No upcoming dose for " + medicine.getMedicineName() + " (" + recurrence + ")");
+            armNextDueInBackground(-1);
+            return;
         }
-        
-        long alarmTime = calendar.getTimeInMillis();
-        long currentTime = System.currentTimeMillis();
+
         long timeDifference = alarmTime - currentTime;
         long minutesDifference = timeDifference / (60 * 1000);
         
-        // Detailed time logging for debugging
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", java.util.Locale.getDefault());
-        Log.d(TAG, "⏰ CURRENT PHONE TIME: " + sdf.format(new java.util.Date(currentTime)));
-        Log.d(TAG, "⏰ ALARM SCHEDULED FOR: " + medicine.getReminderTime());
-        Log.d(TAG, "⏰ ALARM TIME (EXACT): " + sdf.format(new java.util.Date(alarmTime)));
-        Log.d(TAG, "⏰ TIME DIFFERENCE: " + minutesDifference + " minutes (" + timeDifference + " milliseconds)");
-        Log.d(TAG, "⏰ PHONE TIME SOURCE: System.currentTimeMillis()");
+        // Detailed time logging for debugging - only formatted when DEBUG is enabled for the tag
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "⏰ CURRENT PHONE TIME: " + TimeUtils.formatLogTimestamp(currentTime));
+            Log.d(TAG, "⏰ ALARM SCHEDULED FOR: " + medicine.getReminderTime() + " (" + recurrence + ")");
+            Log.d(TAG, "⏰ ALARM TIME (EXACT): " + TimeUtils.formatLogTimestamp(alarmTime));
+            Log.d(TAG, "⏰ TIME DIFFERENCE: " + minutesDifference + " minutes (" + timeDifference + " milliseconds)");
+        }
 
         if (alarmManager != null) {
-            // Cancel any existing alarms first
-            cancelAllAlarmsForMedicine(medicine.getId());
-            
-            // Schedule 5-minute reminder if there's enough time
+            // Only the soonest event is armed, so this may not be the alarm set right now
             if (minutesDifference >= 6) { // At least 6 minutes to allow 5-minute reminder
-                schedule5MinuteReminder(medicine, alarmTime);
-                Log.d(TAG, "✅ 5-minute reminder scheduled");
-                Toast.makeText(context, "✅ 5-min reminder scheduled for " + sdf.format(new java.util.Date(alarmTime - (5 * 60 * 1000))), Toast.LENGTH_LONG).show();
+                Log.d(TAG, "✅ 5-minute reminder queued");
             } else {
                 Log.d(TAG, "⚠️ Not enough time for 5-minute reminder (only " + minutesDifference + " minutes)");
-                Toast.makeText(context, "⚠️ Alarm too soon - no 5-min reminder (only " + minutesDifference + " min away)", Toast.LENGTH_LONG).show();
             }
-            
-            // Schedule main alarm
-            scheduleMainAlarm(medicine, alarmTime);
-            
-            Log.d(TAG, "✅ All alarms scheduled successfully for: " + medicine.getMedicineName());
-            
-            // Convert time to 12-hour format for display
-            String displayTime = convertTo12Hour(medicine.getReminderTime());
-            Toast.makeText(context, "✅ Alarm set for " + displayTime, Toast.LENGTH_SHORT).show();
+
+            // The medicine is already stored, so re-arming picks it up from the database
+            armNextDueInBackground(-1);
+            Log.d(TAG, "✅ Re-arm queued for: " + medicine.getMedicineName());
         } else {
             Log.e(TAG, "❌ AlarmManager is null!");
         }
     }
-    
+
+    // ============================
+    // ⏰ Next-Due Engine
+    // ============================
+
     /**
-     * Schedule 5-minute reminder - FIXED FOR EXACT TIMING
+     * Arm the single batch alarm for the earliest upcoming dose event of any medicine.
+     * Replaces the old two-alarms-per-medicine scheme: however many medicines there are,
+     * AlarmManager only ever holds one MedTrack alarm clock (plus transient snoozes).
      */
-    private void schedule5MinuteReminder(Medicine medicine, long alarmTime) {
-        // Calculate exactly 5 minutes before
-        long reminderTime = alarmTime - (5 * 60 * 1000);
-        
-        // Detailed logging for 5-minute reminder
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", java.util.Locale.getDefault());
-        Log.d(TAG, "⏰ MAIN ALARM TIME: " + sdf.format(new java.util.Date(alarmTime)));
-        Log.d(TAG, "⏰ 5-MIN REMINDER TIME: " + sdf.format(new java.util.Date(reminderTime)));
-        Log.d(TAG, "⏰ EXACTLY 5 MINUTES BEFORE: " + ((alarmTime - reminderTime) / (60 * 1000)) + " minutes");
-        
-        Intent intent = new Intent(context, ReminderNotificationReceiver.class);
-        intent.setAction("com.AbdulPaito.medtrack.REMINDER_TRIGGER");
-        intent.putExtra("medicine_id", medicine.getId());
-        intent.putExtra("medicine_name", medicine.getMedicineName());
-        intent.putExtra("dosage", medicine.getDosage());
-        
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                medicine.getId() + 50000, // Unique request code for reminders
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
-        // CRITICAL FIX: Use setAlarmClock for highest priority and exact timing
-        // This bypasses Doze mode and battery optimization completely
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            AlarmManager.AlarmClockInfo alarmClockInfo = new AlarmManager.AlarmClockInfo(
-                    reminderTime,
-                    pendingIntent
-            );
-            alarmManager.setAlarmClock(alarmClockInfo, pendingIntent);
-            Log.d(TAG, "✅ 5-minute reminder scheduled with setAlarmClock (HIGHEST PRIORITY) at " + sdf.format(new java.util.Date(reminderTime)));
-        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            alarmManager.setExact(
-                    AlarmManager.RTC_WAKEUP,
-                    reminderTime,
-                    pendingIntent
-            );
-            Log.d(TAG, "✅ 5-minute reminder scheduled with setExact");
-        } else {
-            alarmManager.set(
-                    AlarmManager.RTC_WAKEUP,
-                    reminderTime,
-                    pendingIntent
-            );
-            Log.d(TAG, "✅ 5-minute reminder scheduled with set");
+    public void armNextDue() {
+        armNextDue(clock.millis(), -1);
+    }
+
+    // Loads every medicine, so callers on the UI thread hand it to a database thread
+    private void armNextDueInBackground(int excludedMedicineId) {
+        DatabaseExecutor.getInstance(context).execute(db -> {
+            armNextDue(clock.millis(), excludedMedicineId);
+            return null;
+        });
+    }
+
+    private void armNextDue(long fromMillis, int excludedMedicineId) {
+        clearLegacyAlarmsOnce();
+        List<Medicine> medicines = loadMedicines(excludedMedicineId);
+        DoseQueue queue = DoseQueue.build(medicines, fromMillis, clock.getZone());
+        armBatchAlarm(queue.nextTriggerAt(), queue.size());
+    }
+
+    /**
+     * Bulk entry point for boot, restore, clock/time zone changes and app updates.
+     * Blocks on the database, so call it from a worker thread (BootReceiver uses goAsync()).
+     * Computes the wanted batch alarm and only touches AlarmManager when it differs from
+     * what is already armed, e.g. a manual TIME_SET that doesn't move the next dose is a no-op.
+     */
+    @WorkerThread
+    public RescheduleReport rescheduleAll(String reason) {
+        long start = System.nanoTime();
+        if (Intent.ACTION_BOOT_COMPLETED.equals(reason)) {
+            // Nothing survives a reboot; don't let the ledger claim otherwise
+            DatabaseHelper.getInstance(context).forgetArmedAlarms();
         }
+        clearLegacyAlarmsOnce();
+        List<Medicine> medicines = loadMedicines(-1);
+        long loaded = System.nanoTime();
+
+        DoseQueue queue = DoseQueue.build(medicines, clock);
+        long triggerAt = queue.nextTriggerAt();
+        long planned = System.nanoTime();
+
+        boolean changed = armBatchAlarm(triggerAt, queue.size());
+        long armed = System.nanoTime();
+
+        RescheduleReport report = new RescheduleReport(reason, medicines.size(), queue.size(), triggerAt,
+                changed, loaded - start, planned - loaded, armed - planned);
+        Log.d(TAG, "✅ " + report);
+        Log.d(TAG, "📒 Armed: " + getArmedAlarms());
+        return report;
     }
-    
+
+    /** What rescheduleAll() did and how long each phase took. */
+    public static final class RescheduleReport {
+        public final String reason;
+        public final int medicines;
+        public final int queuedEvents;
+        public final long triggerAt;   // -1 = nothing upcoming
+        public final boolean changed;  // false = the armed alarm was already right
+        public final long loadNanos;
+        public final long planNanos;
+        public final long armNanos;
+
+        RescheduleReport(String reason, int medicines, int queuedEvents, long triggerAt, boolean changed,
+                         long loadNanos, long planNanos, long armNanos) {
+            this.reason = reason;
+            this.medicines = medicines;
+            this.queuedEvents = queuedEvents;
+            this.triggerAt = triggerAt;
+            this.changed = changed;
+            this.loadNanos = loadNanos;
+            this.planNanos = planNanos;
+            this.armNanos = armNanos;
+        }
+
+        public long totalMillis() {
+            return (loadNanos + planNanos + armNanos) / 1_000_000L;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Reschedule (" + reason + "): " + medicines + " medicine(s), " + queuedEvents
+                    + " event(s), next=" + triggerAt + (changed ? ", re-armed" : ", unchanged")
+                    + " | load " + loadNanos / 1000 + "us, plan " + planNanos / 1000
+                    + "us, arm " + armNanos / 1000 + "us, total " + totalMillis() + "ms";
+        }
+    }
+
     /**
-     * Schedule main alarm - FIXED FOR EXACT TIMING
+     * The batch alarm fired: return every event due in this window (doses at the same minute
+     * come back together) and re-arm for whatever is next. {@code triggerAt} is the time the
+     * alarm was armed for, so a late delivery still finds the doses it was meant for.
      */
-    private void scheduleMainAlarm(Medicine medicine, long alarmTime) {
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", java.util.Locale.getDefault());
-        Log.d(TAG, "⏰ SCHEDULING MAIN ALARM FOR: " + sdf.format(new java.util.Date(alarmTime)));
-        
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        intent.setAction("com.AbdulPaito.medtrack.ALARM_TRIGGER");
-        intent.putExtra("medicine_id", medicine.getId());
-        intent.putExtra("medicine_name", medicine.getMedicineName());
-        intent.putExtra("dosage", medicine.getDosage());
-        
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
+    public List<DoseEvent> onBatchAlarm(long triggerAt) {
+        DoseQueue.Batch batch = DoseQueue.fire(loadMedicines(-1), triggerAt, clock);
+        armBatchAlarm(batch.upcoming.nextTriggerAt(), batch.upcoming.size());
+
+        Log.d(TAG, "⏰ Batch alarm: " + batch.due.size() + " event(s) due, " + batch.upcoming.size() + " upcoming");
+        return batch.due;
+    }
+
+    private List<Medicine> loadMedicines(int excludedMedicineId) {
+        List<Medicine> medicines = DatabaseHelper.getInstance(context).getAllMedicines();
+        if (excludedMedicineId > 0) {
+            List<Medicine> kept = new ArrayList<>(medicines.size());
+            for (Medicine medicine : medicines) {
+                if (medicine.getId() != excludedMedicineId) kept.add(medicine);
+            }
+            return kept;
+        }
+        return medicines;
+    }
+
+    private PendingIntent batchPendingIntent(long triggerAt) {
+        Intent intent = alarmIntent(AlarmLedgerEntry.KIND_BATCH);
+        intent.putExtra(EXTRA_TRIGGER_AT, triggerAt);
+        return PendingIntent.getBroadcast(
                 context,
-                medicine.getId(), // Main alarm uses medicine ID
+                BATCH_REQUEST_CODE,
                 intent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
-        
-        // CRITICAL FIX: Use setAlarmClock for main alarm to ensure exact timing
-        // This is the highest priority alarm method and bypasses all battery optimizations
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP) {
-            AlarmManager.AlarmClockInfo alarmClockInfo = new AlarmManager.AlarmClockInfo(
-                    alarmTime,
-                    pendingIntent
-            );
-            alarmManager.setAlarmClock(alarmClockInfo, pendingIntent);
-            Log.d(TAG, "✅ Main alarm scheduled with setAlarmClock (HIGHEST PRIORITY) at " + sdf.format(new java.util.Date(alarmTime)));
-        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-            alarmManager.setExact(
-                    AlarmManager.RTC_WAKEUP,
-                    alarmTime,
-                    pendingIntent
-            );
-            Log.d(TAG, "✅ Main alarm scheduled with setExact");
-        } else {
-            alarmManager.set(
-                    AlarmManager.RTC_WAKEUP,
-                    alarmTime,
-                    pendingIntent
-            );
-            Log.d(TAG, "✅ Main alarm scheduled with set");
+    }
+
+    /**
+     * Make the batch alarm fire at {@code triggerAt} (or not at all when it is -1).
+     * Returns false without touching AlarmManager when that is already the armed state.
+     */
+    private boolean armBatchAlarm(long triggerAt, int queuedEvents) {
+        if (alarmManager == null) {
+            Log.e(TAG, "❌ AlarmManager is null!");
+            return false;
+        }
+        if (isBatchAlarmArmedFor(triggerAt)) {
+            Log.d(TAG, "✅ Batch alarm already armed for " + triggerAt + ", nothing to do");
+            return false;
         }
+        if (triggerAt < 0) {
+            cancelBatchAlarm();
+            Log.d(TAG, "✅ No upcoming doses, batch alarm cleared");
+            return true;
+        }
+
+        PendingIntent pendingIntent = batchPendingIntent(triggerAt);
+        // setAlarmClock keeps the exact, Doze-proof behaviour the per-medicine alarms had
+        AlarmManager.AlarmClockInfo alarmClockInfo = new AlarmManager.AlarmClockInfo(triggerAt, pendingIntent);
+        alarmManager.setAlarmClock(alarmClockInfo, pendingIntent);
+        DatabaseHelper.getInstance(context).recordAlarmArmed(BATCH_REQUEST_CODE, triggerAt);
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "✅ Batch alarm armed for " + TimeUtils.formatLogTimestamp(triggerAt)
+                    + " (" + queuedEvents + " event(s) queued)");
+        }
+        return true;
+    }
+
+    // The ledger's trigger only counts while its PendingIntent still exists (reboots drop both)
+    private boolean isBatchAlarmArmedFor(long triggerAt) {
+        AlarmLedgerEntry entry = DatabaseHelper.getInstance(context)
+                .getAlarmLedgerEntry(0, AlarmLedgerEntry.KIND_BATCH);
+        boolean armed = entry != null && entry.isArmed();
+        if (armed != (triggerAt >= 0)) return false;
+        if (armed && entry.getTriggerAt() != triggerAt) return false;
+        return pendingIntentExists(AlarmLedgerEntry.KIND_BATCH, BATCH_REQUEST_CODE) == armed;
+    }
+
+    private void cancelBatchAlarm() {
+        if (alarmManager == null) return;
+        PendingIntent pendingIntent = batchPendingIntent(0);
+        alarmManager.cancel(pendingIntent);
+        pendingIntent.cancel();
+        DatabaseHelper.getInstance(context).recordAlarmState(BATCH_REQUEST_CODE, AlarmLedgerEntry.STATE_CANCELLED);
+    }
+
+    private android.content.SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    // Installs upgraded from per-medicine alarms still have them registered; drop them once
+    private void clearLegacyAlarmsOnce() {
+        android.content.SharedPreferences prefs = prefs();
+        if (prefs.getBoolean(PREF_LEGACY_CLEARED, false)) return;
+        for (Medicine medicine : DatabaseHelper.getInstance(context).getAllMedicines()) {
+            cancelLegacyAlarms(medicine.getId());
+        }
+        prefs.edit().putBoolean(PREF_LEGACY_CLEARED, true).apply();
+        Log.d(TAG, "✅ Legacy per-medicine alarms cleared");
     }
     
     /**
-     * Cancel all alarms for a medicine - NEW IMPLEMENTATION
+     * Cancel all alarms for a medicine - its snoozes/auto-repeats from the ledger, then
+     * re-arm the batch alarm without it, both on a database thread
      */
     public void cancelMedicineAlarm(int medicineId) {
         Log.d(TAG, "🗑️ Cancelling all alarms for medicine ID: " + medicineId);
-        cancelAllAlarmsForMedicine(medicineId);
-        Log.d(TAG, "✅ All alarms cancelled for medicine ID: " + medicineId);
+        DatabaseExecutor.getInstance(context).execute(db -> {
+            cancelFollowUps(medicineId);
+            // Callers cancel before deleting, so leave this medicine out of the re-armed queue
+            armNextDue(clock.millis(), medicineId);
+            Log.d(TAG, "✅ All alarms cancelled for medicine ID: " + medicineId);
+            return null;
+        });
     }
     
     /**
-     * Cancel all alarms for all medicines - for bulk operations like restore
+     * Cancel all alarms for all medicines - for bulk operations like restore.
+     * The ledger says exactly what is armed, so no medicine has to be loaded.
      */
     public void cancelAllAlarms(Context context) {
         Log.d(TAG, "🗑️ Cancelling all alarms for all medicines");
-        DatabaseHelper dbHelper = new DatabaseHelper(context);
-        List<Medicine> allMedicines = dbHelper.getAllMedicines();
-        for (Medicine medicine : allMedicines) {
-            cancelAllAlarmsForMedicine(medicine.getId());
+        List<AlarmLedgerEntry> armed = DatabaseHelper.getInstance(context).getArmedAlarms();
+        for (AlarmLedgerEntry entry : armed) {
+            cancelSlot(entry);
         }
-        Log.d(TAG, "✅ All alarms cancelled for all medicines");
+        cancelBatchAlarm();
+        Log.d(TAG, "✅ Cancelled " + armed.size() + " armed alarm(s)");
+    }
+
+    // ============================
+    // 📒 Alarm Ledger
+    // ============================
+
+    /**
+     * Ring again for one medicine at {@code triggerAt} (snooze or auto-repeat). The request code
+     * comes from the ledger, so a second snooze replaces the first instead of stacking.
+     */
+    public void scheduleFollowUp(String kind, int medicineId, String medicineName, String dosage, long triggerAt) {
+        if (alarmManager == null) {
+            Log.e(TAG, "❌ AlarmManager is null!");
+            return;
+        }
+        // Ledger codes share AlarmReceiver's ALARM_TRIGGER filter with the legacy alarms
+        clearLegacyAlarmsOnce();
+        DatabaseHelper db = DatabaseHelper.getInstance(context);
+        int requestCode = db.allocateAlarmRequestCode(medicineId, kind);
+
+        Intent intent = alarmIntent(kind);
+        intent.putExtra("medicine_id", medicineId);
+        intent.putExtra("medicine_name", medicineName);
+        intent.putExtra("dosage", dosage);
+        intent.putExtra(EXTRA_REQUEST_CODE, requestCode);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, requestCode, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, triggerAt, pendingIntent);
+        db.recordAlarmArmed(requestCode, triggerAt);
+        Log.d(TAG, "✅ " + kind + " #" + requestCode + " armed for medicine " + medicineId);
+    }
+
+    /** Cancel every snooze/auto-repeat still armed for the medicine. */
+    public void cancelFollowUps(int medicineId) {
+        for (AlarmLedgerEntry entry : DatabaseHelper.getInstance(context).getArmedAlarms(medicineId)) {
+            cancelSlot(entry);
+        }
+    }
+
+    /** AlarmReceiver calls this when a ledger-tracked alarm is delivered. */
+    public void markAlarmFired(int requestCode) {
+        DatabaseHelper.getInstance(context).recordAlarmState(requestCode, AlarmLedgerEntry.STATE_FIRED);
+    }
+
+    /** Armed slots right now, for logs and bug reports. */
+    public List<AlarmLedgerEntry> getArmedAlarms() {
+        return DatabaseHelper.getInstance(context).getArmedAlarms();
+    }
+
+    private void cancelSlot(AlarmLedgerEntry entry) {
+        if (alarmManager != null) {
+            PendingIntent pendingIntent = PendingIntent.getBroadcast(context, entry.getRequestCode(),
+                    alarmIntent(entry.getKind()), PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+            alarmManager.cancel(pendingIntent);
+            pendingIntent.cancel();
+        }
+        DatabaseHelper.getInstance(context).recordAlarmState(entry.getRequestCode(), AlarmLedgerEntry.STATE_CANCELLED);
+        Log.d(TAG, "✅ Cancelled " + entry);
+    }
+
+    // PendingIntent identity is (request code, intent filter); the kind decides the action
+    private Intent alarmIntent(String kind) {
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(AlarmLedgerEntry.KIND_BATCH.equals(kind) ? ACTION_DOSE_BATCH : ACTION_ALARM_TRIGGER);
+        return intent;
+    }
+
+    private boolean pendingIntentExists(String kind, int requestCode) {
+        return PendingIntent.getBroadcast(context, requestCode, alarmIntent(kind),
+                PendingIntent.FLAG_NO_CREATE | PendingIntent.FLAG_IMMUTABLE) != null;
     }
     
     /**
-     * Cancel all alarms for a specific medicine
+     * Cancel the per-medicine alarms (main, 5-minute reminder) older versions registered.
+     * Their request codes (id, id + 50000) predate the ledger; only the one-time cleanup uses them.
      */
-    private void cancelAllAlarmsForMedicine(int medicineId) {
+    private void cancelLegacyAlarms(int medicineId) {
         if (alarmManager != null) {
             // Cancel main alarm
             Intent mainIntent = new Intent(context, AlarmReceiver.class);
-            mainIntent.setAction("com.AbdulPaito.medtrack.ALARM_TRIGGER");
+            mainIntent.setAction(ACTION_ALARM_TRIGGER);
             PendingIntent mainPendingIntent = PendingIntent.getBroadcast(
                     context,
                     medicineId,
@@ -261,20 +442,6 @@ public class AlarmScheduler {
         return true;
     }
 
-    /**
-     * Convert 24-hour time format to 12-hour format with AM/PM
-     */
-    private String convertTo12Hour(String time24) {
-        try {
-            java.text.SimpleDateFormat inputFormat = new java.text.SimpleDateFormat("HH:mm", java.util.Locale.getDefault());
-            java.text.SimpleDateFormat outputFormat = new java.text.SimpleDateFormat("h:mm a", java.util.Locale.getDefault());
-            java.util.Date date = inputFormat.parse(time24);
-            return outputFormat.format(date);
-        } catch (Exception e) {
-            return time24; // Return original if parsing fails
-        }
-    }
-
     /**
      * Request exact alarm permission (Android 12+)
      */
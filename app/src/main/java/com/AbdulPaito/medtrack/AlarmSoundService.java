@@ -15,28 +15,77 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
 import android.os.IBinder;
-import android.os.PowerManager;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
+import java.util.List;
+import com.AbdulPaito.medtrack.database.AlarmLedgerEntry;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 
 /**
- * AlarmSoundService - Plays alarm sound for 1 minute with vibration
- * Uses WakeLock to keep device awake while alarm is playing
+ * AlarmSoundService - Rings for every dose that is due until each one is answered
+ * Doses are queued in a DoseAlertQueue: the first one starts one shared sound/vibration
+ * session and wake lock, later ones join it, and each rings out after 1 minute into its own
+ * auto-repeat. The session (and wake lock) ends only when the queue drains.
  */
-public class AlarmSoundService extends Service {
+public class AlarmSoundService extends Service implements DoseAlertQueue.Session {
 
+    private static final String TAG = "AlarmSoundService";
     private static final String CHANNEL_ID = "alarm_service_channel";
+    // One notification for the whole session. Untagged ids are medicine ids (>= 1, see
+    // NotificationHelper) and the grouped ones are tagged, so a negative id is free
+    private static final int FOREGROUND_ID = -1;
+    private static final long RING_MS = 60000;     // 60 seconds = 1 minute per dose
+
+    static final String ACTION_RING = "com.AbdulPaito.medtrack.ALARM_SERVICE";
+    static final String ACTION_RESOLVE = "com.AbdulPaito.medtrack.ALARM_RESOLVE";
+    static final String EXTRA_MEDICINE_IDS = "medicine_ids";
+    static final String EXTRA_MEDICINE_NAMES = "medicine_names";
+    static final String EXTRA_DOSAGES = "dosages";
+
     private Ringtone ringtone;
     private Vibrator vibrator;
     private Handler handler;
-    private PowerManager.WakeLock wakeLock;
-    private int medicineId;
-    private String medicineName;
-    private String dosage;
+    private WakeLocks.Held wakeLock;        // taken on the first dose, not while idle
+    private WakeLocks.Held screenWakeLock;
+    private DoseAlertQueue alerts;
+    private final Runnable expiryTick = this::expireAlerts;
+
+    /**
+     * Ring for these doses; doses arriving while the service already rings join the session
+     */
+    static void ring(Context context, List<DoseEvent> doses) {
+        int[] ids = new int[doses.size()];
+        String[] names = new String[doses.size()];
+        String[] dosages = new String[doses.size()];
+        for (int i = 0; i < doses.size(); i++) {
+            ids[i] = doses.get(i).getMedicineId();
+            names[i] = doses.get(i).getMedicineName();
+            dosages[i] = doses.get(i).getDosage();
+        }
+        Intent serviceIntent = new Intent(context, AlarmSoundService.class);
+        serviceIntent.setAction(ACTION_RING);
+        serviceIntent.putExtra(EXTRA_MEDICINE_IDS, ids);
+        serviceIntent.putExtra(EXTRA_MEDICINE_NAMES, names);
+        serviceIntent.putExtra(EXTRA_DOSAGES, dosages);
+        context.startForegroundService(serviceIntent);
+    }
 
-    private PowerManager.WakeLock screenWakeLock;
+    /**
+     * One dose was answered; the others keep ringing
+     */
+    static void resolve(Context context, int medicineId) {
+        Intent serviceIntent = new Intent(context, AlarmSoundService.class);
+        serviceIntent.setAction(ACTION_RESOLVE);
+        serviceIntent.putExtra("medicine_id", medicineId);
+        try {
+            context.startService(serviceIntent);
+        } catch (IllegalStateException e) {
+            // Not running and not allowed to start from the background: nothing is ringing
+            Log.d(TAG, "Service not running, nothing to resolve for " + medicineId);
+        }
+    }
 
     @Override
     public void onCreate() {
@@ -44,60 +93,128 @@ public class AlarmSoundService extends Service {
         createNotificationChannel();
         handler = new Handler();
         vibrator = (Vibrator) getSystemService(Context.VIBRATOR_SERVICE);
-        
-        // Acquire FULL WakeLock to keep device awake and screen on during alarm
-        PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-        wakeLock = powerManager.newWakeLock(
-                PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
-                "MedTrack::AlarmServiceWakeLock"
-        );
-        
-        // Also acquire screen wake lock for maximum visibility
-        screenWakeLock = powerManager.newWakeLock(
-                PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP,
-                "MedTrack::AlarmServiceScreenWakeLock"
-        );
+        alerts = new DoseAlertQueue(RING_MS, this);
     }
 
     @Override
     public int onStartCommand(Intent intent, int flags, int startId) {
-        if (intent != null) {
-            medicineId = intent.getIntExtra("medicine_id", -1);
-            medicineName = intent.getStringExtra("medicine_name");
-            dosage = intent.getStringExtra("dosage");
-
-            // Acquire WakeLocks to keep device awake and screen on
-            if (wakeLock != null && !wakeLock.isHeld()) {
-                wakeLock.acquire(2 * 60 * 1000L); // Hold for 2 minutes max
+        if (intent != null && ACTION_RESOLVE.equals(intent.getAction())) {
+            alerts.resolve(intent.getIntExtra("medicine_id", -1));
+        } else if (intent != null) {
+            // startForegroundService() callers need startForeground() on every start
+            offerDoses(intent);
+            startForegroundSafely();
+        }
+
+        if (alerts.isEmpty()) {
+            stopSelf(startId);
+        } else {
+            scheduleExpiry();
+        }
+
+        // Return START_REDELIVER_INTENT so service restarts if killed
+        return START_REDELIVER_INTENT;
+    }
+
+    private void offerDoses(Intent intent) {
+        long now = System.currentTimeMillis();
+        int[] ids = intent.getIntArrayExtra(EXTRA_MEDICINE_IDS);
+        String[] names = intent.getStringArrayExtra(EXTRA_MEDICINE_NAMES);
+        String[] dosages = intent.getStringArrayExtra(EXTRA_DOSAGES);
+        if (ids != null && names != null && dosages != null) {
+            for (int i = 0; i < ids.length && i < names.length && i < dosages.length; i++) {
+                alerts.offer(ids[i], names[i], dosages[i], now);
             }
-            if (screenWakeLock != null && !screenWakeLock.isHeld()) {
-                screenWakeLock.acquire(2 * 60 * 1000L); // Hold for 2 minutes max
+        } else {
+            int medicineId = intent.getIntExtra("medicine_id", -1);
+            if (medicineId != -1) {
+                alerts.offer(medicineId, intent.getStringExtra("medicine_name"), intent.getStringExtra("dosage"), now);
             }
+        }
+        Log.d(TAG, "🔔 " + alerts.size() + " dose(s) ringing");
+    }
 
-            // Start foreground service with notification
-            try {
-                startForeground(medicineId, createForegroundNotification());
-            } catch (Exception e) {
-                android.util.Log.e("AlarmSoundService", "Failed to start foreground", e);
-            }
+    private void startForegroundSafely() {
+        try {
+            startForeground(FOREGROUND_ID, createForegroundNotification(alerts.peek(), alerts.size()));
+        } catch (Exception e) {
+            Log.e(TAG, "Failed to start foreground", e);
+        }
+    }
+
+    // Wake up when the oldest dose rings out
+    private void scheduleExpiry() {
+        handler.removeCallbacks(expiryTick);
+        long deadline = alerts.nextDeadline();
+        if (deadline >= 0) {
+            handler.postDelayed(expiryTick, Math.max(0, deadline - System.currentTimeMillis()));
+        }
+    }
+
+    private void expireAlerts() {
+        alerts.expire(System.currentTimeMillis());
+        if (!alerts.isEmpty()) {
+            scheduleExpiry();
+        }
+    }
 
-            // Start alarm sound and vibration
-            startAlarmSound();
-            startVibration();
+    // ============================
+    // 🔔 DoseAlertQueue.Session
+    // ============================
 
-            // Open app and keep it open when alarm goes off
-            openAppAndKeepOpen();
+    @Override
+    public void start() {
+        // Acquire WakeLocks to keep device awake and screen on; extended while doses keep coming
+        acquireWakeLocks();
+        startAlarmSound();
+        startVibration();
+
+        // Open app and keep it open when alarm goes off
+        openAppAndKeepOpen();
+    }
 
-            // Auto-stop after 1 minute and schedule auto-repeat
-            handler.postDelayed(() -> {
-                stopAlarmSound();
-                scheduleAutoRepeat();
-                stopSelf();
-            }, 60000); // 60 seconds = 1 minute
+    @Override
+    public void update(DoseAlertQueue.Alert head, int size) {
+        acquireWakeLocks();
+        NotificationManager manager = (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+        if (manager != null) {
+            manager.notify(FOREGROUND_ID, createForegroundNotification(head, size));
         }
+    }
 
-        // Return START_REDELIVER_INTENT so service restarts if killed
-        return START_REDELIVER_INTENT;
+    @Override
+    public void expired(DoseAlertQueue.Alert alert) {
+        // Nobody answered within the ring time: ring again for this dose in 5 minutes
+        scheduleAutoRepeat(alert);
+    }
+
+    @Override
+    public void stop() {
+        stopAlarmSound();
+        handler.removeCallbacks(expiryTick);
+        releaseWakeLocks();
+        stopForeground(true);
+        stopSelf();
+        Log.d(TAG, "✅ All doses answered, alarm session ended");
+    }
+
+    private void acquireWakeLocks() {
+        // Each dose rings for at most RING_MS; the margin covers the expiry tick
+        long timeout = RING_MS + 60 * 1000L;
+        if (wakeLock == null) {
+            wakeLock = WakeLocks.acquire(this, WakeLocks.Tag.ALARM_SERVICE, timeout);
+            screenWakeLock = WakeLocks.acquire(this, WakeLocks.Tag.ALARM_SERVICE_SCREEN, timeout);
+        } else {
+            wakeLock.extend(timeout);
+            screenWakeLock.extend(timeout);
+        }
+    }
+
+    private void releaseWakeLocks() {
+        if (wakeLock != null) {
+            wakeLock.release();
+            screenWakeLock.release();
+        }
     }
     
     private void openAppAndKeepOpen() {
@@ -105,8 +222,6 @@ public class AlarmSoundService extends Service {
             Intent appIntent = new Intent(this, MainActivity.class);
             appIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK | Intent.FLAG_ACTIVITY_SINGLE_TOP);
             appIntent.putExtra("alarm_active", true);
-            appIntent.putExtra("medicine_name", medicineName);
-            appIntent.putExtra("dosage", dosage);
             startActivity(appIntent);
             Log.d("AlarmSoundService", "✅ App opened and kept open");
         } catch (Exception e) {
@@ -192,49 +307,56 @@ public class AlarmSoundService extends Service {
         }
     }
 
-    private void scheduleAutoRepeat() {
+    private void scheduleAutoRepeat(DoseAlertQueue.Alert alert) {
         // Schedule alarm to repeat in 5 minutes if user didn't respond
-        Intent intent = new Intent(this, AlarmReceiver.class);
-        intent.setAction("com.AbdulPaito.medtrack.ALARM_TRIGGER");
-        intent.putExtra("medicine_id", medicineId);
-        intent.putExtra("medicine_name", medicineName);
-        intent.putExtra("dosage", dosage);
-
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                this,
-                medicineId + 20000, // Different request code for auto-repeat (not 10000 which is used by 5-min reminder)
-                intent,
+        long triggerTime = System.currentTimeMillis() + (5 * 60 * 1000); // 5 minutes
+        // Called on the main thread with the queue's lock held; the ledger write waits for neither
+        Context appContext = getApplicationContext();
+        DatabaseExecutor.getInstance(this).execute(db -> {
+            new AlarmScheduler(appContext).scheduleFollowUp(AlarmLedgerEntry.KIND_AUTO_REPEAT,
+                    alert.medicineId, alert.medicineName, alert.dosage, triggerTime);
+            return null;
+        });
+    }
+
+    /**
+     * Session notification; its actions answer the oldest ringing dose (each dose also has
+     * its own actions in the grouped notification)
+     */
+    private Notification createForegroundNotification(DoseAlertQueue.Alert head, int size) {
+        // Intent to open app when notification is tapped
+        Intent openAppIntent = new Intent(this, MainActivity.class);
+        openAppIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        PendingIntent openAppPendingIntent = PendingIntent.getActivity(
+                this, FOREGROUND_ID, openAppIntent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
 
-        android.app.AlarmManager alarmManager =
-                (android.app.AlarmManager) getSystemService(Context.ALARM_SERVICE);
-
-        if (alarmManager != null) {
-            long triggerTime = System.currentTimeMillis() + (5 * 60 * 1000); // 5 minutes
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(
-                        android.app.AlarmManager.RTC_WAKEUP,
-                        triggerTime,
-                        pendingIntent
-                );
-            } else {
-                alarmManager.setExact(
-                        android.app.AlarmManager.RTC_WAKEUP,
-                        triggerTime,
-                        pendingIntent
-                );
-            }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setSmallIcon(android.R.drawable.ic_lock_idle_alarm)
+                .setContentTitle(size > 1 ? "⏰ MEDICINE REMINDER! (" + size + ")" : "⏰ MEDICINE REMINDER!")
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setAutoCancel(false)
+                .setOngoing(true)
+                .setOnlyAlertOnce(true) // the ringtone is the alert; updates stay quiet
+                .setContentIntent(openAppPendingIntent)
+                .setFullScreenIntent(openAppPendingIntent, true)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setWhen(System.currentTimeMillis())
+                .setShowWhen(true);
+        if (head == null) {
+            return builder.setContentText("Time to take your medicine").build();
         }
-    }
 
-    private Notification createForegroundNotification() {
+        int medicineId = head.medicineId;
+        String more = size > 1 ? " (+" + (size - 1) + " more)" : "";
+
         // Intent for "Stop" action - only stops sound, keeps medicine pending
         Intent stopIntent = new Intent(this, NotificationActionReceiver.class);
         stopIntent.setAction("ACTION_STOP");
         stopIntent.putExtra("medicine_id", medicineId);
-        stopIntent.putExtra("medicine_name", medicineName);
+        stopIntent.putExtra("medicine_name", head.medicineName);
         PendingIntent stopPendingIntent = PendingIntent.getBroadcast(
                 this, medicineId * 10 + 1, stopIntent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -244,8 +366,8 @@ public class AlarmSoundService extends Service {
         Intent snoozeIntent = new Intent(this, NotificationActionReceiver.class);
         snoozeIntent.setAction("ACTION_SNOOZE");
         snoozeIntent.putExtra("medicine_id", medicineId);
-        snoozeIntent.putExtra("medicine_name", medicineName);
-        snoozeIntent.putExtra("dosage", dosage);
+        snoozeIntent.putExtra("medicine_name", head.medicineName);
+        snoozeIntent.putExtra("dosage", head.dosage);
         PendingIntent snoozePendingIntent = PendingIntent.getBroadcast(
                 this, medicineId * 10 + 2, snoozeIntent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
@@ -255,44 +377,21 @@ public class AlarmSoundService extends Service {
         Intent takenIntent = new Intent(this, NotificationActionReceiver.class);
         takenIntent.setAction("ACTION_TAKEN");
         takenIntent.putExtra("medicine_id", medicineId);
-        takenIntent.putExtra("medicine_name", medicineName);
-        takenIntent.putExtra("dosage", dosage);
+        takenIntent.putExtra("medicine_name", head.medicineName);
+        takenIntent.putExtra("dosage", head.dosage);
         PendingIntent takenPendingIntent = PendingIntent.getBroadcast(
                 this, medicineId * 10 + 3, takenIntent,
                 PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
         );
 
-        // Intent to open app when notification is tapped
-        Intent openAppIntent = new Intent(this, MainActivity.class);
-        openAppIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        PendingIntent openAppPendingIntent = PendingIntent.getActivity(
-                this, medicineId * 10 + 4, openAppIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_lock_idle_alarm)
-                .setContentTitle("⏰ MEDICINE REMINDER!")
-                .setContentText(medicineName + " - " + dosage)
+        return builder
+                .setContentText(head.medicineName + " - " + head.dosage + more)
                 .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText("Time to take your medicine: " + medicineName + " (" + dosage + ")"))
-                .setPriority(NotificationCompat.PRIORITY_MAX)
-                .setCategory(NotificationCompat.CATEGORY_ALARM)
-                .setAutoCancel(false)
-                .setOngoing(true)
-                .setContentIntent(openAppPendingIntent)
-                .setFullScreenIntent(openAppPendingIntent, true)
+                        .bigText("Time to take your medicine: " + head.medicineName + " (" + head.dosage + ")" + more))
                 .addAction(android.R.drawable.ic_menu_close_clear_cancel, "Stop", stopPendingIntent)
                 .addAction(android.R.drawable.ic_menu_recent_history, "Snooze 5min", snoozePendingIntent)
                 .addAction(android.R.drawable.ic_menu_send, "I Took It", takenPendingIntent)
-                .setVibrate(new long[]{0, 1000, 500, 1000, 500, 1000})
-                .setLights(0xFFFF0000, 1000, 1000) // Red light
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setDefaults(NotificationCompat.DEFAULT_ALL)
-                .setWhen(System.currentTimeMillis())
-                .setShowWhen(true);
-
-        return builder.build();
+                .build();
     }
 
     private void createNotificationChannel() {
@@ -333,12 +432,7 @@ public class AlarmSoundService extends Service {
         }
         
         // Release WakeLocks when service is destroyed
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-        }
-        if (screenWakeLock != null && screenWakeLock.isHeld()) {
-            screenWakeLock.release();
-        }
+        releaseWakeLocks();
     }
 
     @Override
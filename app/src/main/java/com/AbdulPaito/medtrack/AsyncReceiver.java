@@ -0,0 +1,170 @@
+package com.AbdulPaito.medtrack;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
+import com.AbdulPaito.medtrack.database.DatabaseHelper;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AsyncReceiver - Base for MedTrack's receivers: nothing runs on the main thread
+ * onReceive() calls goAsync() and hands {@link #onReceiveAsync} to a small shared pool.
+ * The PendingResult is always finished - when the work returns or throws, or at the
+ * deadline if it hangs - and every broadcast's latency goes into a per-receiver histogram,
+ * in memory for the log and booked into receiver_latency for the statistics report.
+ */
+public abstract class AsyncReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "AsyncReceiver";
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 16;
+    // Well inside the 10 s a broadcast gets before the system treats it as an ANR
+    static final long DEADLINE_MS = 8 * 1000L;
+
+    private static final ThreadPoolExecutor EXECUTOR;
+    private static final ThreadPoolExecutor OVERFLOW;
+    private static final Handler MAIN = new Handler(Looper.getMainLooper());
+    // Per process: the receivers run in :alarm, :reminder and the main process
+    private static final Map<String, LatencyHistogram> HISTOGRAMS = new ConcurrentHashMap<>();
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        EXECUTOR = new ThreadPoolExecutor(
+                POOL_SIZE, POOL_SIZE,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> new Thread(runnable, "medtrack-receiver-" + threadCount.incrementAndGet()));
+        EXECUTOR.allowCoreThreadTimeOut(true);
+        // One extra thread, not one per rejected broadcast, so the pool stays bounded
+        OVERFLOW = new ThreadPoolExecutor(
+                1, 1,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "medtrack-receiver-overflow"));
+        OVERFLOW.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The receiver's work, on a pool thread. {@code context} is the application context;
+     * anything that must run on the main thread (e.g. a Toast) goes through {@link #showToast}.
+     */
+    protected abstract void onReceiveAsync(Context context, Intent intent);
+
+    @Override
+    public final void onReceive(Context context, Intent intent) {
+        Context appContext = context.getApplicationContext();
+        Call call = new Call(appContext, getClass().getSimpleName(), goAsync());
+        Runnable work = () -> {
+            if (!call.started.compareAndSet(false, true)) return; // the deadline passed in the queue
+            try {
+                onReceiveAsync(appContext, intent);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ " + call.name + " failed", e);
+            } finally {
+                call.complete();
+            }
+        };
+
+        try {
+            call.future = EXECUTOR.submit(work);
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: an alarm must not be dropped, and the main thread has to stay free
+            // for the watchdog, so it waits for the single overflow thread instead
+            Log.w(TAG, "⚠️ Receiver pool full, queueing " + call.name + " on the overflow thread");
+            call.future = OVERFLOW.submit(work);
+        }
+        MAIN.postDelayed(call, DEADLINE_MS);
+    }
+
+    /** Post a Toast to the main thread. */
+    protected static void showToast(Context context, CharSequence text) {
+        MAIN.post(() -> Toast.makeText(context, text, Toast.LENGTH_SHORT).show());
+    }
+
+    /** This process's latency histogram for a receiver (by simple class name). */
+    static LatencyHistogram histogram(String receiver) {
+        return HISTOGRAMS.computeIfAbsent(receiver, name -> new LatencyHistogram());
+    }
+
+    /** One broadcast in flight; runs as the deadline watchdog on the main thread. */
+    private static final class Call implements Runnable {
+        final Context context;
+        final String name;
+        final PendingResult pendingResult;
+        final long receivedAt = SystemClock.elapsedRealtime();
+        final AtomicBoolean started = new AtomicBoolean();
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile Future<?> future;
+        volatile long timeoutMs;
+
+        Call(Context context, String name, PendingResult pendingResult) {
+            this.context = context;
+            this.name = name;
+            this.pendingResult = pendingResult;
+        }
+
+        // Watchdog on the main thread: finish now, the worker books the timeout when it returns
+        @Override
+        public void run() {
+            long ms = SystemClock.elapsedRealtime() - receivedAt;
+            timeoutMs = ms; // before the flag, so a worker that sees it also sees this
+            if (!finished.compareAndSet(false, true)) return;
+            LatencyHistogram histogram = histogram(name);
+            histogram.recordTimeout(ms);
+            Log.e(TAG, "❌ " + name + " passed its " + DEADLINE_MS + " ms deadline (" + histogram + ")");
+            pendingResult.finish();
+            if (started.compareAndSet(false, true)) {
+                // Never ran, so no worker is left to book it; nothing may touch the disk here
+                DatabaseExecutor.getInstance(context).record(db -> {
+                    book(db, ms, true);
+                    return null;
+                });
+            } else if (future != null) {
+                future.cancel(true);
+            }
+        }
+
+        // Worker thread, once the work has returned: book the sample, then finish, so the process
+        // can't be frozen or killed between the two and lose it
+        void complete() {
+            if (finished.compareAndSet(false, true)) {
+                MAIN.removeCallbacks(this);
+                long ms = SystemClock.elapsedRealtime() - receivedAt;
+                LatencyHistogram histogram = histogram(name);
+                histogram.record(ms);
+                Log.d(TAG, "⏱️ " + name + " took " + ms + " ms (" + histogram + ")");
+                book(DatabaseHelper.getInstance(context), ms, false);
+                pendingResult.finish();
+            } else {
+                book(DatabaseHelper.getInstance(context), timeoutMs, true);
+            }
+        }
+
+        // The :alarm and :reminder processes are short-lived; the table keeps their numbers
+        private void book(DatabaseHelper db, long ms, boolean timedOut) {
+            try {
+                db.addReceiverLatency(LocalDate.now().toString(), name, LatencyHistogram.bucket(ms), ms, timedOut);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "❌ Could not book " + name + " latency", e);
+            }
+        }
+    }
+}
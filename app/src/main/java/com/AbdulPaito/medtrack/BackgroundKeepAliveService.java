@@ -1,103 +0,0 @@
-package com.AbdulPaito.medtrack;
-
-import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.app.Service;
-import android.content.Intent;
-import android.os.Build;
-import android.os.IBinder;
-import android.os.PowerManager;
-import androidx.core.app.NotificationCompat;
-
-/**
- * BackgroundKeepAliveService - Keeps the app alive in background to ensure alarms work
- * This service runs in the background to prevent the system from killing the app
- */
-public class BackgroundKeepAliveService extends Service {
-
-    private static final String CHANNEL_ID = "keep_alive_channel";
-    private static final int NOTIFICATION_ID = 9999;
-    private PowerManager.WakeLock wakeLock;
-
-    @Override
-    public void onCreate() {
-        super.onCreate();
-        createNotificationChannel();
-        
-        // Acquire a partial wake lock to keep the service running
-        PowerManager powerManager = (PowerManager) getSystemService(POWER_SERVICE);
-        if (powerManager != null) {
-            wakeLock = powerManager.newWakeLock(
-                    PowerManager.PARTIAL_WAKE_LOCK,
-                    "MedTrack::KeepAliveWakeLock"
-            );
-        }
-    }
-
-    @Override
-    public int onStartCommand(Intent intent, int flags, int startId) {
-        // Start as foreground service to prevent system from killing it
-        startForeground(NOTIFICATION_ID, createKeepAliveNotification());
-        
-        // Acquire wake lock
-        if (wakeLock != null && !wakeLock.isHeld()) {
-            wakeLock.acquire();
-        }
-        
-        // Return START_STICKY to restart if killed
-        return START_STICKY;
-    }
-
-    private Notification createKeepAliveNotification() {
-        Intent notificationIntent = new Intent(this, MainActivity.class);
-        PendingIntent pendingIntent = PendingIntent.getActivity(
-                this, 0, notificationIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        return new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setContentTitle("MedTrack Running")
-                .setContentText("Medicine reminders are active")
-                .setSmallIcon(android.R.drawable.ic_dialog_info)
-                .setContentIntent(pendingIntent)
-                .setPriority(NotificationCompat.PRIORITY_LOW)
-                .setOngoing(true)
-                .setAutoCancel(false)
-                .setSilent(true) // Silent notification
-                .build();
-    }
-
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            NotificationChannel channel = new NotificationChannel(
-                    CHANNEL_ID,
-                    "Background Service",
-                    NotificationManager.IMPORTANCE_LOW
-            );
-            channel.setDescription("Keeps MedTrack running in background");
-            channel.setShowBadge(false);
-            channel.setSound(null, null); // Silent
-            channel.enableVibration(false);
-            channel.enableLights(false);
-            
-            NotificationManager manager = getSystemService(NotificationManager.class);
-            if (manager != null) {
-                manager.createNotificationChannel(channel);
-            }
-        }
-    }
-
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        if (wakeLock != null && wakeLock.isHeld()) {
-            wakeLock.release();
-        }
-    }
-
-    @Override
-    public IBinder onBind(Intent intent) {
-        return null;
-    }
-}
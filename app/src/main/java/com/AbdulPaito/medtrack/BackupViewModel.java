@@ -0,0 +1,212 @@
+package com.AbdulPaito.medtrack;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.AbdulPaito.medtrack.database.BackupReader;
+import com.AbdulPaito.medtrack.database.BackupSegment;
+import com.AbdulPaito.medtrack.database.BackupCodec;
+import com.AbdulPaito.medtrack.database.BackupWriter;
+import com.AbdulPaito.medtrack.database.BinaryBackup;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
+import com.AbdulPaito.medtrack.database.DatabaseHelper;
+import com.AbdulPaito.medtrack.database.IncrementalBackup;
+import com.AbdulPaito.medtrack.database.SnapshotBackup;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * BackupViewModel - Runs backup and restore for SettingsActivity
+ * The work is app-scoped on DatabaseExecutor, so rotating or leaving Settings neither drops
+ * nor cancels it. Progress lives here and survives rotation; the outcome is a Toast from the
+ * application context, shown whether or not Settings is still open.
+ */
+public class BackupViewModel extends AndroidViewModel {
+
+    private static final String TAG = "BackupViewModel";
+    private static final String STAGING_FILE_NAME = "medtrack_backup.tmp";
+
+    public enum Format { JSON, BINARY, INCREMENTAL, SNAPSHOT }
+
+    /** What the progress dialog shows; null while nothing is running. */
+    public static final class Status {
+        public final String title;
+        public final String message;
+
+        Status(String title, String message) {
+            this.title = title;
+            this.message = message;
+        }
+    }
+
+    private final MutableLiveData<Status> status = new MutableLiveData<>();
+
+    public BackupViewModel(@NonNull Application application) {
+        super(application);
+    }
+
+    public LiveData<Status> getStatus() {
+        return status;
+    }
+
+    public boolean isRunning() {
+        return status.getValue() != null;
+    }
+
+    // ============================
+    // 💾 Backup
+    // ============================
+
+    /** Streamed from the database cursors through a cache file on a worker thread; memory stays flat. */
+    public void backup(Uri uri, Format format) {
+        if (isRunning()) return;
+        status.setValue(new Status("Backing up...", "Preparing backup"));
+
+        Application app = getApplication();
+        ContentResolver resolver = app.getContentResolver();
+        DatabaseExecutor.getInstance(app).execute(db -> {
+            IncrementalBackup incremental = new IncrementalBackup(db);
+            BackupSegment segment = format == Format.INCREMENTAL ? incremental.nextSegment() : null;
+            String saved;
+            File staging = new File(app.getCacheDir(), STAGING_FILE_NAME);
+            try (OutputStream outputStream = resolver.openOutputStream(uri)) {
+                if (outputStream == null) {
+                    throw new IOException("Cannot open " + uri);
+                }
+                BackupWriter.Progress progress = (done, total) ->
+                        progress("Backing up...", "Saved " + done + " of " + total + " records");
+                if (format == Format.SNAPSHOT) {
+                    progress("Backing up...", "Copying database");
+                    long bytes = new SnapshotBackup(app, db).write(outputStream);
+                    saved = String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+                } else {
+                    // The writers read inside a transaction that holds other writers back, so they
+                    // encode into a local file; the document provider only sees the finished copy
+                    try (OutputStream local = new FileOutputStream(staging)) {
+                        if (segment != null) {
+                            saved = incremental.write(segment, local, progress) + " records";
+                        } else if (format == Format.BINARY) {
+                            saved = new BinaryBackup(db).write(local, progress) + " records";
+                        } else {
+                            saved = new BackupWriter(db).write(local, progress) + " records";
+                        }
+                    }
+                    progress("Backing up...", "Saving file");
+                    Files.copy(staging.toPath(), outputStream);
+                }
+            } finally {
+                staging.delete();
+            }
+            // The watermark only moves once the file is closed
+            if (segment != null) {
+                incremental.commit(segment);
+                return saved + (segment.isBase() ? ", full base" : ", increment #" + segment.getSequence());
+            }
+            return saved;
+        }, saved -> finish(" Backup successful! (" + saved + ")", Toast.LENGTH_SHORT),
+           error -> finish(" Backup failed: " + describe(error), Toast.LENGTH_LONG));
+    }
+
+    // ============================
+    // ♻️ Restore
+    // ============================
+
+    /** Streamed into one transaction on a worker thread; a bad file leaves the data untouched. */
+    public void restore(List<Uri> uris) {
+        if (isRunning()) return;
+        status.setValue(new Status("Restoring...", "Reading backup"));
+
+        Application app = getApplication();
+        DatabaseExecutor.getInstance(app).execute(db -> {
+            BackupReader.Progress progress = done -> progress("Restoring...", "Restored " + done + " records");
+            BackupReader.Result result = uris.size() > 1
+                    ? restoreChain(db, uris, progress)
+                    : restoreFile(db, uris.get(0), progress);
+
+            // One pass for all restored medicines: drop the old alarms, arm the earliest dose
+            AlarmScheduler alarmScheduler = new AlarmScheduler(app);
+            alarmScheduler.cancelAllAlarms(app);
+            alarmScheduler.rescheduleAll("restore");
+            return result;
+        }, result -> finish(" Restore successful! (" + result.medicines + " medicines, "
+                        + result.history + " history records)", Toast.LENGTH_SHORT),
+           error -> finish(" Restore failed: " + describe(error), Toast.LENGTH_LONG));
+    }
+
+    // Runs on the DatabaseExecutor thread
+    private BackupReader.Result restoreFile(DatabaseHelper db, Uri uri, BackupReader.Progress progress)
+            throws IOException {
+        try (InputStream inputStream = getApplication().getContentResolver().openInputStream(uri)) {
+            if (inputStream == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            // Pick the reader from the file's first bytes, not its name or MIME type
+            InputStream in = new BufferedInputStream(inputStream);
+            byte[] header = new byte[SnapshotBackup.HEADER_LENGTH];
+            in.mark(header.length);
+            int read = 0;
+            int n;
+            while (read < header.length && (n = in.read(header, read, header.length - read)) > 0) {
+                read += n;
+            }
+            in.reset();
+            if (SnapshotBackup.isSnapshot(header, read)) {
+                return new SnapshotBackup(getApplication(), db).restore(in, progress);
+            }
+            return BackupCodec.isBinaryBackup(header, read)
+                    ? new BinaryBackup(db).read(in, progress)
+                    : new BackupReader(db).read(in, progress);
+        }
+    }
+
+    // Incremental base + deltas, in whatever order they were picked
+    private BackupReader.Result restoreChain(DatabaseHelper db, List<Uri> uris, BackupReader.Progress progress)
+            throws IOException {
+        ContentResolver resolver = getApplication().getContentResolver();
+        List<IncrementalBackup.Source> files = new ArrayList<>();
+        for (Uri uri : uris) {
+            files.add(() -> resolver.openInputStream(uri));
+        }
+        return new IncrementalBackup(db).restore(files, progress);
+    }
+
+    // ============================
+    // 🔔 Reporting
+    // ============================
+
+    private void progress(String title, String message) {
+        status.postValue(new Status(title, message));
+    }
+
+    // Main thread; Settings may be gone by now, so report through the application context
+    private void finish(String message, int length) {
+        Log.d(TAG, "🏁" + message);
+        status.setValue(null);
+        Toast.makeText(getApplication(), message, length).show();
+    }
+
+    private static String describe(Exception error) {
+        if (error instanceof RejectedExecutionException) {
+            return "the app is busy, try again in a moment";
+        }
+        return error.getMessage();
+    }
+}
@@ -7,8 +7,12 @@ import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
-import java.text.SimpleDateFormat;
+import com.AbdulPaito.medtrack.database.Medicine;
+import com.AbdulPaito.medtrack.database.Recurrence;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
@@ -22,6 +26,7 @@ public class CalendarActivity extends AppCompatActivity {
     private HistoryCalendarAdapter adapter;
     private DatabaseHelper dbHelper;
     private List<HistoryItem> historyList;
+    private DatabaseExecutor.Task dayQuery;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,7 +43,7 @@ public class CalendarActivity extends AppCompatActivity {
         textDayInfo = findViewById(R.id.textDayInfo);
         textEmptyState = findViewById(R.id.textEmptyState);
         recyclerViewHistory = findViewById(R.id.recyclerViewHistory);
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
 
         // Setup RecyclerView
         historyList = new ArrayList<>();
@@ -68,17 +73,44 @@ public class CalendarActivity extends AppCompatActivity {
 
     private void showDayHistory(String date, int day, int month, int year) {
         // Format display date
-        Calendar cal = Calendar.getInstance();
-        cal.set(year, month, day);
-        SimpleDateFormat displayFormat = new SimpleDateFormat("EEEE, MMMM dd, yyyy", Locale.getDefault());
-        textSelectedDate.setText(displayFormat.format(cal.getTime()));
+        LocalDate selectedDay = LocalDate.of(year, month + 1, day);
+        textSelectedDate.setText(TimeUtils.formatLongDate(selectedDay));
 
-        // Get history for this date
-        List<HistoryItem> dayHistory = dbHelper.getHistoryByDate(date);
-        
+        // Get history for this date; a newer selection supersedes the pending one
+        if (dayQuery != null) {
+            dayQuery.cancel();
+        }
+        dayQuery = DatabaseExecutor.getInstance(this).execute(this,
+                db -> new DayData(db.getHistoryByDate(date),
+                        countScheduledDoses(db.getAllMedicines(), selectedDay, ZoneId.systemDefault())),
+                this::showDayItems);
+    }
+
+    /**
+     * Doses the medicines' recurrences put on {@code day}, expanded with the same
+     * occurrence generator the alarm scheduler uses.
+     */
+    static int countScheduledDoses(List<Medicine> medicines, LocalDate day, ZoneId zone) {
+        long dayStart = day.atStartOfDay(zone).toInstant().toEpochMilli();
+        long dayEnd = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        int count = 0;
+        for (Medicine medicine : medicines) {
+            Recurrence recurrence = medicine.getRecurrence();
+            if (recurrence == null || !recurrence.isScheduledOn(day)) continue;
+            Recurrence.Occurrences doses = recurrence.occurrencesAfter(dayStart - 1, zone);
+            for (long at = doses.next(); at >= 0 && at < dayEnd; at = doses.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void showDayItems(DayData data) {
+        List<HistoryItem> dayHistory = data.history;
+        String scheduled = "🗓️ Scheduled: " + data.scheduledDoses + " dose(s)";
         if (dayHistory.isEmpty()) {
             // Show empty state
-            textDayInfo.setText("📭 No medicines recorded");
+            textDayInfo.setText(data.scheduledDoses > 0 ? scheduled : "📭 No medicines recorded");
             recyclerViewHistory.setVisibility(View.GONE);
             textEmptyState.setVisibility(View.VISIBLE);
         } else {
@@ -93,7 +125,7 @@ public class CalendarActivity extends AppCompatActivity {
             }
             
             String summary = "📊 Total: " + dayHistory.size() + " medicine(s) • " +
-                           "✅ Taken: " + taken + " • ❌ Missed: " + missed;
+                           "✅ Taken: " + taken + " • ❌ Missed: " + missed + "\n" + scheduled;
             textDayInfo.setText(summary);
             
             // Update RecyclerView
@@ -106,6 +138,17 @@ public class CalendarActivity extends AppCompatActivity {
         }
     }
 
+    // History recorded on a day plus what was planned for it
+    private static final class DayData {
+        final List<HistoryItem> history;
+        final int scheduledDoses;
+
+        DayData(List<HistoryItem> history, int scheduledDoses) {
+            this.history = history;
+            this.scheduledDoses = scheduledDoses;
+        }
+    }
+
     private String formatDate(int day, int month, int year) {
         // Format with leading zeros to match database format (dd/MM/yyyy)
         return String.format(Locale.getDefault(), "%02d/%02d/%d", day, month, year);
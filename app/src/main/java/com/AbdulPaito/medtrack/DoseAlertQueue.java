@@ -0,0 +1,147 @@
+package com.AbdulPaito.medtrack;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DoseAlertQueue - The dose alerts AlarmSoundService is ringing for
+ * One shared sound/vibration/wake-lock session runs while the queue has alerts; each dose is
+ * answered on its own, or rings out and gets its own auto-repeat. Plain Java so it runs in
+ * JVM unit tests - the service plugs its side effects in as a {@link Session}.
+ */
+public final class DoseAlertQueue {
+
+    /** Side effects of the queue, called with the queue's lock held. */
+    public interface Session {
+        /** First alert arrived: start sound, vibration and the wake lock. */
+        void start();
+
+        /** Alerts changed: refresh the foreground notification. */
+        void update(Alert head, int size);
+
+        /** The alert rang for the whole ring time without an answer. */
+        void expired(Alert alert);
+
+        /** Last alert is gone: stop ringing and release the wake lock. */
+        void stop();
+    }
+
+    /** One dose currently ringing. */
+    public static final class Alert {
+        public final int medicineId;
+        public final String medicineName;
+        public final String dosage;
+        final long startedAt;
+
+        Alert(int medicineId, String medicineName, String dosage, long startedAt) {
+            this.medicineId = medicineId;
+            this.medicineName = medicineName;
+            this.dosage = dosage;
+            this.startedAt = startedAt;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return medicineName + " (#" + medicineId + ")";
+        }
+    }
+
+    private final Map<Integer, Alert> alerts = new LinkedHashMap<>(); // oldest first
+    private final long ringMs;
+    private final Session session;
+
+    public DoseAlertQueue(long ringMs, Session session) {
+        this.ringMs = ringMs;
+        this.session = session;
+    }
+
+    /**
+     * Ring for a dose. A dose already ringing (e.g. its auto-repeat came in) restarts its ring
+     * time instead of being queued twice. Returns true when the dose wasn't queued before.
+     */
+    public synchronized boolean offer(int medicineId, String medicineName, String dosage, long now) {
+        boolean wasIdle = alerts.isEmpty();
+        Alert previous = alerts.remove(medicineId);
+        alerts.put(medicineId, new Alert(medicineId, medicineName, dosage, now));
+        if (wasIdle) {
+            session.start();
+        }
+        session.update(head(), alerts.size());
+        return previous == null;
+    }
+
+    /** The dose was answered (taken, snoozed or stopped). Returns false if it wasn't ringing. */
+    public synchronized boolean resolve(int medicineId) {
+        if (alerts.remove(medicineId) == null) return false;
+        afterRemoval();
+        return true;
+    }
+
+    /**
+     * Hand every alert that has rung for {@code ringMs} to {@link Session#expired}.
+     * Returns the next time this should be called, or -1 once the queue is empty.
+     */
+    public synchronized long expire(long now) {
+        List<Alert> expired = new ArrayList<>();
+        Iterator<Alert> it = alerts.values().iterator();
+        while (it.hasNext()) {
+            Alert alert = it.next();
+            if (alert.startedAt + ringMs <= now) {
+                expired.add(alert);
+                it.remove();
+            }
+        }
+        for (Alert alert : expired) {
+            session.expired(alert);
+        }
+        if (!expired.isEmpty()) {
+            afterRemoval();
+        }
+        return nextDeadline();
+    }
+
+    /** When the oldest alert rings out, or -1 when nothing is ringing. */
+    public synchronized long nextDeadline() {
+        long deadline = -1;
+        for (Alert alert : alerts.values()) {
+            long at = alert.startedAt + ringMs;
+            if (deadline < 0 || at < deadline) deadline = at;
+        }
+        return deadline;
+    }
+
+    public synchronized int size() {
+        return alerts.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return alerts.isEmpty();
+    }
+
+    /** Oldest ringing dose, or null. */
+    public synchronized Alert peek() {
+        return alerts.isEmpty() ? null : head();
+    }
+
+    public synchronized boolean contains(int medicineId) {
+        return alerts.containsKey(medicineId);
+    }
+
+    private Alert head() {
+        return alerts.values().iterator().next();
+    }
+
+    private void afterRemoval() {
+        if (alerts.isEmpty()) {
+            session.stop();
+        } else {
+            session.update(head(), alerts.size());
+        }
+    }
+}
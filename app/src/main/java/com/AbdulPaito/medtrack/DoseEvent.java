@@ -0,0 +1,62 @@
+package com.AbdulPaito.medtrack;
+
+import androidx.annotation.NonNull;
+
+/**
+ * DoseEvent - One upcoming alarm-worthy moment for a medicine
+ * Either the dose itself or the 5-minute heads-up before it.
+ */
+public final class DoseEvent implements Comparable<DoseEvent> {
+
+    public enum Kind { REMINDER, DOSE }
+
+    private final int medicineId;
+    private final String medicineName;
+    private final String dosage;
+    private final long triggerAt; // epoch millis
+    private final Kind kind;
+
+    public DoseEvent(int medicineId, String medicineName, String dosage, long triggerAt, Kind kind) {
+        this.medicineId = medicineId;
+        this.medicineName = medicineName;
+        this.dosage = dosage;
+        this.triggerAt = triggerAt;
+        this.kind = kind;
+    }
+
+    public int getMedicineId() {
+        return medicineId;
+    }
+
+    public String getMedicineName() {
+        return medicineName;
+    }
+
+    public String getDosage() {
+        return dosage;
+    }
+
+    public long getTriggerAt() {
+        return triggerAt;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    // Earliest first; at the same instant reminders sort before doses, then by medicine
+    @Override
+    public int compareTo(@NonNull DoseEvent other) {
+        int byTime = Long.compare(triggerAt, other.triggerAt);
+        if (byTime != 0) return byTime;
+        int byKind = kind.compareTo(other.kind);
+        if (byKind != 0) return byKind;
+        return Integer.compare(medicineId, other.medicineId);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return kind + " " + medicineName + " (#" + medicineId + ") @ " + triggerAt;
+    }
+}
@@ -0,0 +1,125 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.Medicine;
+import com.AbdulPaito.medtrack.database.Recurrence;
+
+import java.time.Clock;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * DoseQueue - Upcoming dose events ordered by trigger time
+ * Only the head of the queue is ever armed with AlarmManager; when it fires, everything
+ * due in the same window is drained at once. Plain Java so it runs in JVM unit tests.
+ * Doses are kept as wall-clock intent (Recurrence) and only turned into instants for the
+ * Clock's zone here, so DST shifts and time zone changes land on the right local time.
+ */
+public final class DoseQueue {
+
+    static final long REMINDER_LEAD_MS = 5 * 60 * 1000L;       // heads-up 5 minutes before the dose
+    static final long MIN_REMINDER_NOTICE_MS = 60 * 1000L;     // skip a heads-up that would fire right away
+    static final long COALESCE_WINDOW_MS = 30 * 1000L;         // events this close to "now" fire together
+    static final long MAX_LATE_DELIVERY_MS = 15 * 60 * 1000L;  // how far back a late batch alarm may reach
+
+    private final PriorityQueue<DoseEvent> queue = new PriorityQueue<>();
+
+    /**
+     * Queue the next dose of every medicine strictly after {@code fromMillis} (per its
+     * Recurrence), plus its 5-minute reminder when that is still far enough ahead.
+     */
+    public static DoseQueue build(List<Medicine> medicines, long fromMillis, ZoneId zone) {
+        return build(medicines, fromMillis, zone, MIN_REMINDER_NOTICE_MS);
+    }
+
+    private static DoseQueue build(List<Medicine> medicines, long fromMillis, ZoneId zone, long reminderNoticeMs) {
+        DoseQueue doses = new DoseQueue();
+        for (Medicine medicine : medicines) {
+            doses.addMedicine(medicine, fromMillis, zone, reminderNoticeMs);
+        }
+        return doses;
+    }
+
+    /** Next events after the clock's current instant, resolved in the clock's zone. */
+    public static DoseQueue build(List<Medicine> medicines, Clock clock) {
+        return build(medicines, clock.millis(), clock.getZone());
+    }
+
+    /**
+     * The batch alarm armed for {@code triggerAt} went off at {@code clock.millis()}: collect
+     * every event due in this window and queue what comes after it. A late delivery still
+     * finds the doses it was meant for; doses coalesced into this window aren't queued again.
+     * {@code triggerAt} comes from the broadcast, so it is clamped to MAX_LATE_DELIVERY_MS before now.
+     */
+    public static Batch fire(List<Medicine> medicines, long triggerAt, Clock clock) {
+        long now = clock.millis();
+        ZoneId zone = clock.getZone();
+        long armedAt = triggerAt > 0 ? Math.max(Math.min(triggerAt, now), now - MAX_LATE_DELIVERY_MS) : now;
+        long windowStart = armedAt - COALESCE_WINDOW_MS;
+        // The window starts just before the armed time, so a heads-up that was armed must not be
+        // dropped for short notice - that rule is for arming, not for delivering
+        List<DoseEvent> due = build(medicines, windowStart, zone, 0).pollDue(now);
+        DoseQueue upcoming = build(medicines, now + COALESCE_WINDOW_MS, zone);
+        return new Batch(due, upcoming);
+    }
+
+    /** Result of {@link #fire}: events to deliver now and the queue whose head gets armed next. */
+    public static final class Batch {
+        public final List<DoseEvent> due;
+        public final DoseQueue upcoming;
+
+        Batch(List<DoseEvent> due, DoseQueue upcoming) {
+            this.due = due;
+            this.upcoming = upcoming;
+        }
+    }
+
+    public void addMedicine(Medicine medicine, long fromMillis, ZoneId zone) {
+        addMedicine(medicine, fromMillis, zone, MIN_REMINDER_NOTICE_MS);
+    }
+
+    private void addMedicine(Medicine medicine, long fromMillis, ZoneId zone, long reminderNoticeMs) {
+        if (!medicine.isActive()) return;
+        Recurrence recurrence = medicine.getRecurrence();
+        if (recurrence == null) return;
+
+        long doseAt = recurrence.nextAfter(fromMillis, zone);
+        if (doseAt < 0) return; // course finished
+        queue.add(new DoseEvent(medicine.getId(), medicine.getMedicineName(), medicine.getDosage(),
+                doseAt, DoseEvent.Kind.DOSE));
+
+        long reminderAt = doseAt - REMINDER_LEAD_MS;
+        if (reminderAt > fromMillis && reminderAt >= fromMillis + reminderNoticeMs) {
+            queue.add(new DoseEvent(medicine.getId(), medicine.getMedicineName(), medicine.getDosage(),
+                    reminderAt, DoseEvent.Kind.REMINDER));
+        }
+    }
+
+    public void add(DoseEvent event) {
+        queue.add(event);
+    }
+
+    /** Trigger time of the earliest event, or -1 when nothing is scheduled. */
+    public long nextTriggerAt() {
+        DoseEvent head = queue.peek();
+        return head == null ? -1 : head.getTriggerAt();
+    }
+
+    /** Remove and return every event due by {@code nowMillis} (within the coalescing window), earliest first. */
+    public List<DoseEvent> pollDue(long nowMillis) {
+        List<DoseEvent> due = new ArrayList<>();
+        while (!queue.isEmpty() && queue.peek().getTriggerAt() <= nowMillis + COALESCE_WINDOW_MS) {
+            due.add(queue.poll());
+        }
+        return due;
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
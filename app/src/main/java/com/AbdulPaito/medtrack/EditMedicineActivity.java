@@ -12,6 +12,7 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 import com.AbdulPaito.medtrack.database.Medicine;
+import com.AbdulPaito.medtrack.database.Recurrence;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.android.material.textfield.TextInputEditText;
 import java.util.Calendar;
@@ -45,7 +46,7 @@ public class EditMedicineActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        databaseHelper = new DatabaseHelper(this);
+        databaseHelper = DatabaseHelper.getInstance(this);
         medicineId = getIntent().getIntExtra("MEDICINE_ID", -1);
         
         initViews();
@@ -190,6 +191,8 @@ public class EditMedicineActivity extends AppCompatActivity {
         medicine.setReminderTime(reminderTime);
         medicine.setReminderDate(selectedDate);
         medicine.setFrequency(frequency);
+        // Re-derive the schedule; the stored one was built from the old frequency/time/date
+        medicine.setRecurrence(Recurrence.fromFrequency(frequency, reminderTime, selectedDate));
 
         int rowsAffected = databaseHelper.updateMedicine(medicine);
 
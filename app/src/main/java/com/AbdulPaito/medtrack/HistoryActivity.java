@@ -11,12 +11,10 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 import com.google.android.material.button.MaterialButton;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class HistoryActivity extends AppCompatActivity {
 
     private RecyclerView recyclerView;
@@ -26,7 +24,6 @@ public class HistoryActivity extends AppCompatActivity {
     private TextView textTotalTaken;
     private LinearLayout emptyState;
     private MaterialButton btnFilterAll, btnFilterTaken, btnFilterMissed;
-    private List<HistoryItem> allHistory;
     private String currentFilter = "All";
 
     @Override
@@ -48,7 +45,11 @@ public class HistoryActivity extends AppCompatActivity {
         btnFilterTaken = findViewById(R.id.btn_filter_taken);
         btnFilterMissed = findViewById(R.id.btn_filter_missed);
 
-        dbHelper = new DatabaseHelper(this);
+        dbHelper = DatabaseHelper.getInstance(this);
+
+        // One adapter for the screen's lifetime; filters just restart its paging
+        adapter = new HistoryAdapter(this, DatabaseExecutor.getInstance(this), this::showEmptyState);
+        recyclerView.setAdapter(adapter);
 
         setupFilterButtons();
         updateHistoryList();
@@ -95,49 +96,26 @@ public class HistoryActivity extends AppCompatActivity {
     }
 
     private void updateHistoryList() {
-        allHistory = dbHelper.getAllHistory();
-
-        int count = allHistory.size();
-        textTotalTaken.setText("Total medicines taken: " + count);
-
-        if (count == 0) {
-            emptyState.setVisibility(LinearLayout.VISIBLE);
-            recyclerView.setVisibility(RecyclerView.GONE);
-        } else {
-            emptyState.setVisibility(LinearLayout.GONE);
-            recyclerView.setVisibility(RecyclerView.VISIBLE);
+        DatabaseExecutor.getInstance(this).execute(this,
+                db -> db.getHistoryCount(null),
+                count -> textTotalTaken.setText("Total medicines taken: " + count));
 
-            adapter = new HistoryAdapter(allHistory);
-            recyclerView.setAdapter(adapter);
-        }
-        
         updateFilterButtons();
+        filterHistory();
     }
 
     private void filterHistory() {
-        if (allHistory == null) return;
-
-        List<HistoryItem> filteredList = new ArrayList<>();
-
-        if (currentFilter.equals("All")) {
-            filteredList = allHistory;
-        } else {
-            for (HistoryItem item : allHistory) {
-                if (item.getStatus().equals(currentFilter)) {
-                    filteredList.add(item);
-                }
-            }
-        }
+        // Status filter runs in SQL; "All" pages every row
+        adapter.setStatusFilter(currentFilter.equals("All") ? null : currentFilter);
+    }
 
-        if (filteredList.isEmpty()) {
+    private void showEmptyState(boolean empty) {
+        if (empty) {
             emptyState.setVisibility(LinearLayout.VISIBLE);
             recyclerView.setVisibility(RecyclerView.GONE);
         } else {
             emptyState.setVisibility(LinearLayout.GONE);
             recyclerView.setVisibility(RecyclerView.VISIBLE);
-
-            adapter = new HistoryAdapter(filteredList);
-            recyclerView.setAdapter(adapter);
         }
     }
 
@@ -8,20 +8,129 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
+
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * HistoryAdapter - Pages history in from the database as the list scrolls
+ * Each page is a keyset query (history_id below the last loaded row), so only
+ * the rows near the screen are ever held in memory. Loaded pages are diffed
+ * into the list on a background thread, so only new or changed rows rebind.
+ */
+public class HistoryAdapter extends ListAdapter<HistoryItem, HistoryAdapter.ViewHolder> {
+
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 15; // rows from the end before the next page loads
+
+    private static final DiffUtil.ItemCallback<HistoryItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<HistoryItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull HistoryItem oldItem, @NonNull HistoryItem newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull HistoryItem oldItem, @NonNull HistoryItem newItem) {
+            return Objects.equals(oldItem.getMedicineName(), newItem.getMedicineName())
+                    && Objects.equals(oldItem.getDate(), newItem.getDate())
+                    && Objects.equals(oldItem.getTime(), newItem.getTime())
+                    && Objects.equals(oldItem.getStatus(), newItem.getStatus());
+        }
+    };
+
+    /**
+     * Told when the first page for a filter arrives, e.g. to toggle the empty state, and also
+     * when it can't be loaded, with whether the list is left empty.
+     */
+    public interface OnFirstPageListener {
+        void onFirstPage(boolean empty);
+    }
 
-public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder> {
+    private final LifecycleOwner owner;
+    private final DatabaseExecutor executor;
+    private final OnFirstPageListener firstPageListener;
+    private List<HistoryItem> loaded = new ArrayList<>();
+
+    private String statusFilter; // null = all statuses
+    private boolean endReached;
+    private boolean restartPending; // next page replaces the list instead of extending it
+    private boolean firstPageRetried;
+    private DatabaseExecutor.Task pageQuery;
+
+    public HistoryAdapter(LifecycleOwner owner, DatabaseExecutor executor, OnFirstPageListener listener) {
+        super(DIFF_CALLBACK);
+        this.owner = owner;
+        this.executor = executor;
+        this.firstPageListener = listener;
+        setHasStableIds(true);
+    }
 
-    private List<HistoryItem> historyList;
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
 
-    public HistoryAdapter(List<HistoryItem> historyList) {
-        this.historyList = historyList;
+    /**
+     * Start paging again from the newest row with the status pushed into SQL.
+     * The old rows stay on screen until the first new page is diffed in.
+     */
+    public void setStatusFilter(String status) {
+        statusFilter = status;
+        if (pageQuery != null) {
+            pageQuery.cancel(); // a page for the old filter must not land in the new list
+            pageQuery = null;
+        }
+        restartPending = true;
+        endReached = false;
+        firstPageRetried = false;
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (endReached || (pageQuery != null && !pageQuery.isCancelled())) return;
+
+        boolean firstPage = restartPending || loaded.isEmpty();
+        long beforeId = firstPage ? Long.MAX_VALUE : loaded.get(loaded.size() - 1).getId();
+        String status = statusFilter;
+        pageQuery = executor.execute(owner,
+                db -> db.getHistoryPage(status, beforeId, PAGE_SIZE),
+                page -> {
+                    pageQuery = null;
+                    firstPageRetried = false;
+                    endReached = page.size() < PAGE_SIZE;
+                    if (firstPage) {
+                        restartPending = false;
+                        loaded = new ArrayList<>(page);
+                    } else {
+                        loaded.addAll(page);
+                    }
+                    submitList(new ArrayList<>(loaded));
+                    if (firstPage && firstPageListener != null) {
+                        firstPageListener.onFirstPage(page.isEmpty());
+                    }
+                },
+                error -> {
+                    pageQuery = null;
+                    if (!firstPage) return; // the next scroll asks for the page again
+                    // Nothing may be on screen to scroll, so the first page gets one retry,
+                    // then the screen is told so it doesn't sit there blank
+                    if (!firstPageRetried) {
+                        firstPageRetried = true;
+                        loadNextPage();
+                        return;
+                    }
+                    firstPageRetried = false;
+                    if (firstPageListener != null) {
+                        firstPageListener.onFirstPage(getItemCount() == 0);
+                    }
+                });
     }
 
     @NonNull
@@ -34,17 +143,20 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        HistoryItem item = historyList.get(position);
+        HistoryItem item = getItem(position);
+        if (position >= getItemCount() - PREFETCH_DISTANCE) {
+            loadNextPage(); // result is posted, so the insert never lands mid-layout
+        }
 
         // Show medicine name with label
         holder.textMedicineName.setText("Medicine Name: " + item.getMedicineName());
 
         // Convert 24-hour time (if applicable) to 12-hour format with AM/PM
-        String formattedTime = formatTo12Hour(item.getTime());
+        String formattedTime = TimeUtils.formatTime12h(item.getTime());
         holder.textMedicineTime.setText("Taken at: " + formattedTime);
 
         // Show date (e.g., Oct 20, 2025)
-        String formattedDate = formatDate(item.getDate());
+        String formattedDate = formatDate(item);
         holder.textMedicineDate.setText("Date: " + formattedDate);
 
         // Show status
@@ -64,11 +176,6 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
         }
     }
 
-    @Override
-    public int getItemCount() {
-        return historyList.size();
-    }
-
     public static class ViewHolder extends RecyclerView.ViewHolder {
         TextView textMedicineName, textMedicineTime, textMedicineDate, textStatus;
         ImageView iconBackground, iconStatus; // ✅ NEW: Added icon views
@@ -84,27 +191,10 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
         }
     }
 
-    // Helper method to format 24-hour time (e.g. "18:19") to 12-hour (e.g. "6:19 PM")
-    private String formatTo12Hour(String time) {
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("h:mm a", Locale.getDefault());
-            Date date = inputFormat.parse(time);
-            return outputFormat.format(date);
-        } catch (ParseException e) {
-            return time; // fallback if parsing fails
-        }
-    }
-
-    // Helper method to format date (e.g. "2025-10-20") to readable form (e.g. "Oct 20, 2025")
-    private String formatDate(String date) {
-        try {
-            SimpleDateFormat inputFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
-            SimpleDateFormat outputFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-            Date parsedDate = inputFormat.parse(date);
-            return outputFormat.format(parsedDate);
-        } catch (ParseException e) {
-            return date; // fallback if parsing fails
-        }
+    // Helper method to format the entry's date to readable form (e.g. "Oct 20, 2025")
+    // Rows with a taken_at timestamp skip string parsing; older rows show the stored date as is
+    private String formatDate(HistoryItem item) {
+        long takenAt = item.getTakenAt();
+        return takenAt > 0 ? TimeUtils.formatDisplayDate(takenAt) : item.getDate();
     }
 }
\ No newline at end of file
@@ -1,7 +1,6 @@
 package com.AbdulPaito.medtrack;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.time.LocalDate;
 
 public class HistoryItem {
     private int id;
@@ -9,6 +8,7 @@ public class HistoryItem {
     private String time;
     private String date;
     private String status;
+    private long takenAt; // epoch millis, 0 if unknown
 
     // Constructor – automatically sets current date
     public HistoryItem(String medicineName, String time, String status) {
@@ -35,10 +35,15 @@ public class HistoryItem {
         this.status = status;
     }
 
-    // Get current date in yyyy-MM-dd format
+    // Constructor with id and timestamp (for database retrieval)
+    public HistoryItem(int id, String medicineName, String date, String time, String status, long takenAt) {
+        this(id, medicineName, date, time, status);
+        this.takenAt = takenAt;
+    }
+
+    // Get current date in dd/MM/yyyy format (same as DatabaseHelper.addHistory)
     private String getCurrentDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        return sdf.format(new Date());
+        return TimeUtils.formatHistoryDate(LocalDate.now());
     }
 
     public int getId() {
@@ -60,4 +65,8 @@ public class HistoryItem {
     public String getStatus() {
         return status;
     }
+
+    public long getTakenAt() {
+        return takenAt;
+    }
 }
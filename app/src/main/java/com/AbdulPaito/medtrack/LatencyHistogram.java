@@ -0,0 +1,119 @@
+package com.AbdulPaito.medtrack;
+
+import androidx.annotation.NonNull;
+
+import com.AbdulPaito.medtrack.database.ReceiverLatency;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LatencyHistogram - Power-of-two millisecond buckets (≤1, ≤2, ≤4 ... ≤16384, more)
+ * Fixed size and allocation free on record(), so receivers can log every broadcast.
+ * Percentiles are reported as the upper bound of the bucket they fall in. AsyncReceiver also
+ * books every broadcast into receiver_latency, which the statistics report reads back.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = 16; // 2^0 .. 2^14 ms, plus one overflow bucket
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long max;
+    private long timeouts;
+
+    public synchronized void record(long ms) {
+        counts[bucket(ms)]++;
+        count++;
+        if (ms > max) max = ms;
+    }
+
+    /** Work that was still running at the deadline; also recorded as a latency. */
+    public synchronized void recordTimeout(long ms) {
+        timeouts++;
+        record(ms);
+    }
+
+    /** Add a persisted bucket row (see ReceiverLatency) to this histogram. */
+    public synchronized void merge(int bucket, long calls, long timeoutCalls, long maxMs) {
+        counts[Math.max(0, Math.min(bucket, BUCKETS - 1))] += calls;
+        count += calls;
+        timeouts += timeoutCalls;
+        if (maxMs > max) max = maxMs;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getMax() {
+        return max;
+    }
+
+    public synchronized long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * Upper bound in ms of the bucket holding the {@code q} quantile (0 < q ≤ 1);
+     * Long.MAX_VALUE when it is in the overflow bucket, 0 when nothing was recorded.
+     */
+    public synchronized long percentile(double q) {
+        if (count == 0) return 0;
+        long rank = (long) Math.ceil(q * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    /** One line per receiver, all days merged, for the statistics report. */
+    static String formatReport(List<ReceiverLatency> rows) {
+        if (rows.isEmpty()) {
+            return "• No broadcasts recorded\n";
+        }
+        Map<String, LatencyHistogram> receivers = new LinkedHashMap<>();
+        for (ReceiverLatency row : rows) {
+            LatencyHistogram histogram = receivers.get(row.getReceiver());
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                receivers.put(row.getReceiver(), histogram);
+            }
+            histogram.merge(row.getBucket(), row.getCalls(), row.getTimeouts(), row.getMaxMs());
+        }
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, LatencyHistogram> receiver : receivers.entrySet()) {
+            report.append("• ").append(receiver.getKey()).append(": ").append(receiver.getValue()).append('\n');
+        }
+        return report.toString();
+    }
+
+    static int bucket(long ms) {
+        if (ms <= 1) return 0;
+        // ceil(log2(ms)): 2 -> 1, 3..4 -> 2, 5..8 -> 3 ...
+        int bucket = 64 - Long.numberOfLeadingZeros(ms - 1);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    private static String bound(long ms) {
+        return ms == Long.MAX_VALUE ? ">" + (1L << (BUCKETS - 2)) + "ms" : "≤" + ms + "ms";
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "n=" + count
+                + " p50" + bound(percentile(0.5))
+                + " p90" + bound(percentile(0.9))
+                + " p99" + bound(percentile(0.99))
+                + " max=" + max + "ms"
+                + (timeouts > 0 ? " timeouts=" + timeouts : "");
+    }
+}
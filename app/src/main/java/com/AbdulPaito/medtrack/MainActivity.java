@@ -24,6 +24,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.card.MaterialCardView;
@@ -41,6 +42,7 @@ public class MainActivity extends AppCompatActivity {
     private BottomNavigationView bottomNav;
     private DatabaseHelper databaseHelper;
     private SharedPreferences prefs;
+    private boolean alarmStatusShown;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -49,7 +51,7 @@ public class MainActivity extends AppCompatActivity {
         try {
             setContentView(R.layout.activity_main);
 
-            databaseHelper = new DatabaseHelper(this);
+            databaseHelper = DatabaseHelper.getInstance(this);
             prefs = getSharedPreferences("MedTrackPrefs", MODE_PRIVATE);
             
             initViews();
@@ -61,17 +63,6 @@ public class MainActivity extends AppCompatActivity {
             // Check if opened by alarm
             handleAlarmIntent();
             
-            // Start background service to keep app alive (with error handling)
-            // Temporarily disabled to fix crash
-            /*
-            try {
-                startBackgroundService();
-            } catch (Exception e) {
-                android.util.Log.e("MainActivity", "Failed to start background service", e);
-                // Continue without background service if it fails
-            }
-            */
-            
             // Always check and request permissions if not granted
             checkAndRequestPermissionsIfNeeded();
         } catch (Exception e) {
@@ -80,19 +71,6 @@ public class MainActivity extends AppCompatActivity {
         }
     }
     
-    private void startBackgroundService() {
-        try {
-            Intent serviceIntent = new Intent(this, BackgroundKeepAliveService.class);
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-                startForegroundService(serviceIntent);
-            } else {
-                startService(serviceIntent);
-            }
-        } catch (Exception e) {
-            android.util.Log.e("MainActivity", "Failed to start background service", e);
-        }
-    }
-    
     private void handleAlarmIntent() {
         Intent intent = getIntent();
         if (intent != null && intent.getBooleanExtra("alarm_active", false)) {
@@ -108,6 +86,7 @@ public class MainActivity extends AppCompatActivity {
     
     private void showAlarmStatus(String medicineName, String dosage) {
         // Show a persistent alarm status in the UI
+        alarmStatusShown = true;
         textNextReminder.setText("🔔 ALARM ACTIVE: " + medicineName + " (" + dosage + ")");
         textNextReminder.setTextColor(getResources().getColor(android.R.color.holo_red_dark));
         
@@ -268,14 +247,28 @@ public class MainActivity extends AppCompatActivity {
                 return;
             }
             
-            int count = databaseHelper.getMedicineCount();
-            int adherenceRate = databaseHelper.getAdherenceRate();
-            int streak = databaseHelper.getCurrentStreak();
-            
+            // Query off the main thread, render when the results come back
+            DatabaseExecutor.getInstance(this).execute(this,
+                    DatabaseHelper::getStatsSnapshot,
+                    stats -> showStats(stats.getActiveMedicineCount(), stats.getAdherenceRate(),
+                            stats.getCurrentStreak()));
+        } catch (Exception e) {
+            android.util.Log.e("MainActivity", "Error updating stats", e);
+        }
+    }
+
+    private void showStats(int count, int adherenceRate, int streak) {
+        try {
             if (textMedicineCount == null || textNextReminder == null) {
                 return; // Views not initialized yet
             }
             
+            // Stats arrive asynchronously - don't overwrite an active alarm banner
+            if (alarmStatusShown) {
+                textMedicineCount.setText(count == 1 ? "1 medicine scheduled" : count + " medicines scheduled");
+                return;
+            }
+            
             if (count == 0) {
                 textMedicineCount.setText("No medicines added yet");
                 textNextReminder.setText("Add your first medicine to get started!");
@@ -3,6 +3,7 @@ package com.AbdulPaito.medtrack;
 import android.app.Application;
 import android.content.SharedPreferences;
 import androidx.appcompat.app.AppCompatDelegate;
+import com.AbdulPaito.medtrack.database.DatabaseHelper;
 
 /**
  * Application class to set app-wide configurations
@@ -15,5 +16,9 @@ public class MedTrackApplication extends Application {
         
         // Force light mode always - ignore system dark mode
         AppCompatDelegate.setDefaultNightMode(AppCompatDelegate.MODE_NIGHT_NO);
+
+        // Create the process-wide database helper; it keeps one WAL connection
+        // open for the lifetime of the process instead of reopening per call
+        DatabaseHelper.getInstance(this);
     }
 }
@@ -9,23 +9,64 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.AbdulPaito.medtrack.database.DatabaseHelper;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.Medicine;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
+import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+
+/**
+ * MedicineAdapter - Medicine cards diffed on a background thread
+ * New lists go through submitList(); only rows whose id or shown fields changed are rebound.
+ */
+public class MedicineAdapter extends ListAdapter<Medicine, MedicineAdapter.MedicineViewHolder> {
+
+    private static final DiffUtil.ItemCallback<Medicine> DIFF_CALLBACK = new DiffUtil.ItemCallback<Medicine>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Medicine oldItem, @NonNull Medicine newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Medicine oldItem, @NonNull Medicine newItem) {
+            return Objects.equals(oldItem.getMedicineName(), newItem.getMedicineName())
+                    && Objects.equals(oldItem.getDosage(), newItem.getDosage())
+                    && Objects.equals(oldItem.getReminderTime(), newItem.getReminderTime())
+                    && Objects.equals(oldItem.getReminderDate(), newItem.getReminderDate())
+                    && Objects.equals(oldItem.getFrequency(), newItem.getFrequency())
+                    && Objects.equals(oldItem.getInstructions(), newItem.getInstructions());
+        }
+    };
 
-public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.MedicineViewHolder> {
+    /** Told after a card is marked taken/missed and its medicine deleted. */
+    public interface OnMedicineRemovedListener {
+        void onMedicineRemoved(Medicine medicine);
+    }
 
     private final Context context;
-    private final List<Medicine> medicineList;
+    private OnMedicineRemovedListener removedListener;
 
-    public MedicineAdapter(Context context, List<Medicine> medicineList) {
+    public MedicineAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.medicineList = medicineList;
+        setHasStableIds(true);
+    }
+
+    public void setOnMedicineRemovedListener(OnMedicineRemovedListener listener) {
+        this.removedListener = listener;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     @NonNull
@@ -38,12 +79,12 @@ public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.Medici
 
     @Override
     public void onBindViewHolder(@NonNull MedicineViewHolder holder, int position) {
-        Medicine medicine = medicineList.get(position);
+        Medicine medicine = getItem(position);
 
         // 🩷 Display details with icons and bold text
         holder.textMedicineName.setText(medicine.getMedicineName());
         holder.textDosage.setText(medicine.getDosage());
-        holder.textTime.setText(formatTime(medicine.getReminderTime()));
+        holder.textTime.setText(formatTime(medicine));
         holder.textDate.setText(medicine.getReminderDate());
         holder.textFrequency.setText(medicine.getFrequency());
         holder.textInstructions.setText(medicine.getInstructions());
@@ -69,23 +110,7 @@ public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.Medici
                     .setTitle("✅ Mark as Taken")
                     .setMessage("Did you take " + medicine.getMedicineName() + "?")
                     .setPositiveButton("Yes", (dialog, which) -> {
-                        DatabaseHelper dbHelper = new DatabaseHelper(context);
-                        dbHelper.addHistory(medicine.getMedicineName(),
-                                medicine.getReminderTime(),
-                                "Taken");
-
-                        // CRITICAL FIX: Cancel alarms before deleting medicine
-                        AlarmScheduler alarmScheduler = new AlarmScheduler(context);
-                        alarmScheduler.cancelMedicineAlarm(medicine.getId());
-
-                        dbHelper.deleteMedicine(medicine.getId());
-
-                        int pos = holder.getAdapterPosition();
-                        if (pos != RecyclerView.NO_POSITION) {
-                            medicineList.remove(pos);
-                            notifyItemRemoved(pos);
-                        }
-
+                        markDose(medicine, "Taken");
                         Toast.makeText(context, "Marked as Taken ✅", Toast.LENGTH_SHORT).show();
                     })
                     .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
@@ -99,23 +124,7 @@ public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.Medici
                     .setTitle("❌ Mark as Missed")
                     .setMessage("Did you miss " + medicine.getMedicineName() + "?")
                     .setPositiveButton("Yes", (dialog, which) -> {
-                        DatabaseHelper dbHelper = new DatabaseHelper(context);
-                        dbHelper.addHistory(medicine.getMedicineName(),
-                                medicine.getReminderTime(),
-                                "Missed");
-
-                        // CRITICAL FIX: Cancel alarms before deleting medicine
-                        AlarmScheduler alarmScheduler = new AlarmScheduler(context);
-                        alarmScheduler.cancelMedicineAlarm(medicine.getId());
-
-                        dbHelper.deleteMedicine(medicine.getId());
-
-                        int pos = holder.getAdapterPosition();
-                        if (pos != RecyclerView.NO_POSITION) {
-                            medicineList.remove(pos);
-                            notifyItemRemoved(pos);
-                        }
-
+                        markDose(medicine, "Missed");
                         Toast.makeText(context, "Marked as Missed ❌", Toast.LENGTH_SHORT).show();
                     })
                     .setNegativeButton("Cancel", (dialog, which) -> dialog.dismiss())
@@ -124,16 +133,34 @@ public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.Medici
         });
     }
 
-    @Override
-    public int getItemCount() {
-        return medicineList.size();
+    // Update list for search functionality - diffed against what's on screen
+    public void updateList(List<Medicine> newList) {
+        submitList(new ArrayList<>(newList));
     }
 
-    // Update list for search functionality
-    public void updateList(List<Medicine> newList) {
-        medicineList.clear();
-        medicineList.addAll(newList);
-        notifyDataSetChanged();
+    // Card goes at once; the history row, alarm cancel and delete run on a database thread
+    private void markDose(Medicine medicine, String status) {
+        Context appContext = context.getApplicationContext();
+        DatabaseExecutor.getInstance(context).execute(db -> {
+            db.addHistory(medicine.getId(), medicine.getMedicineName(),
+                    medicine.getReminderTime(), status);
+
+            // CRITICAL FIX: Cancel alarms before deleting medicine
+            new AlarmScheduler(appContext).cancelMedicineAlarm(medicine.getId());
+
+            db.deleteMedicine(medicine.getId());
+            return null;
+        });
+        removeItem(medicine);
+    }
+
+    private void removeItem(Medicine medicine) {
+        List<Medicine> remaining = new ArrayList<>(getCurrentList());
+        remaining.remove(medicine);
+        submitList(remaining);
+        if (removedListener != null) {
+            removedListener.onMedicineRemoved(medicine);
+        }
     }
 
     // 🧩 ViewHolder class
@@ -155,17 +182,9 @@ public class MedicineAdapter extends RecyclerView.Adapter<MedicineAdapter.Medici
     }
 
     // 🕓 Convert 24-hour time (e.g., "14:30") → 12-hour format ("2:30 PM")
-    private String formatTime(String time24) {
-        try {
-            String[] parts = time24.split(":");
-            int hour = Integer.parseInt(parts[0]);
-            int minute = Integer.parseInt(parts[1]);
-            String amPm = hour >= 12 ? "PM" : "AM";
-            int displayHour = hour % 12;
-            if (displayHour == 0) displayHour = 12;
-            return String.format("%d:%02d %s", displayHour, minute, amPm);
-        } catch (Exception e) {
-            return time24;
-        }
+    // The parsed LocalTime is cached on the Medicine, so rebinding only formats
+    private String formatTime(Medicine medicine) {
+        LocalTime time = medicine.getReminderLocalTime();
+        return time != null ? TimeUtils.formatTime12h(time) : medicine.getReminderTime();
     }
 }
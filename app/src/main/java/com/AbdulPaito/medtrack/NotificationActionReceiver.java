@@ -1,22 +1,19 @@
 package com.AbdulPaito.medtrack;
 
-import android.app.AlarmManager;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
-import android.os.Build;
-import android.widget.Toast;
+import com.AbdulPaito.medtrack.database.AlarmLedgerEntry;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 
 /**
  * NotificationActionReceiver - Handles notification button actions
+ * Runs on the AsyncReceiver pool, so marking a dose taken no longer touches SQLite on the main thread.
  */
-public class NotificationActionReceiver extends BroadcastReceiver {
+public class NotificationActionReceiver extends AsyncReceiver {
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         String action = intent.getAction();
         int medicineId = intent.getIntExtra("medicine_id", -1);
         String medicineName = intent.getStringExtra("medicine_name");
@@ -24,9 +21,8 @@ public class NotificationActionReceiver extends BroadcastReceiver {
 
         if (action == null || medicineId == -1) return;
 
-        // Stop alarm sound service
-        Intent stopServiceIntent = new Intent(context, AlarmSoundService.class);
-        context.stopService(stopServiceIntent);
+        // Stop ringing for this dose; other doses in the session keep ringing
+        AlarmSoundService.resolve(context, medicineId);
 
         // Cancel all scheduled repeats for this medicine
         cancelAutoRepeat(context, medicineId);
@@ -53,6 +49,10 @@ public class NotificationActionReceiver extends BroadcastReceiver {
         if (notificationManager != null) {
             notificationManager.cancel(medicineId);
         }
+        // Only this dose leaves the grouped notifications; the rest of the group stays
+        NotificationAggregator aggregator = new NotificationAggregator(context);
+        aggregator.dismiss(NotificationAggregator.Stream.DOSES, medicineId);
+        aggregator.dismiss(NotificationAggregator.Stream.REMINDERS, medicineId);
     }
 
     private void moveToPending(Context context, int medicineId, String medicineName) {
@@ -62,18 +62,17 @@ public class NotificationActionReceiver extends BroadcastReceiver {
         String pendingKey = "pending_medicine_" + medicineId;
         prefs.edit().putBoolean(pendingKey, true).apply();
         
-        Toast.makeText(context, "⏸️ " + medicineName + " moved to pending", Toast.LENGTH_SHORT).show();
+        showToast(context, "⏸️ " + medicineName + " moved to pending");
     }
 
     private void markAsTaken(Context context, int medicineId, String medicineName) {
-        DatabaseHelper dbHelper = new DatabaseHelper(context);
+        DatabaseHelper dbHelper = DatabaseHelper.getInstance(context);
 
         // Get current time in 12-hour format
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("h:mm a", java.util.Locale.getDefault());
-        String currentTime = sdf.format(new java.util.Date());
+        String currentTime = TimeUtils.formatTime12h(System.currentTimeMillis());
 
         // Add to history as "Taken"
-        dbHelper.addHistory(medicineName, currentTime, "Taken");
+        dbHelper.addHistory(medicineId, medicineName, currentTime, "Taken");
 
         // CRITICAL FIX: Cancel alarms before deleting medicine
         AlarmScheduler alarmScheduler = new AlarmScheduler(context);
@@ -87,57 +86,20 @@ public class NotificationActionReceiver extends BroadcastReceiver {
         String pendingKey = "pending_medicine_" + medicineId;
         prefs.edit().remove(pendingKey).apply();
 
-        Toast.makeText(context, "✅ " + medicineName + " marked as taken!", Toast.LENGTH_SHORT).show();
+        showToast(context, "✅ " + medicineName + " marked as taken!");
     }
 
     private void snoozeAlarm(Context context, int medicineId, String medicineName, String dosage) {
         // Schedule alarm for 5 minutes later
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        intent.putExtra("medicine_id", medicineId);
-        intent.putExtra("medicine_name", medicineName);
-        intent.putExtra("dosage", dosage);
-
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                medicineId,
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager != null) {
-            long triggerTime = System.currentTimeMillis() + (5 * 60 * 1000); // 5 minutes
-
-            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
-                alarmManager.setExactAndAllowWhileIdle(
-                        AlarmManager.RTC_WAKEUP,
-                        triggerTime,
-                        pendingIntent
-                );
-            } else {
-                alarmManager.setExact(
-                        AlarmManager.RTC_WAKEUP,
-                        triggerTime,
-                        pendingIntent
-                );
-            }
-        }
+        long triggerTime = System.currentTimeMillis() + (5 * 60 * 1000); // 5 minutes
+        new AlarmScheduler(context).scheduleFollowUp(AlarmLedgerEntry.KIND_SNOOZE,
+                medicineId, medicineName, dosage, triggerTime);
 
-        Toast.makeText(context, "⏰ Snoozed for 5 minutes", Toast.LENGTH_SHORT).show();
+        showToast(context, "⏰ Snoozed for 5 minutes");
     }
 
     private void cancelAutoRepeat(Context context, int medicineId) {
-        Intent intent = new Intent(context, AlarmReceiver.class);
-        PendingIntent pendingIntent = PendingIntent.getBroadcast(
-                context,
-                medicineId + 10000, // Same request code used for auto-repeat
-                intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        if (alarmManager != null) {
-            alarmManager.cancel(pendingIntent);
-        }
+        // Snooze and auto-repeat slots come from the alarm ledger, so both are found by medicine
+        new AlarmScheduler(context).cancelFollowUps(medicineId);
     }
-}
\ No newline at end of file
+}
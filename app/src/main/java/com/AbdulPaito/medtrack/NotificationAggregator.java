@@ -0,0 +1,274 @@
+package com.AbdulPaito.medtrack;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Bundle;
+import android.service.notification.StatusBarNotification;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NotificationAggregator - Folds doses that fire close together into one grouped notification
+ * Every dose gets its own child notification (with its own actions) under a single summary,
+ * and only the first post in an alert window makes noise: later doses in the window join the
+ * group silently, so the caller starts one sound session and takes one wake lock for all of them.
+ * The group's state is read back from the active notifications, so AlarmReceiver (:alarm) and
+ * ReminderNotificationReceiver (:reminder) need no shared memory.
+ */
+public final class NotificationAggregator {
+
+    private static final String TAG = "NotificationAggregator";
+
+    public static final long DEFAULT_WINDOW_MS = 60 * 1000L;
+    // AppSettings key; 0 alerts on every post
+    static final String PREF_WINDOW_SECONDS = "notification_window_seconds";
+
+    private static final String EXTRA_MEDICINE_ID = "com.AbdulPaito.medtrack.medicine_id";
+    private static final String EXTRA_LINE = "com.AbdulPaito.medtrack.line";
+    private static final String EXTRA_ALERTED_AT = "com.AbdulPaito.medtrack.alerted_at";
+
+    // Notifications are posted as (stream tag, id): children use the medicine id, which starts
+    // at 1, so the summary's id can't collide with a dose, in this stream or any other
+    static final int SUMMARY_ID = 0;
+
+    /** The two groups MedTrack posts: doses due now and 5-minute heads-ups. */
+    public enum Stream {
+        DOSES("com.AbdulPaito.medtrack.DOSES", "alarm_channel", 1000),
+        REMINDERS("com.AbdulPaito.medtrack.REMINDERS", "medicine_reminder_channel", 2000);
+
+        final String groupKey;     // also the notification tag
+        final String channelId;
+        final int requestCode;     // open-app PendingIntent
+
+        Stream(String groupKey, String channelId, int requestCode) {
+            this.groupKey = groupKey;
+            this.channelId = channelId;
+            this.requestCode = requestCode;
+        }
+    }
+
+    private final Context context;
+    private final NotificationManager notificationManager;
+    private final long windowMs;
+
+    public NotificationAggregator(Context context) {
+        this(context, context.getSharedPreferences("AppSettings", Context.MODE_PRIVATE)
+                .getLong(PREF_WINDOW_SECONDS, DEFAULT_WINDOW_MS / 1000) * 1000L);
+    }
+
+    public NotificationAggregator(Context context, long windowMs) {
+        this.context = context;
+        this.notificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        this.windowMs = windowMs;
+    }
+
+    /**
+     * Add {@code doses} to the stream's group and refresh its summary. The caller creates the
+     * channel first and only rings/wakes the screen when the returned plan says {@code alert}.
+     */
+    public Plan post(Stream stream, List<DoseEvent> doses) {
+        long now = System.currentTimeMillis();
+        if (notificationManager == null) {
+            return plan(new ArrayList<>(), 0, doses, now, windowMs);
+        }
+
+        // What the group already shows: medicine id -> summary line, plus when it last alerted
+        Map<Integer, String> active = new LinkedHashMap<>();
+        long lastAlertAt = 0;
+        for (StatusBarNotification sbn : notificationManager.getActiveNotifications()) {
+            Notification notification = sbn.getNotification();
+            if (notification == null || !stream.groupKey.equals(sbn.getTag())) continue;
+            Bundle extras = notification.extras;
+            if (sbn.getId() == SUMMARY_ID) {
+                lastAlertAt = extras.getLong(EXTRA_ALERTED_AT, 0);
+            } else {
+                String line = extras.getString(EXTRA_LINE);
+                active.put(extras.getInt(EXTRA_MEDICINE_ID, sbn.getId()), line != null ? line : "Medicine");
+            }
+        }
+
+        Plan plan = plan(active.keySet(), lastAlertAt, doses, now, windowMs);
+        for (DoseEvent dose : plan.added) {
+            notificationManager.notify(stream.groupKey, dose.getMedicineId(), buildChild(stream, dose, now));
+            active.put(dose.getMedicineId(), line(dose));
+        }
+        notificationManager.notify(stream.groupKey, SUMMARY_ID,
+                buildSummary(stream, active.values(), plan.alert ? now : lastAlertAt, plan.alert));
+
+        Log.d(TAG, "✅ " + stream + ": +" + plan.added.size() + " dose(s), " + plan.groupSize
+                + " in group" + (plan.alert ? ", alerting" : ", joined silently"));
+        return plan;
+    }
+
+    /**
+     * A dose was answered: drop its child and, when it was the last one, the summary too.
+     * Missing notifications are ignored, so this is safe to call for either stream.
+     */
+    public void dismiss(Stream stream, int medicineId) {
+        if (notificationManager == null) return;
+        notificationManager.cancel(stream.groupKey, medicineId);
+        for (StatusBarNotification sbn : notificationManager.getActiveNotifications()) {
+            if (stream.groupKey.equals(sbn.getTag())
+                    && sbn.getId() != SUMMARY_ID && sbn.getId() != medicineId) {
+                return; // others still waiting
+            }
+        }
+        notificationManager.cancel(stream.groupKey, SUMMARY_ID);
+    }
+
+    // ============================
+    // 🧮 Coalescing rules (plain Java, unit tested)
+    // ============================
+
+    /** Outcome of one post: which doses are new to the group and whether to make noise. */
+    public static final class Plan {
+        public final List<DoseEvent> added;
+        public final boolean alert;
+        public final int groupSize;
+
+        Plan(List<DoseEvent> added, boolean alert, int groupSize) {
+            this.added = added;
+            this.alert = alert;
+            this.groupSize = groupSize;
+        }
+    }
+
+    /**
+     * Doses already in the group (or twice in {@code incoming}) are not added again. The post
+     * alerts when the group hasn't alerted within {@code windowMs} - also for a dose that is
+     * already showing, so an auto-repeat of an unanswered dose still rings.
+     */
+    static Plan plan(Collection<Integer> activeIds, long lastAlertAt, List<DoseEvent> incoming,
+                     long now, long windowMs) {
+        Set<Integer> seen = new HashSet<>(activeIds);
+        List<DoseEvent> added = new ArrayList<>();
+        for (DoseEvent dose : incoming) {
+            if (seen.add(dose.getMedicineId())) added.add(dose);
+        }
+        boolean alert = !incoming.isEmpty() && (lastAlertAt <= 0 || now - lastAlertAt >= windowMs);
+        return new Plan(added, alert, seen.size());
+    }
+
+    // ============================
+    // 🔔 Notifications
+    // ============================
+
+    private static String line(DoseEvent dose) {
+        return dose.getMedicineName() + " - " + dose.getDosage();
+    }
+
+    private Notification buildChild(Stream stream, DoseEvent dose, long now) {
+        int medicineId = dose.getMedicineId();
+        Bundle extras = new Bundle();
+        extras.putInt(EXTRA_MEDICINE_ID, medicineId);
+        extras.putString(EXTRA_LINE, line(dose));
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, stream.channelId)
+                .setSmallIcon(stream == Stream.DOSES
+                        ? android.R.drawable.ic_lock_idle_alarm : android.R.drawable.ic_dialog_info)
+                .setContentTitle(dose.getMedicineName())
+                .setContentText(stream == Stream.DOSES
+                        ? "Take " + dose.getDosage() + " now" : dose.getDosage() + " - in 5 minutes!")
+                .setGroup(stream.groupKey)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY) // only the summary makes noise
+                .addExtras(extras)
+                .setContentIntent(openAppIntent(stream.requestCode))
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setWhen(now)
+                .setShowWhen(true);
+
+        if (stream == Stream.DOSES) {
+            // Per-dose actions; NotificationActionReceiver answers just this medicine
+            builder.setOngoing(true)
+                    .setAutoCancel(false)
+                    .addAction(android.R.drawable.ic_menu_recent_history, "Snooze 5min",
+                            actionIntent("ACTION_SNOOZE", dose, 5))
+                    .addAction(android.R.drawable.ic_menu_send, "I Took It",
+                            actionIntent("ACTION_TAKEN", dose, 6));
+        } else {
+            builder.setAutoCancel(true)
+                    .setTimeoutAfter(300000); // Auto-dismiss after 5 minutes
+        }
+        return builder.build();
+    }
+
+    private Notification buildSummary(Stream stream, Collection<String> lines, long alertedAt,
+                                      boolean alert) {
+        int count = lines.size();
+        boolean doses = stream == Stream.DOSES;
+        String title = doses
+                ? (count == 1 ? "⏰ MEDICINE TIME!" : "⏰ MEDICINE TIME! (" + count + ")")
+                : "⏰ Upcoming Medicine Reminder";
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle()
+                .setBigContentTitle(doses
+                        ? "⏰ " + count + (count == 1 ? " medicine due now" : " medicines due now")
+                        : "⏰ " + count + (count == 1 ? " medicine due in 5 minutes" : " medicines due in 5 minutes"));
+        for (String line : lines) {
+            style.addLine(line);
+        }
+
+        Bundle extras = new Bundle();
+        extras.putLong(EXTRA_ALERTED_AT, alertedAt);
+
+        PendingIntent openApp = openAppIntent(stream.requestCode);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, stream.channelId)
+                .setSmallIcon(doses ? android.R.drawable.ic_lock_idle_alarm : android.R.drawable.ic_dialog_info)
+                .setContentTitle(title)
+                .setContentText(String.join(", ", lines))
+                .setStyle(style)
+                .setNumber(count)
+                .setGroup(stream.groupKey)
+                .setGroupSummary(true)
+                .setGroupAlertBehavior(NotificationCompat.GROUP_ALERT_SUMMARY)
+                .setOnlyAlertOnce(!alert) // joining the group inside the window stays quiet
+                .addExtras(extras)
+                .setPriority(NotificationCompat.PRIORITY_MAX)
+                .setCategory(NotificationCompat.CATEGORY_ALARM)
+                .setContentIntent(openApp)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
+                .setDefaults(NotificationCompat.DEFAULT_ALL)
+                .setWhen(alertedAt > 0 ? alertedAt : System.currentTimeMillis())
+                .setShowWhen(true);
+
+        if (doses) {
+            builder.setOngoing(true)
+                    .setAutoCancel(false)
+                    .setFullScreenIntent(openApp, true);
+        } else {
+            builder.setAutoCancel(true)
+                    .setTimeoutAfter(300000);
+        }
+        return builder.build();
+    }
+
+    private PendingIntent openAppIntent(int requestCode) {
+        Intent openAppIntent = new Intent(context, MainActivity.class);
+        openAppIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        return PendingIntent.getActivity(context, requestCode, openAppIntent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+
+    // Same request code scheme as AlarmSoundService's actions (medicineId * 10 + n)
+    private PendingIntent actionIntent(String action, DoseEvent dose, int slot) {
+        Intent intent = new Intent(context, NotificationActionReceiver.class);
+        intent.setAction(action);
+        intent.putExtra("medicine_id", dose.getMedicineId());
+        intent.putExtra("medicine_name", dose.getMedicineName());
+        intent.putExtra("dosage", dose.getDosage());
+        return PendingIntent.getBroadcast(context, dose.getMedicineId() * 10 + slot, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -4,7 +4,6 @@ import android.app.KeyguardManager;
 import android.content.Context;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.PowerManager;
 import android.util.Log;
 import android.view.Window;
 import android.view.WindowManager;
@@ -18,7 +17,7 @@ import androidx.appcompat.app.AppCompatActivity;
 public class ReminderDialogActivity extends AppCompatActivity {
 
     private static final String TAG = "ReminderDialogActivity";
-    private PowerManager.WakeLock wakeLock;
+    private WakeLocks.Held wakeLock;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,16 +37,9 @@ public class ReminderDialogActivity extends AppCompatActivity {
                 Log.d(TAG, "✅ Window flags set");
             }
             
-            // Acquire wake lock to keep screen on
-            PowerManager powerManager = (PowerManager) getSystemService(Context.POWER_SERVICE);
-            if (powerManager != null) {
-                wakeLock = powerManager.newWakeLock(
-                        PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
-                        "MedTrack::ReminderDialogWakeLock"
-                );
-                wakeLock.acquire(5 * 60 * 1000L); // Hold for 5 minutes
-                Log.d(TAG, "✅ Wake lock acquired");
-            }
+            // Wake the screen; FLAG_KEEP_SCREEN_ON keeps it on while the dialog is showing
+            wakeLock = WakeLocks.acquire(this, WakeLocks.Tag.REMINDER_DIALOG, 60 * 1000L);
+            Log.d(TAG, "✅ Wake lock acquired");
             
             // Additional flags for newer Android versions
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
@@ -122,7 +114,7 @@ public class ReminderDialogActivity extends AppCompatActivity {
         Log.d(TAG, "⏰ ReminderDialogActivity onDestroy");
         try {
             // Release wake lock when activity is destroyed
-            if (wakeLock != null && wakeLock.isHeld()) {
+            if (wakeLock != null) {
                 wakeLock.release();
                 Log.d(TAG, "✅ Wake lock released");
             }
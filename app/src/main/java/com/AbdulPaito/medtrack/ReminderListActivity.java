@@ -2,8 +2,12 @@ package com.AbdulPaito.medtrack;
 
 import androidx.recyclerview.widget.ItemTouchHelper;
 import com.google.android.material.snackbar.Snackbar;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextWatcher;
 import android.view.View;
@@ -14,6 +18,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
 import com.AbdulPaito.medtrack.database.Medicine;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
@@ -22,15 +27,19 @@ import java.util.List;
 
 public class ReminderListActivity extends AppCompatActivity {
 
+    private static final long SEARCH_DEBOUNCE_MS = 250; // wait for a pause in typing before querying
+
     private RecyclerView recyclerView;
     private MedicineAdapter adapter;
-    private DatabaseHelper databaseHelper;
-    private List<Medicine> medicineList;
-    private List<Medicine> filteredList;
+    private List<Medicine> medicineList;  // everything loaded; the adapter shows the filtered view
     private View emptyView;  // Empty state view
     private FloatingActionButton fabAdd;
     private EditText searchBar;
     private TextView textPendingHeader;
+    private DatabaseExecutor.Task searchQuery;
+    private CancellationSignal searchSignal;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private Runnable pendingSearch;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,7 +51,6 @@ public class ReminderListActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        databaseHelper = new DatabaseHelper(this);
         initViews();
         setupSearch();
         loadMedicines();
@@ -57,6 +65,15 @@ public class ReminderListActivity extends AppCompatActivity {
 
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
 
+        // Created once: refreshes and searches are diffed into it, keeping scroll position
+        adapter = new MedicineAdapter(this);
+        adapter.setOnMedicineRemovedListener(medicine -> {
+            if (medicineList != null) medicineList.removeIf(m -> m.getId() == medicine.getId());
+            updateEmptyState(adapter.getCurrentList().isEmpty());
+        });
+        recyclerView.setAdapter(adapter);
+        setupSwipeToDelete();
+
         fabAdd.setOnClickListener(view -> {
             Intent intent = new Intent(this, AddMedicineActivity.class);
             startActivity(intent);
@@ -70,7 +87,7 @@ public class ReminderListActivity extends AppCompatActivity {
 
             @Override
             public void onTextChanged(CharSequence s, int start, int before, int count) {
-                filterMedicines(s.toString());
+                scheduleSearch(s.toString());
             }
 
             @Override
@@ -78,102 +95,152 @@ public class ReminderListActivity extends AppCompatActivity {
         });
     }
 
-    private void filterMedicines(String query) {
-        if (query.isEmpty()) {
-            filteredList = new ArrayList<>(medicineList);
-        } else {
-            filteredList = databaseHelper.searchMedicines(query);
+    // Each keystroke supersedes the previous one; only a pause in typing reaches SQLite
+    private void scheduleSearch(String query) {
+        cancelSearch();
+        if (query.trim().isEmpty()) {
+            filterMedicines(query); // clearing the box is instant, no query needed
+            return;
         }
+        pendingSearch = () -> filterMedicines(query);
+        searchHandler.postDelayed(pendingSearch, SEARCH_DEBOUNCE_MS);
+    }
 
-        if (adapter != null) {
-            adapter.updateList(filteredList);
-            
-            if (filteredList.isEmpty()) {
-                recyclerView.setVisibility(View.GONE);
-                emptyView.setVisibility(View.VISIBLE);
-            } else {
-                recyclerView.setVisibility(View.VISIBLE);
-                emptyView.setVisibility(View.GONE);
-            }
+    private void cancelSearch() {
+        if (pendingSearch != null) {
+            searchHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+        if (searchQuery != null) {
+            searchQuery.cancel(); // results for an older query are no longer wanted
+            searchQuery = null;
+        }
+        if (searchSignal != null) {
+            searchSignal.cancel(); // and stop it inside SQLite if it is already running
+            searchSignal = null;
         }
     }
 
-    private void loadMedicines() {
-        medicineList = databaseHelper.getAllMedicines();
+    private void filterMedicines(String query) {
+        cancelSearch();
+        if (medicineList == null) {
+            return; // still loading
+        }
+        if (query.trim().isEmpty()) {
+            showFilteredMedicines(new ArrayList<>(medicineList));
+        } else {
+            CancellationSignal signal = new CancellationSignal();
+            searchSignal = signal;
+            searchQuery = DatabaseExecutor.getInstance(this).execute(this,
+                    db -> db.searchMedicines(query, signal),
+                    this::showFilteredMedicines);
+        }
+    }
+
+    private void showFilteredMedicines(List<Medicine> results) {
+        adapter.submitList(results, () -> updateEmptyState(results.isEmpty()));
+    }
 
-        if (medicineList.isEmpty()) {
+    private void updateEmptyState(boolean empty) {
+        if (empty) {
             recyclerView.setVisibility(View.GONE);
             emptyView.setVisibility(View.VISIBLE);
-            textPendingHeader.setVisibility(View.GONE);
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             emptyView.setVisibility(View.GONE);
-            textPendingHeader.setVisibility(View.VISIBLE);
-
-            adapter = new MedicineAdapter(this, medicineList);
-            recyclerView.setAdapter(adapter);
-
-            // 👇 Swipe-to-delete with undo confirmation
-            ItemTouchHelper itemTouchHelper = new ItemTouchHelper(
-                    new ItemTouchHelper.SimpleCallback(0, ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT) {
-
-                        @Override
-                        public boolean onMove(RecyclerView recyclerView,
-                                              RecyclerView.ViewHolder viewHolder,
-                                              RecyclerView.ViewHolder target) {
-                            return false; // no drag/drop
-                        }
-
-                        @Override
-                        public void onSwiped(RecyclerView.ViewHolder viewHolder, int direction) {
-                            int position = viewHolder.getAdapterPosition();
-                            Medicine deletedMedicine = medicineList.get(position);
-
-                            new AlertDialog.Builder(ReminderListActivity.this)
-                                    .setTitle("Delete Medicine")
-                                    .setMessage("Are you sure you want to delete " + deletedMedicine.getMedicineName() + "?")
-                                    .setPositiveButton("Delete", (dialog, which) -> {
-                                        // CRITICAL FIX: Cancel alarms before deleting medicine
-                                        AlarmScheduler alarmScheduler = new AlarmScheduler(ReminderListActivity.this);
-                                        alarmScheduler.cancelMedicineAlarm(deletedMedicine.getId());
-
-                                        // Delete from DB and remove from list
-                                        databaseHelper.deleteMedicine(deletedMedicine.getId());
-                                        medicineList.remove(position);
-                                        adapter.notifyItemRemoved(position);
-
-                                        // Show Snackbar with Undo option
-                                        Snackbar.make(recyclerView, deletedMedicine.getMedicineName() + " deleted", Snackbar.LENGTH_LONG)
-                                                .setAction("UNDO", v -> {
-                                                    // Reinsert medicine into DB and list
-                                                    databaseHelper.addMedicine(deletedMedicine);
-                                                    medicineList.add(position, deletedMedicine);
-                                                    adapter.notifyItemInserted(position);
-                                                    
-                                                    // Reschedule alarms for restored medicine
-                                                    AlarmScheduler restoreScheduler = new AlarmScheduler(ReminderListActivity.this);
-                                                    restoreScheduler.scheduleMedicineAlarm(deletedMedicine);
-                                                })
-                                                .show();
-
-                                        // Show empty view if list becomes empty
-                                        if (medicineList.isEmpty()) {
-                                            recyclerView.setVisibility(View.GONE);
-                                            emptyView.setVisibility(View.VISIBLE);
-                                        }
-                                    })
-                                    .setNegativeButton("Cancel", (dialog, which) -> {
-                                        adapter.notifyItemChanged(position);
-                                        dialog.dismiss();
-                                    })
-                                    .show();
-                        }
-                    });
-
-            itemTouchHelper.attachToRecyclerView(recyclerView);
         }
     }
 
+    private void loadMedicines() {
+        DatabaseExecutor.getInstance(this).execute(this,
+                DatabaseHelper::getAllMedicines,
+                this::showMedicines);
+    }
+
+    private void showMedicines(List<Medicine> medicines) {
+        medicineList = medicines;
+        textPendingHeader.setVisibility(medicineList.isEmpty() ? View.GONE : View.VISIBLE);
+
+        // Re-apply the current search so a refresh doesn't wipe the user's filter
+        filterMedicines(searchBar.getText().toString());
+    }
+
+    // Removes a medicine from both the loaded list and the adapter's current list
+    private void removeMedicine(Medicine medicine) {
+        medicineList.removeIf(m -> m.getId() == medicine.getId()); // search results are separate instances
+        List<Medicine> remaining = new ArrayList<>(adapter.getCurrentList());
+        remaining.remove(medicine);
+        showFilteredMedicines(remaining);
+    }
+
+    // 👇 Swipe-to-delete with undo confirmation
+    private void setupSwipeToDelete() {
+        ItemTouchHelper itemTouchHelper = new ItemTouchHelper(
+                new ItemTouchHelper.SimpleCallback(0, ItemTouchHelper.LEFT | ItemTouchHelper.RIGHT) {
+
+                    @Override
+                    public boolean onMove(RecyclerView recyclerView,
+                                          RecyclerView.ViewHolder viewHolder,
+                                          RecyclerView.ViewHolder target) {
+                        return false; // no drag/drop
+                    }
+
+                    @Override
+                    public void onSwiped(RecyclerView.ViewHolder viewHolder, int direction) {
+                        int position = viewHolder.getAdapterPosition();
+                        if (position == RecyclerView.NO_POSITION) return;
+                        Medicine deletedMedicine = adapter.getCurrentList().get(position);
+
+                        new AlertDialog.Builder(ReminderListActivity.this)
+                                .setTitle("Delete Medicine")
+                                .setMessage("Are you sure you want to delete " + deletedMedicine.getMedicineName() + "?")
+                                .setPositiveButton("Delete", (dialog, which) -> {
+                                    // Remove from the list now, from the DB in the background
+                                    deleteMedicine(deletedMedicine);
+
+                                    // Show Snackbar with Undo option
+                                    Snackbar.make(recyclerView, deletedMedicine.getMedicineName() + " deleted", Snackbar.LENGTH_LONG)
+                                            .setAction("UNDO", v -> undoDelete(deletedMedicine, position))
+                                            .show();
+                                })
+                                .setNegativeButton("Cancel", (dialog, which) -> {
+                                    adapter.notifyItemChanged(position);
+                                    dialog.dismiss();
+                                })
+                                .show();
+                    }
+                });
+
+        itemTouchHelper.attachToRecyclerView(recyclerView);
+    }
+
+    private void deleteMedicine(Medicine medicine) {
+        Context appContext = getApplicationContext();
+        DatabaseExecutor.getInstance(this).execute(db -> {
+            // CRITICAL FIX: Cancel alarms before deleting medicine
+            new AlarmScheduler(appContext).cancelMedicineAlarm(medicine.getId());
+            db.deleteMedicine(medicine.getId());
+            return null;
+        });
+        removeMedicine(medicine);
+    }
+
+    // Reinsert medicine into DB and list (it gets a new row id) and re-arm alarms with it
+    private void undoDelete(Medicine medicine, int position) {
+        Context appContext = getApplicationContext();
+        DatabaseExecutor.getInstance(this).execute(this, db -> {
+            long newId = db.addMedicine(medicine);
+            new AlarmScheduler(appContext).armNextDue();
+            return newId;
+        }, newId -> {
+            medicine.setId(newId.intValue());
+            medicineList.add(Math.min(position, medicineList.size()), medicine);
+            List<Medicine> restored = new ArrayList<>(adapter.getCurrentList());
+            restored.add(Math.min(position, restored.size()), medicine);
+            showFilteredMedicines(restored);
+        });
+    }
+
     private void onMedicineClick(Medicine medicine) {
         new AlertDialog.Builder(this)
                 .setTitle("Mark as Taken")
@@ -185,23 +252,12 @@ public class ReminderListActivity extends AppCompatActivity {
                 .show();
     }
 
-    private void onDeleteClick(Medicine medicine, int position) {
+    private void onDeleteClick(Medicine medicine) {
         new AlertDialog.Builder(this)
                 .setTitle("Delete Medicine")
                 .setMessage("Are you sure you want to delete " + medicine.getMedicineName() + "?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    // CRITICAL FIX: Cancel alarms before deleting medicine
-                    AlarmScheduler alarmScheduler = new AlarmScheduler(this);
-                    alarmScheduler.cancelMedicineAlarm(medicine.getId());
-
-                    databaseHelper.deleteMedicine(medicine.getId());
-                    medicineList.remove(position);
-                    adapter.notifyItemRemoved(position);
-
-                    if (medicineList.isEmpty()) {
-                        recyclerView.setVisibility(View.GONE);
-                        emptyView.setVisibility(View.VISIBLE);
-                    }
+                    deleteMedicine(medicine);
 
                     Toast.makeText(this, "Medicine deleted", Toast.LENGTH_SHORT).show();
                 })
@@ -215,6 +271,12 @@ public class ReminderListActivity extends AppCompatActivity {
         loadMedicines();
     }
 
+    @Override
+    protected void onDestroy() {
+        cancelSearch();
+        super.onDestroy();
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         finish();
@@ -2,34 +2,41 @@ package com.AbdulPaito.medtrack;
 
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
-import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
-import android.os.PowerManager;
 import android.util.Log;
 import androidx.core.app.NotificationCompat;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * ReminderNotificationReceiver - Completely rewritten for exact 5-minute reminders
+ * Runs on the AsyncReceiver pool, like AlarmReceiver.
  */
-public class ReminderNotificationReceiver extends BroadcastReceiver {
+public class ReminderNotificationReceiver extends AsyncReceiver {
 
     private static final String TAG = "ReminderNotificationReceiver";
     private static final String CHANNEL_ID = "medicine_reminder_channel";
-    private static final int NOTIFICATION_ID = 2000;
+    // Screen wake on alert; the platform drops it
+    private static final long WAKE_SCREEN_MS = 3 * 1000L;
+
+    // Set by AlarmReceiver when several heads-ups fall in the same batch wakeup
+    static final String EXTRA_MEDICINE_IDS = "medicine_ids";
+    static final String EXTRA_MEDICINE_NAMES = "medicine_names";
+    static final String EXTRA_DOSAGES = "dosages";
 
     @Override
-    public void onReceive(Context context, Intent intent) {
+    protected void onReceiveAsync(Context context, Intent intent) {
         if (context == null || intent == null) {
             Log.e(TAG, "❌ Context or Intent is null!");
             return;
         }
         
         long currentTime = System.currentTimeMillis();
-        java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", java.util.Locale.getDefault());
-        Log.d(TAG, "⏰ 5-MINUTE REMINDER RECEIVED! Time: " + sdf.format(new java.util.Date(currentTime)));
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, "⏰ 5-MINUTE REMINDER RECEIVED! Time: " + TimeUtils.formatLogTimestamp(currentTime));
+        }
         
         try {
             // Get medicine details with null checks
@@ -53,59 +60,57 @@ public class ReminderNotificationReceiver extends BroadcastReceiver {
                 medicineId = 1;
             }
 
-            // Acquire wake locks to ensure device wakes up
-            PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
-            PowerManager.WakeLock wakeLock = null;
-            
-            if (powerManager == null) {
-                Log.e(TAG, "❌ PowerManager is null!");
-                return;
+            // Several medicines due at the same minute arrive in one broadcast
+            List<DoseEvent> reminders = new ArrayList<>();
+            int[] batchIds = intent.getIntArrayExtra(EXTRA_MEDICINE_IDS);
+            String[] batchNames = intent.getStringArrayExtra(EXTRA_MEDICINE_NAMES);
+            String[] batchDosages = intent.getStringArrayExtra(EXTRA_DOSAGES);
+            if (batchIds != null && batchNames != null && batchDosages != null
+                    && batchIds.length == batchNames.length && batchIds.length == batchDosages.length) {
+                for (int i = 0; i < batchIds.length; i++) {
+                    reminders.add(new DoseEvent(batchIds[i], batchNames[i], batchDosages[i],
+                            currentTime, DoseEvent.Kind.REMINDER));
+                }
+            } else {
+                reminders.add(new DoseEvent(medicineId, medicineName, dosage, currentTime, DoseEvent.Kind.REMINDER));
             }
-            
+
             try {
-                // Acquire wake lock to wake device
-                wakeLock = powerManager.newWakeLock(
-                        PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE,
-                        "MedTrack::ReminderWakeLock"
-                );
-                wakeLock.acquire(5 * 60 * 1000L); // Hold for 5 minutes
-                
-                Log.d(TAG, "✅ Reminder WakeLock acquired");
-                
-                // Show reminder notification
-                showReminderNotification(context, medicineName, dosage, medicineId);
-                
-                // Show popup dialog
-                showReminderDialog(context, medicineName, dosage);
+                // Heads-ups close together share one grouped notification and one dialog
+                NotificationManager notificationManager =
+                        (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+                createReminderChannel(notificationManager);
+                NotificationAggregator.Plan plan = new NotificationAggregator(context)
+                        .post(NotificationAggregator.Stream.REMINDERS, reminders);
+
+                if (plan.alert) {
+                    WakeLocks.holdFor(context, WakeLocks.Tag.REMINDER_RECEIVER, WAKE_SCREEN_MS);
+                    Log.d(TAG, "✅ Screen woken for " + WAKE_SCREEN_MS + " ms");
+                    StringBuilder names = new StringBuilder();
+                    StringBuilder dosages = new StringBuilder();
+                    for (DoseEvent reminder : reminders) {
+                        if (names.length() > 0) {
+                            names.append(", ");
+                            dosages.append(", ");
+                        }
+                        names.append(reminder.getMedicineName());
+                        dosages.append(reminder.getDosage());
+                    }
+                    showReminderDialog(context, names.toString(), dosages.toString());
+                }
                 
                 Log.d(TAG, "✅ 5-minute reminder processed successfully");
                 
             } catch (Exception e) {
                 Log.e(TAG, "❌ Error processing reminder", e);
                 e.printStackTrace();
-            } finally {
-                // Release wake lock after delay
-                if (wakeLock != null && wakeLock.isHeld()) {
-                    final PowerManager.WakeLock finalWakeLock = wakeLock;
-                    android.os.Handler handler = new android.os.Handler(context.getMainLooper());
-                    handler.postDelayed(() -> {
-                        try {
-                            if (finalWakeLock != null && finalWakeLock.isHeld()) {
-                                finalWakeLock.release();
-                                Log.d(TAG, "✅ Reminder WakeLock released");
-                            }
-                        } catch (Exception ex) {
-                            Log.e(TAG, "❌ Error releasing wake lock", ex);
-                        }
-                    }, 3000); // Release after 3 seconds
-                }
             }
         } catch (Exception e) {
             Log.e(TAG, "❌ CRITICAL ERROR in ReminderNotificationReceiver", e);
             e.printStackTrace();
         }
     }
-    
+
     /**
      * Show reminder dialog
      */
@@ -126,14 +131,8 @@ public class ReminderNotificationReceiver extends BroadcastReceiver {
         }
     }
 
-    /**
-     * Show reminder notification
-     */
-    private void showReminderNotification(Context context, String medicineName, String dosage, int medicineId) {
-        NotificationManager notificationManager =
-                (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
-
-        // Create notification channel for Android 8.0+
+    // Create notification channel for Android 8.0+
+    private void createReminderChannel(NotificationManager notificationManager) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             NotificationChannel channel = new NotificationChannel(
                     CHANNEL_ID,
@@ -156,53 +155,5 @@ public class ReminderNotificationReceiver extends BroadcastReceiver {
             );
             notificationManager.createNotificationChannel(channel);
         }
-
-        // Intent to open ReminderDialogActivity when notification is tapped
-        Intent dialogIntent = new Intent(context, ReminderDialogActivity.class);
-        dialogIntent.putExtra("medicine_name", medicineName);
-        dialogIntent.putExtra("dosage", dosage);
-        dialogIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_NO_USER_ACTION);
-        
-        PendingIntent fullScreenIntent = PendingIntent.getActivity(
-                context,
-                medicineId + 10000,
-                dialogIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-        
-        // Intent for tap action
-        Intent openAppIntent = new Intent(context, MainActivity.class);
-        openAppIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        PendingIntent contentIntent = PendingIntent.getActivity(
-                context,
-                medicineId + 10001,
-                openAppIntent,
-                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE
-        );
-
-        // Build notification with FULL SCREEN INTENT for lock screen wake
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
-                .setSmallIcon(android.R.drawable.ic_dialog_info)
-                .setContentTitle("⏰ Upcoming Medicine Reminder")
-                .setContentText(medicineName + " (" + dosage + ") - in 5 minutes!")
-                .setStyle(new NotificationCompat.BigTextStyle()
-                        .bigText("Don't forget! Your medicine " + medicineName + " (" + dosage + ") is due in exactly 5 minutes."))
-                .setPriority(NotificationCompat.PRIORITY_MAX) // Changed to MAX
-                .setCategory(NotificationCompat.CATEGORY_ALARM) // Changed to ALARM
-                .setAutoCancel(true)
-                .setContentIntent(contentIntent)
-                .setFullScreenIntent(fullScreenIntent, true) // CRITICAL for lock screen
-                .setVibrate(new long[]{0, 500, 200, 500})
-                .setLights(0xFF00FF00, 1000, 1000) // Green light
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC)
-                .setDefaults(NotificationCompat.DEFAULT_ALL)
-                .setWhen(System.currentTimeMillis())
-                .setShowWhen(true)
-                .setOngoing(false)
-                .setTimeoutAfter(300000); // Auto-dismiss after 5 minutes
-
-        // Show notification
-        notificationManager.notify(NOTIFICATION_ID + medicineId, builder.build());
-        Log.d(TAG, "✅ Reminder notification shown");
     }
-}
\ No newline at end of file
+}
@@ -2,6 +2,7 @@ package com.AbdulPaito.medtrack;
 
 import android.content.SharedPreferences;
 import android.media.RingtoneManager;
+import android.content.ClipData;
 import android.net.Uri;
 import android.os.Bundle;
 import android.widget.Button;
@@ -10,17 +11,14 @@ import android.content.Intent;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
+import androidx.lifecycle.ViewModelProvider;
 import com.google.android.material.materialswitch.MaterialSwitch;
 import com.google.android.material.button.MaterialButton;
+import com.AbdulPaito.medtrack.database.BinaryBackup;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
-import com.AbdulPaito.medtrack.database.Medicine;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
+import com.AbdulPaito.medtrack.database.SnapshotBackup;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -28,7 +26,14 @@ import java.util.Locale;
 public class SettingsActivity extends AppCompatActivity {
 
     private static final int RINGTONE_REQUEST_CODE = 100;
+    private static final int BACKUP_JSON_REQUEST_CODE = 1001;
+    private static final int RESTORE_REQUEST_CODE = 1002;
+    private static final int BACKUP_BINARY_REQUEST_CODE = 1003;
+    private static final int BACKUP_INCREMENTAL_REQUEST_CODE = 1004;
+    private static final int BACKUP_SNAPSHOT_REQUEST_CODE = 1005;
     private SharedPreferences prefs;
+    private BackupViewModel backupViewModel;
+    private AlertDialog progressDialog;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,6 +47,10 @@ public class SettingsActivity extends AppCompatActivity {
 
         prefs = getSharedPreferences("AppSettings", MODE_PRIVATE);
 
+        // Backup and restore outlive this screen; the dialog just follows their status
+        backupViewModel = new ViewModelProvider(this).get(BackupViewModel.class);
+        backupViewModel.getStatus().observe(this, this::showStatus);
+
         // Initialize views
         MaterialSwitch switchNotifications = findViewById(R.id.switchNotifications);
         MaterialSwitch switchVibration = findViewById(R.id.switchVibration);
@@ -117,19 +126,38 @@ public class SettingsActivity extends AppCompatActivity {
     }
 
     private void backupData() {
-        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
-        intent.addCategory(Intent.CATEGORY_OPENABLE);
-        intent.setType("application/json");
-        intent.putExtra(Intent.EXTRA_TITLE, "medtrack_backup_" + 
-            new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date()) + ".json");
-        startActivityForResult(intent, 1001);
+        // Compact: every column, deflated and checksummed. JSON: readable, and older builds restore it.
+        // Incremental: only what changed since the last incremental backup (the first one is full).
+        // Database snapshot: the SQLite file as is, fastest for large histories
+        int[] requestCodes = {BACKUP_INCREMENTAL_REQUEST_CODE, BACKUP_BINARY_REQUEST_CODE,
+                BACKUP_SNAPSHOT_REQUEST_CODE, BACKUP_JSON_REQUEST_CODE};
+        String[] suffixes = {"_incremental" + BinaryBackup.FILE_EXTENSION, BinaryBackup.FILE_EXTENSION,
+                SnapshotBackup.FILE_EXTENSION, ".json"};
+        String[] mimeTypes = {BinaryBackup.MIME_TYPE, BinaryBackup.MIME_TYPE, SnapshotBackup.MIME_TYPE, "application/json"};
+        new AlertDialog.Builder(this)
+            .setTitle("Backup format")
+            .setItems(new String[]{"🧩 Incremental (.mtbk)", "📦 Compact (.mtbk)", "🗄️ Database snapshot (.db)",
+                    "📄 JSON (.json)"}, (dialog, which) -> {
+                Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+                intent.addCategory(Intent.CATEGORY_OPENABLE);
+                intent.setType(mimeTypes[which]);
+                intent.putExtra(Intent.EXTRA_TITLE, "medtrack_backup_" +
+                    new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date())
+                    + suffixes[which]);
+                startActivityForResult(intent, requestCodes[which]);
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
     }
 
     private void restoreData() {
         Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
         intent.addCategory(Intent.CATEGORY_OPENABLE);
-        intent.setType("application/json");
-        startActivityForResult(intent, 1002);
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{"application/json", BinaryBackup.MIME_TYPE,
+                SnapshotBackup.MIME_TYPE, "application/vnd.sqlite3"});
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true); // an incremental base and its deltas
+        startActivityForResult(intent, RESTORE_REQUEST_CODE);
     }
 
     private void deleteAllHistory() {
@@ -138,7 +166,7 @@ public class SettingsActivity extends AppCompatActivity {
             .setMessage("This will permanently delete all medication history. This cannot be undone!")
             .setIcon(android.R.drawable.ic_dialog_alert)
             .setPositiveButton("Delete", (dialog, which) -> {
-                DatabaseHelper db = new DatabaseHelper(this);
+                DatabaseHelper db = DatabaseHelper.getInstance(this);
                 db.deleteAllHistory();
                 Toast.makeText(this, "✅ All history deleted", Toast.LENGTH_SHORT).show();
             })
@@ -210,132 +238,80 @@ public class SettingsActivity extends AppCompatActivity {
         } else if (resultCode == RESULT_OK && data != null) {
             Uri uri = data.getData();
             
-            if (requestCode == 1001) {
+            if (requestCode == BACKUP_JSON_REQUEST_CODE || requestCode == BACKUP_BINARY_REQUEST_CODE
+                    || requestCode == BACKUP_INCREMENTAL_REQUEST_CODE || requestCode == BACKUP_SNAPSHOT_REQUEST_CODE) {
                 // Backup
-                performBackup(uri);
-            } else if (requestCode == 1002) {
-                // Restore
-                performRestore(uri);
+                performBackup(uri, requestCode);
+            } else if (requestCode == RESTORE_REQUEST_CODE) {
+                // Restore: several files when picking an incremental chain
+                List<Uri> uris = new ArrayList<>();
+                ClipData clip = data.getClipData();
+                if (clip != null) {
+                    for (int i = 0; i < clip.getItemCount(); i++) {
+                        uris.add(clip.getItemAt(i).getUri());
+                    }
+                } else if (uri != null) {
+                    uris.add(uri);
+                }
+                if (!uris.isEmpty()) {
+                    performRestore(uris);
+                }
             }
         }
     }
 
-    private void performBackup(Uri uri) {
-        try {
-            DatabaseHelper db = new DatabaseHelper(this);
-            JSONObject backup = new JSONObject();
-            
-            // Backup medicines
-            JSONArray medicinesArray = new JSONArray();
-            List<Medicine> medicines = db.getAllMedicines();
-            for (Medicine med : medicines) {
-                JSONObject medObj = new JSONObject();
-                medObj.put("name", med.getMedicineName());
-                medObj.put("dosage", med.getDosage());
-                medObj.put("instructions", med.getInstructions());
-                medObj.put("time", med.getReminderTime());
-                medObj.put("date", med.getReminderDate());
-                medObj.put("frequency", med.getFrequency());
-                medicinesArray.put(medObj);
-            }
-            backup.put("medicines", medicinesArray);
-            
-            // Backup history
-            JSONArray historyArray = new JSONArray();
-            List<HistoryItem> history = db.getAllHistory();
-            for (HistoryItem item : history) {
-                JSONObject histObj = new JSONObject();
-                histObj.put("medicine", item.getMedicineName());
-                histObj.put("date", item.getDate());
-                histObj.put("time", item.getTime());
-                histObj.put("status", item.getStatus());
-                historyArray.put(histObj);
-            }
-            backup.put("history", historyArray);
-            
-            // Write to file
-            OutputStream outputStream = getContentResolver().openOutputStream(uri);
-            outputStream.write(backup.toString(4).getBytes());
-            outputStream.close();
-            
-            Toast.makeText(this, " Backup successful!", Toast.LENGTH_SHORT).show();
-            
-        } catch (Exception e) {
-            Toast.makeText(this, " Backup failed: " + e.getMessage(), 
-                Toast.LENGTH_LONG).show();
-        }
+    private void performBackup(Uri uri, int requestCode) {
+        BackupViewModel.Format format = requestCode == BACKUP_INCREMENTAL_REQUEST_CODE ? BackupViewModel.Format.INCREMENTAL
+                : requestCode == BACKUP_BINARY_REQUEST_CODE ? BackupViewModel.Format.BINARY
+                : requestCode == BACKUP_SNAPSHOT_REQUEST_CODE ? BackupViewModel.Format.SNAPSHOT
+                : BackupViewModel.Format.JSON;
+        backupViewModel.backup(uri, format);
     }
 
-    private void performRestore(Uri uri) {
+    private void performRestore(List<Uri> uris) {
         new AlertDialog.Builder(this)
             .setTitle("Restore Data?")
             .setMessage("This will replace all current data. Continue?")
-            .setPositiveButton("Restore", (dialog, which) -> {
-                try {
-                    InputStream inputStream = getContentResolver().openInputStream(uri);
-                    BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                    StringBuilder jsonString = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        jsonString.append(line);
-                    }
-                    reader.close();
-                    
-                    JSONObject backup = new JSONObject(jsonString.toString());
-                    DatabaseHelper db = new DatabaseHelper(this);
-                    
-                    // CRITICAL FIX: Cancel all alarms before clearing data
-                    AlarmScheduler alarmScheduler = new AlarmScheduler(this);
-                    alarmScheduler.cancelAllAlarms(this);
-                    
-                    // Clear existing data
-                    db.deleteAllMedicines();
-                    db.deleteAllHistory();
-                    
-                    // Restore medicines
-                    JSONArray medicinesArray = backup.getJSONArray("medicines");
-                    for (int i = 0; i < medicinesArray.length(); i++) {
-                        JSONObject medObj = medicinesArray.getJSONObject(i);
-                        Medicine med = new Medicine(
-                            0,
-                            medObj.getString("name"),
-                            medObj.getString("dosage"),
-                            medObj.getString("instructions"),
-                            medObj.getString("time"),
-                            medObj.getString("date"),
-                            medObj.getString("frequency"),
-                            true
-                        );
-                        long id = db.addMedicine(med);
-                        med.setId((int) id);
-                        
-                        // Reschedule alarms for restored medicine
-                        alarmScheduler.scheduleMedicineAlarm(med);
-                    }
-                    
-                    // Restore history
-                    JSONArray historyArray = backup.getJSONArray("history");
-                    for (int i = 0; i < historyArray.length(); i++) {
-                        JSONObject histObj = historyArray.getJSONObject(i);
-                        db.addHistory(
-                            histObj.getString("medicine"),
-                            histObj.getString("date"),
-                            histObj.getString("time"),
-                            histObj.getString("status")
-                        );
-                    }
-                    
-                    Toast.makeText(this, " Restore successful!", Toast.LENGTH_SHORT).show();
-                    
-                } catch (Exception e) {
-                    Toast.makeText(this, " Restore failed: " + e.getMessage(), 
-                        Toast.LENGTH_LONG).show();
-                }
-            })
+            .setPositiveButton("Restore", (dialog, which) -> restoreFrom(uris))
             .setNegativeButton("Cancel", null)
             .show();
     }
 
+    private void restoreFrom(List<Uri> uris) {
+        backupViewModel.restore(uris);
+    }
+
+    // Mirrors the ViewModel's status, so the dialog comes back after a rotation
+    private void showStatus(BackupViewModel.Status status) {
+        if (status == null) {
+            if (progressDialog != null) {
+                progressDialog.dismiss();
+                progressDialog = null;
+            }
+            return;
+        }
+        if (progressDialog == null) {
+            progressDialog = new AlertDialog.Builder(this)
+                .setTitle(status.title)
+                .setMessage(status.message)
+                .setCancelable(false)
+                .show();
+        } else {
+            progressDialog.setTitle(status.title);
+            progressDialog.setMessage(status.message);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        // The work carries on in the ViewModel; only the window goes
+        if (progressDialog != null) {
+            progressDialog.dismiss();
+            progressDialog = null;
+        }
+        super.onDestroy();
+    }
+
     @Override
     public boolean onSupportNavigateUp() {
         finish();
@@ -6,13 +6,23 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import com.AbdulPaito.medtrack.database.DailyAdherence;
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
 import com.AbdulPaito.medtrack.database.DatabaseHelper;
+import com.AbdulPaito.medtrack.database.StatsSnapshot;
+import com.AbdulPaito.medtrack.database.ReceiverLatency;
+import com.AbdulPaito.medtrack.database.WakeLockUsage;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.TextStyle;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
 
 public class StatisticsActivity extends AppCompatActivity {
 
+    private static final int CHART_DAYS = 7;
+
     private TextView textAdherenceRate, textStreak, textLastUpdated;
     private TextView textTotalTaken, textTotalMissed;
     private ProgressBar progressAdherence;
@@ -30,7 +40,7 @@ public class StatisticsActivity extends AppCompatActivity {
             getSupportActionBar().setDisplayHomeAsUpEnabled(true);
         }
 
-        databaseHelper = new DatabaseHelper(this);
+        databaseHelper = DatabaseHelper.getInstance(this);
         initViews();
         loadStatistics();
         createChart();
@@ -49,11 +59,17 @@ public class StatisticsActivity extends AppCompatActivity {
     }
 
     private void loadStatistics() {
-        // Get real data from database
-        int adherenceRate = databaseHelper.getAdherenceRate();
-        int streakDays = databaseHelper.getCurrentStreak();
-        int takenCount = databaseHelper.getTotalTakenCount();
-        int missedCount = databaseHelper.getTotalMissedCount();
+        // Get real data from database (off the main thread)
+        DatabaseExecutor.getInstance(this).execute(this,
+                DatabaseHelper::getStatsSnapshot,
+                this::showStatistics);
+    }
+
+    private void showStatistics(StatsSnapshot stats) {
+        int adherenceRate = stats.getAdherenceRate();
+        int streakDays = stats.getCurrentStreak();
+        int takenCount = stats.getTakenCount();
+        int missedCount = stats.getMissedCount();
 
         // Update adherence rate
         progressAdherence.setProgress(adherenceRate);
@@ -73,17 +89,18 @@ public class StatisticsActivity extends AppCompatActivity {
     }
 
     private void createChart() {
-        // Simple bar chart for last 7 days
+        // Get REAL per-day adherence from database (one grouped query)
+        DatabaseExecutor.getInstance(this).execute(this,
+                db -> db.getAdherenceSeries(CHART_DAYS),
+                this::showChart);
+    }
+
+    private void showChart(List<DailyAdherence> series) {
+        // Simple bar chart, one bar per day, oldest on the left
         chartContainer.removeAllViews();
         
-        // Get REAL adherence data from database
-        int[] adherenceData = databaseHelper.getLast7DaysAdherence();
-        
-        // Create 7 bars representing last 7 days with REAL data
-        String[] days = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
-        int[] values = adherenceData; // REAL DATA from database!
-        
-        for (int i = 0; i < 7; i++) {
+        for (int i = 0; i < series.size(); i++) {
+            DailyAdherence day = series.get(i);
             android.widget.LinearLayout barLayout = new android.widget.LinearLayout(this);
             barLayout.setOrientation(android.widget.LinearLayout.VERTICAL);
             barLayout.setGravity(android.view.Gravity.BOTTOM | android.view.Gravity.CENTER_HORIZONTAL);
@@ -94,7 +111,7 @@ public class StatisticsActivity extends AppCompatActivity {
             
             // Bar
             android.view.View bar = new android.view.View(this);
-            int barHeight = (int) (values[i] * 1.2); // Scale to fit
+            int barHeight = (int) (day.getAdherenceRate() * 1.2); // Scale to fit
             android.widget.LinearLayout.LayoutParams barParams = new android.widget.LinearLayout.LayoutParams(
                     android.widget.LinearLayout.LayoutParams.MATCH_PARENT, barHeight);
             bar.setLayoutParams(barParams);
@@ -102,7 +119,7 @@ public class StatisticsActivity extends AppCompatActivity {
             
             // Day label
             TextView dayLabel = new TextView(this);
-            dayLabel.setText(days[i]);
+            dayLabel.setText(day.getDay().getDayOfWeek().getDisplayName(TextStyle.SHORT, Locale.getDefault()));
             dayLabel.setTextSize(10);
             dayLabel.setTextColor(getResources().getColor(R.color.text_secondary, null));
             dayLabel.setGravity(android.view.Gravity.CENTER);
@@ -122,11 +139,33 @@ public class StatisticsActivity extends AppCompatActivity {
 
     private void exportReport() {
         // Get statistics
-        int adherenceRate = databaseHelper.getAdherenceRate();
-        int streakDays = databaseHelper.getCurrentStreak();
-        int takenCount = databaseHelper.getTotalTakenCount();
-        int missedCount = databaseHelper.getTotalMissedCount();
-        int totalMedicines = databaseHelper.getMedicineCount();
+        DatabaseExecutor.getInstance(this).execute(this,
+                DatabaseHelper::getStatsSnapshot,
+                this::loadWakeLockUsage);
+    }
+
+    // 🔋 Second read for the battery section: wake-lock time over the last 7 days
+    private void loadWakeLockUsage(StatsSnapshot stats) {
+        String fromDay = LocalDate.now().minusDays(6).toString();
+        DatabaseExecutor.getInstance(this).execute(this,
+                db -> db.getWakeLockUsage(fromDay),
+                usage -> loadReceiverLatency(stats, usage, fromDay));
+    }
+
+    // ⏱️ Third read: how long the alarm receivers took, from every process
+    private void loadReceiverLatency(StatsSnapshot stats, List<WakeLockUsage> wakeLockUsage, String fromDay) {
+        DatabaseExecutor.getInstance(this).execute(this,
+                db -> db.getReceiverLatency(fromDay),
+                latency -> shareReport(stats, wakeLockUsage, latency));
+    }
+
+    private void shareReport(StatsSnapshot stats, List<WakeLockUsage> wakeLockUsage,
+                             List<ReceiverLatency> receiverLatency) {
+        int adherenceRate = stats.getAdherenceRate();
+        int streakDays = stats.getCurrentStreak();
+        int takenCount = stats.getTakenCount();
+        int missedCount = stats.getMissedCount();
+        int totalMedicines = stats.getActiveMedicineCount();
 
         // Create report text
         StringBuilder report = new StringBuilder();
@@ -136,9 +175,14 @@ public class StatisticsActivity extends AppCompatActivity {
         report.append("📈 Statistics:\n");
         report.append("• Adherence Rate: ").append(adherenceRate).append("%\n");
         report.append("• Current Streak: ").append(streakDays).append(" days\n");
+        report.append("• Best Streak: ").append(stats.getBestStreak()).append(" days\n");
         report.append("• Total Taken: ").append(takenCount).append("\n");
         report.append("• Total Missed: ").append(missedCount).append("\n");
         report.append("• Active Medicines: ").append(totalMedicines).append("\n\n");
+        report.append("🔋 Wake-lock time (last 7 days):\n");
+        report.append(WakeLocks.formatReport(wakeLockUsage)).append("\n");
+        report.append("⏱️ Alarm handling time (last 7 days):\n");
+        report.append(LatencyHistogram.formatReport(receiverLatency)).append("\n");
         report.append("💊 Keep up the great work!\n");
 
         // Share report
@@ -0,0 +1,122 @@
+package com.AbdulPaito.medtrack;
+
+import androidx.annotation.Nullable;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * TimeUtils - Shared parsing/formatting for reminder times and dates
+ * DateTimeFormatter is immutable and thread-safe, so one set is cached per locale and shared
+ * by adapters, receivers and the scheduler instead of building SimpleDateFormats per call.
+ */
+public final class TimeUtils {
+
+    private TimeUtils() {
+    }
+
+    /** One locale's formatters; rebuilt only when the device locale changes. */
+    private static final class Formatters {
+        final Locale locale;
+        final DateTimeFormatter time12h;      // 6:19 PM
+        final DateTimeFormatter displayDate;  // Oct 20, 2025
+        final DateTimeFormatter longDate;     // Monday, October 20, 2025
+        final DateTimeFormatter historyDate;  // 20/10/2025 - the history.date column format
+        final DateTimeFormatter logTimestamp; // 2025-10-20 18:19:00.000
+
+        Formatters(Locale locale) {
+            this.locale = locale;
+            this.time12h = DateTimeFormatter.ofPattern("h:mm a", locale);
+            this.displayDate = DateTimeFormatter.ofPattern("MMM dd, yyyy", locale);
+            this.longDate = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy", locale);
+            this.historyDate = DateTimeFormatter.ofPattern("dd/MM/yyyy", locale);
+            this.logTimestamp = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS", locale);
+        }
+    }
+
+    private static volatile Formatters formatters;
+
+    private static Formatters formatters() {
+        Locale locale = Locale.getDefault();
+        Formatters current = formatters;
+        if (current == null || !current.locale.equals(locale)) {
+            current = new Formatters(locale);
+            formatters = current; // racing threads build equal sets; last write wins
+        }
+        return current;
+    }
+
+    /**
+     * Parse a stored "HH:mm" (or "H:mm") reminder time without split() or regex.
+     * Returns null for anything else, e.g. legacy "6:19 PM" history strings.
+     */
+    @Nullable
+    public static LocalTime parseReminderTime(@Nullable String time) {
+        if (time == null) return null;
+        int length = time.length();
+        int colon = time.indexOf(':');
+        if (colon < 1 || colon > 2 || length != colon + 3) return null;
+        int hour = digits(time, 0, colon);
+        int minute = digits(time, colon + 1, length);
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) return null;
+        return LocalTime.of(hour, minute);
+    }
+
+    // Non-negative value of s[from, to) or -1 if it isn't all digits
+    private static int digits(String s, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /** "18:19" -> "6:19 PM"; input that isn't "HH:mm" is returned as is. */
+    public static String formatTime12h(@Nullable String time24) {
+        LocalTime time = parseReminderTime(time24);
+        return time != null ? formatTime12h(time) : time24;
+    }
+
+    public static String formatTime12h(LocalTime time) {
+        return formatters().time12h.format(time);
+    }
+
+    public static String formatTime12h(long epochMillis) {
+        return formatters().time12h.format(toLocalDateTime(epochMillis));
+    }
+
+    /** "Oct 20, 2025" */
+    public static String formatDisplayDate(LocalDate date) {
+        return formatters().displayDate.format(date);
+    }
+
+    public static String formatDisplayDate(long epochMillis) {
+        return formatters().displayDate.format(toLocalDateTime(epochMillis));
+    }
+
+    /** "Monday, October 20, 2025" */
+    public static String formatLongDate(LocalDate date) {
+        return formatters().longDate.format(date);
+    }
+
+    /** "20/10/2025" - what DatabaseHelper stores in history.date */
+    public static String formatHistoryDate(LocalDate date) {
+        return formatters().historyDate.format(date);
+    }
+
+    /** Millisecond timestamp for debug logs. Callers should guard with Log.isLoggable. */
+    public static String formatLogTimestamp(long epochMillis) {
+        return formatters().logTimestamp.format(toLocalDateTime(epochMillis));
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
@@ -0,0 +1,202 @@
+package com.AbdulPaito.medtrack;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.util.Log;
+
+import com.AbdulPaito.medtrack.database.DatabaseExecutor;
+import com.AbdulPaito.medtrack.database.WakeLockUsage;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * WakeLocks - Every wake lock MedTrack takes, always with a timeout
+ * The CPU/screen is only held while an alarm is being handled; there is no always-on lock.
+ * Each release books the time actually held (capped at the timeout) into wake_lock_stats,
+ * per tag and per day, so the battery cost shows up in the statistics report.
+ */
+public final class WakeLocks {
+
+    private static final String TAG = "WakeLocks";
+
+    private static final int SCREEN_FLAGS =
+            PowerManager.FULL_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP | PowerManager.ON_AFTER_RELEASE;
+
+    /** Who holds the lock; the name is both the PowerManager tag and the stats key. */
+    public enum Tag {
+        ALARM_RECEIVER("MedTrack::AlarmWakeLock", SCREEN_FLAGS),
+        REMINDER_RECEIVER("MedTrack::ReminderWakeLock", SCREEN_FLAGS),
+        ALARM_SERVICE("MedTrack::AlarmServiceWakeLock", SCREEN_FLAGS),
+        ALARM_SERVICE_SCREEN("MedTrack::AlarmServiceScreenWakeLock",
+                PowerManager.SCREEN_BRIGHT_WAKE_LOCK | PowerManager.ACQUIRE_CAUSES_WAKEUP),
+        REMINDER_DIALOG("MedTrack::ReminderDialogWakeLock", SCREEN_FLAGS);
+
+        public final String lockName;
+        final int levelAndFlags;
+
+        Tag(String lockName, int levelAndFlags) {
+            this.lockName = lockName;
+            this.levelAndFlags = levelAndFlags;
+        }
+    }
+
+    private WakeLocks() {
+    }
+
+    /**
+     * Acquire the tag's lock for at most {@code timeoutMs}. Never returns null: without a
+     * PowerManager the handle just does the bookkeeping.
+     */
+    public static Held acquire(Context context, Tag tag, long timeoutMs) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        PowerManager.WakeLock lock = null;
+        if (powerManager != null) {
+            lock = powerManager.newWakeLock(tag.levelAndFlags, tag.lockName);
+            // Not reference counted: re-acquiring extends the timeout, one release ends it
+            lock.setReferenceCounted(false);
+        } else {
+            Log.e(TAG, "❌ PowerManager is null, " + tag + " not held");
+        }
+        Held held = new Held(context.getApplicationContext(), tag, lock);
+        held.extend(timeoutMs);
+        return held;
+    }
+
+    /**
+     * Wake the device for exactly {@code durationMs} and let the platform drop the lock - for
+     * receivers that only need the screen on briefly and finish long before it times out.
+     * The whole duration is booked up front.
+     */
+    public static void holdFor(Context context, Tag tag, long durationMs) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager == null) {
+            Log.e(TAG, "❌ PowerManager is null, " + tag + " not held");
+            return;
+        }
+        powerManager.newWakeLock(tag.levelAndFlags, tag.lockName).acquire(durationMs);
+        long now = System.currentTimeMillis();
+        book(context.getApplicationContext(), tag, now, now + durationMs);
+    }
+
+    /** A held lock. Thread safe; release is idempotent. */
+    public static final class Held {
+        private final Context context;
+        private final Tag tag;
+        private final PowerManager.WakeLock lock;
+        private long acquiredAt;  // 0 while not held
+        private long deadline;    // when the platform drops the lock on its own
+
+        Held(Context context, Tag tag, PowerManager.WakeLock lock) {
+            this.context = context;
+            this.tag = tag;
+            this.lock = lock;
+        }
+
+        /** (Re)arm the timeout to {@code timeoutMs} from now; takes the lock if it was released. */
+        public synchronized void extend(long timeoutMs) {
+            long now = System.currentTimeMillis();
+            if (acquiredAt > 0 && now >= deadline) {
+                // The previous hold already timed out - book it before starting a new one
+                book(context, tag, acquiredAt, deadline);
+                acquiredAt = 0;
+            }
+            if (acquiredAt == 0) {
+                acquiredAt = now;
+            }
+            deadline = now + timeoutMs;
+            if (lock != null) {
+                lock.acquire(timeoutMs);
+            }
+        }
+
+        public synchronized void release() {
+            if (acquiredAt == 0) return;
+            if (lock != null && lock.isHeld()) {
+                lock.release();
+            }
+            book(context, tag, acquiredAt, Math.min(System.currentTimeMillis(), deadline));
+            acquiredAt = 0;
+        }
+
+        public synchronized boolean isHeld() {
+            return acquiredAt > 0 && System.currentTimeMillis() < deadline;
+        }
+    }
+
+    private static void book(Context context, Tag tag, long from, long until) {
+        Map<LocalDate, Long> byDay = holdByDay(from, until, ZoneId.systemDefault());
+        Log.d(TAG, "🔋 " + tag + " held " + (until - from) + " ms");
+        DatabaseExecutor.getInstance(context).record(db -> {
+            boolean first = true;
+            for (Map.Entry<LocalDate, Long> day : byDay.entrySet()) {
+                db.addWakeLockHold(day.getKey().toString(), tag.name(), day.getValue(), first ? 1 : 0);
+                first = false;
+            }
+            return null;
+        });
+    }
+
+    // ============================
+    // 🧮 Accounting (plain Java, unit tested)
+    // ============================
+
+    /**
+     * Split the hold [from, until) into milliseconds per local day, so a lock held across
+     * midnight counts toward both days. Empty when nothing was held.
+     */
+    static Map<LocalDate, Long> holdByDay(long from, long until, ZoneId zone) {
+        Map<LocalDate, Long> byDay = new LinkedHashMap<>();
+        long start = from;
+        while (start < until) {
+            LocalDate day = Instant.ofEpochMilli(start).atZone(zone).toLocalDate();
+            long nextDay = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+            long end = Math.min(until, nextDay);
+            byDay.put(day, end - start);
+            start = end;
+        }
+        return byDay;
+    }
+
+    /**
+     * Battery section of the statistics report: total hold time per day, then per tag.
+     * {@code usage} comes from DatabaseHelper.getWakeLockUsage (newest day first).
+     */
+    static String formatReport(List<WakeLockUsage> usage) {
+        if (usage.isEmpty()) {
+            return "• No wake locks held\n";
+        }
+        Map<String, StringBuilder> days = new LinkedHashMap<>();
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (WakeLockUsage row : usage) {
+            StringBuilder tags = days.get(row.getDay());
+            if (tags == null) {
+                tags = new StringBuilder();
+                days.put(row.getDay(), tags);
+            }
+            tags.append("   - ").append(row.getTag()).append(": ").append(formatDuration(row.getHoldMs()))
+                    .append(" (").append(row.getAcquisitions()).append("x)\n");
+            Long total = totals.get(row.getDay());
+            totals.put(row.getDay(), (total != null ? total : 0L) + row.getHoldMs());
+        }
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<String, StringBuilder> day : days.entrySet()) {
+            report.append("• ").append(day.getKey()).append(": ")
+                    .append(formatDuration(totals.get(day.getKey()))).append('\n')
+                    .append(day.getValue());
+        }
+        return report.toString();
+    }
+
+    private static String formatDuration(long ms) {
+        long seconds = (ms + 500) / 1000;
+        return seconds < 60
+                ? seconds + "s"
+                : String.format(Locale.US, "%dm %02ds", seconds / 60, seconds % 60);
+    }
+}
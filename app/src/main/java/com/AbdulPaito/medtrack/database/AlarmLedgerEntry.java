@@ -0,0 +1,72 @@
+package com.AbdulPaito.medtrack.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * AlarmLedgerEntry - One row of alarm_ledger: a PendingIntent slot MedTrack owns in AlarmManager
+ * and what was last done with it (see DatabaseHelper "Alarm Ledger" section)
+ */
+public class AlarmLedgerEntry {
+
+    // kind: which alarm the slot is for
+    public static final String KIND_BATCH = "batch";             // next-due engine, one per app
+    public static final String KIND_SNOOZE = "snooze";           // "Snooze 5min" on a ringing alarm
+    public static final String KIND_AUTO_REPEAT = "auto_repeat"; // re-ring when nobody answered
+
+    // state: what AlarmManager should currently hold for the slot
+    public static final String STATE_IDLE = "idle";
+    public static final String STATE_ARMED = "armed";
+    public static final String STATE_FIRED = "fired";
+    public static final String STATE_CANCELLED = "cancelled";
+
+    private final int requestCode;
+    private final int medicineId;   // 0 for app-wide slots (batch)
+    private final String kind;
+    private final long triggerAt;   // epoch millis of the last arm, 0 if never armed
+    private final String state;
+    private final long updatedAt;
+
+    public AlarmLedgerEntry(int requestCode, int medicineId, String kind, long triggerAt,
+                            String state, long updatedAt) {
+        this.requestCode = requestCode;
+        this.medicineId = medicineId;
+        this.kind = kind;
+        this.triggerAt = triggerAt;
+        this.state = state;
+        this.updatedAt = updatedAt;
+    }
+
+    public int getRequestCode() {
+        return requestCode;
+    }
+
+    public int getMedicineId() {
+        return medicineId;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public long getTriggerAt() {
+        return triggerAt;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public boolean isArmed() {
+        return STATE_ARMED.equals(state);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return kind + "#" + requestCode + " (medicine " + medicineId + ") " + state + " @ " + triggerAt;
+    }
+}
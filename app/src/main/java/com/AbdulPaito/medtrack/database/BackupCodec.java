@@ -0,0 +1,320 @@
+package com.AbdulPaito.medtrack.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * BackupCodec - Compact binary backup (.mtbk): streaming writer and reader, plain Java
+ *
+ * <pre>
+ * file   = "MTBK" version:u8 deflate( table* 0x00 crc32:i32 )   crc32 covers the bytes before it
+ * table  = 0x01 name:str columns:varint column-name:str* rows:varint row*
+ * row    = value per column
+ * value  = 0x00 null | 0x01 zigzag varint delta to the column's previous integer | 0x02 str
+ * str    = varint byte length, UTF-8
+ * </pre>
+ *
+ * Columns are named per table, so a reader can map them onto its own schema and skip the
+ * ones it doesn't know. Version 2 files may start with a backup_segment table (incremental
+ * backups, see BinaryBackup); version 1 readers would restore a delta as if it were everything,
+ * so they are kept out by the version byte. Integer deltas turn ids and taken_at timestamps into one or two bytes
+ * before deflate sees them. Neither side ever holds more than one row.
+ */
+public final class BackupCodec {
+
+    static final byte[] MAGIC = {'M', 'T', 'B', 'K'};
+    static final int VERSION = 2;
+
+    private static final int TAG_END = 0x00;
+    private static final int TAG_TABLE = 0x01;
+    private static final int TYPE_NULL = 0x00;
+    private static final int TYPE_INTEGER = 0x01;
+    private static final int TYPE_TEXT = 0x02;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_STRING_BYTES = 1 << 20; // no field comes near; guards corrupt lengths
+
+    private BackupCodec() {
+    }
+
+    /** True when {@code header} (at least 4 bytes) starts like a binary backup. */
+    public static boolean isBinaryBackup(byte[] header, int length) {
+        if (length < MAGIC.length) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // ============================
+    // ✍️ Writer
+    // ============================
+
+    /**
+     * Write tables one after the other: beginTable(), then rows x columns values, then the
+     * next table or finish(). finish() does not close the underlying stream.
+     */
+    public static final class Writer {
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        private final DeflaterOutputStream compressed;
+        private final DataOutputStream checked;   // payload, counted by the CRC
+        private final DataOutputStream trailer;   // same buffer, not counted
+        private final CRC32 crc = new CRC32();
+        private String[] columns;
+        private long[] previous;
+        private int rowsLeft;
+        private int column;
+
+        public Writer(OutputStream out) throws IOException {
+            out.write(MAGIC);
+            out.write(VERSION);
+            compressed = new DeflaterOutputStream(out, deflater, BUFFER_SIZE);
+            BufferedOutputStream buffered = new BufferedOutputStream(compressed, BUFFER_SIZE);
+            checked = new DataOutputStream(new CheckedOutputStream(buffered, crc));
+            trailer = new DataOutputStream(buffered);
+        }
+
+        public void beginTable(String name, String[] columns, int rows) throws IOException {
+            checkTableDone();
+            checked.writeByte(TAG_TABLE);
+            writeString(name);
+            writeVarint(columns.length);
+            for (String columnName : columns) {
+                writeString(columnName);
+            }
+            writeVarint(rows);
+            this.columns = columns;
+            this.previous = new long[columns.length];
+            this.rowsLeft = rows;
+            this.column = 0;
+        }
+
+        public void writeNull() throws IOException {
+            nextColumn();
+            checked.writeByte(TYPE_NULL);
+        }
+
+        public void writeLong(long value) throws IOException {
+            int index = nextColumn();
+            checked.writeByte(TYPE_INTEGER);
+            long delta = value - previous[index];
+            writeVarint((delta << 1) ^ (delta >> 63)); // zigzag: small negatives stay small
+            previous[index] = value;
+        }
+
+        public void writeText(String value) throws IOException {
+            if (value == null) {
+                writeNull();
+                return;
+            }
+            nextColumn();
+            checked.writeByte(TYPE_TEXT);
+            writeString(value);
+        }
+
+        /** End marker and checksum; flushes the compressed stream. */
+        public void finish() throws IOException {
+            checkTableDone();
+            checked.writeByte(TAG_END);
+            checked.flush();
+            trailer.writeInt((int) crc.getValue());
+            trailer.flush();
+            compressed.finish();
+            compressed.flush();
+            deflater.end();
+        }
+
+        private int nextColumn() throws IOException {
+            if (columns == null || rowsLeft == 0) {
+                throw new IOException("More values than the table declared");
+            }
+            int index = column;
+            if (++column == columns.length) {
+                column = 0;
+                rowsLeft--;
+            }
+            return index;
+        }
+
+        private void checkTableDone() throws IOException {
+            if (columns != null && (rowsLeft != 0 || column != 0)) {
+                throw new IOException(rowsLeft + " row(s) missing from the previous table");
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            checked.write(bytes);
+        }
+
+        private void writeVarint(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                checked.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            checked.writeByte((int) value);
+        }
+    }
+
+    // ============================
+    // 📖 Reader
+    // ============================
+
+    /**
+     * Pull tables with nextTable() and their rows with nextRow(). The checksum is verified when
+     * nextTable() reaches the end; a corrupt or truncated file throws IOException, so callers
+     * should only commit what they imported once nextTable() has returned null.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream checked;
+        private final DataInputStream trailer;
+        private final CRC32 crc = new CRC32();
+        private String table;
+        private String[] columns;
+        private Object[] row;
+        private long[] previous;
+        private int rowsLeft;
+
+        public Reader(InputStream in) throws IOException {
+            byte[] header = new byte[MAGIC.length];
+            int read = readFully(in, header);
+            if (!isBinaryBackup(header, read)) {
+                throw new IOException("Not a MedTrack binary backup");
+            }
+            int version = in.read();
+            if (version < 1 || version > VERSION) {
+                throw new IOException("Unsupported backup version " + version);
+            }
+            // Buffer below the CRC so the trailer bytes aren't counted
+            BufferedInputStream buffered = new BufferedInputStream(new InflaterInputStream(in), BUFFER_SIZE);
+            checked = new DataInputStream(new CheckedInputStream(buffered, crc));
+            trailer = new DataInputStream(buffered);
+        }
+
+        /** Name of the next table, or null once the whole file has been read and verified. */
+        public String nextTable() throws IOException {
+            while (rowsLeft > 0) {
+                nextRow(); // skip what the caller didn't read
+            }
+            int tag = checked.readUnsignedByte();
+            if (tag == TAG_END) {
+                int expected = trailer.readInt();
+                if (expected != (int) crc.getValue()) {
+                    throw new IOException("Backup checksum mismatch");
+                }
+                table = null;
+                return null;
+            }
+            if (tag != TAG_TABLE) {
+                throw new IOException("Corrupt backup: unexpected tag " + tag);
+            }
+            table = readString();
+            columns = new String[readCount()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = readString();
+            }
+            rowsLeft = readCount();
+            row = new Object[columns.length];
+            previous = new long[columns.length];
+            return table;
+        }
+
+        /** Current table, or null before the first / after the last. */
+        public String table() {
+            return table;
+        }
+
+        public String[] columns() {
+            return columns;
+        }
+
+        /** Rows of the current table not read yet. */
+        public int rowsLeft() {
+            return rowsLeft;
+        }
+
+        /**
+         * The next row of the current table (Long, String or null per column), or null after the
+         * last one. The array is reused for every row.
+         */
+        public Object[] nextRow() throws IOException {
+            if (rowsLeft == 0) return null;
+            for (int i = 0; i < columns.length; i++) {
+                int type = checked.readUnsignedByte();
+                switch (type) {
+                    case TYPE_NULL:
+                        row[i] = null;
+                        break;
+                    case TYPE_INTEGER:
+                        long zigzag = readVarint();
+                        previous[i] += (zigzag >>> 1) ^ -(zigzag & 1);
+                        row[i] = previous[i];
+                        break;
+                    case TYPE_TEXT:
+                        row[i] = readString();
+                        break;
+                    default:
+                        throw new IOException("Corrupt backup: unknown value type " + type);
+                }
+            }
+            rowsLeft--;
+            return row;
+        }
+
+        @Override
+        public void close() throws IOException {
+            checked.close(); // closes the inflater and the underlying stream
+        }
+
+        private int readCount() throws IOException {
+            long value = readVarint();
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt backup: bad length " + value);
+            }
+            return (int) value;
+        }
+
+        private String readString() throws IOException {
+            int length = readCount();
+            if (length > MAX_STRING_BYTES) {
+                throw new IOException("Corrupt backup: string of " + length + " bytes");
+            }
+            byte[] bytes = new byte[length];
+            checked.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = checked.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+            throw new IOException("Corrupt backup: varint too long");
+        }
+
+        private static int readFully(InputStream in, byte[] buffer) throws IOException {
+            int total = 0;
+            while (total < buffer.length) {
+                int read = in.read(buffer, total, buffer.length - total);
+                if (read < 0) break;
+                total += read;
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BackupReader - Streams a JSON backup (see BackupWriter) back into the database
+ * The file is read token by token and every row is bound into a prepared SQLiteStatement,
+ * all inside one transaction: either the whole backup replaces the current data or, on any
+ * parse or insert error, nothing changes. Alarms are the caller's job, once, after it returns.
+ * Run it off the main thread.
+ */
+public final class BackupReader {
+
+    private static final String TAG = "BackupReader";
+
+    /** Called every {@link BackupWriter#PROGRESS_EVERY} rows, on the reading thread. */
+    public interface Progress {
+        void onProgress(int done);
+    }
+
+    /** What was restored. */
+    public static final class Result {
+        public final int medicines;
+        public final int history;
+
+        Result(int medicines, int history) {
+            this.medicines = medicines;
+            this.history = history;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DatabaseHelper helper;
+    private int done;
+
+    public BackupReader(DatabaseHelper helper) {
+        this.helper = helper;
+    }
+
+    /**
+     * Replace medicines and history with the backup in {@code in} (not closed).
+     * Throws, with the database rolled back, when the file is not a valid backup.
+     */
+    public Result read(InputStream in, Progress progress) throws IOException {
+        JsonReader json = new JsonReader(new BufferedReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8), BUFFER_SIZE));
+        SQLiteDatabase db = helper.getWritableDatabase();
+        SQLiteStatement insertMedicine = null;
+        SQLiteStatement insertHistory = null;
+        int medicines = 0;
+        int history = 0;
+        done = 0;
+
+        db.beginTransaction();
+        try {
+            helper.clearForRestore(db);
+            insertMedicine = helper.compileMedicineRestore(db);
+            insertHistory = helper.compileHistoryRestore(db);
+
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if ("medicines".equals(name)) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        readMedicine(json, insertMedicine);
+                        medicines++;
+                        report(progress);
+                    }
+                    json.endArray();
+                } else if ("history".equals(name)) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        readHistory(json, insertHistory);
+                        history++;
+                        report(progress);
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+
+            helper.finishRestore(db);
+            db.setTransactionSuccessful();
+            Log.d(TAG, "✅ Restored " + medicines + " medicine(s), " + history + " history row(s)");
+        } catch (IllegalStateException | NumberFormatException e) {
+            // JsonReader reports malformed documents this way
+            throw new IOException("Not a MedTrack backup: " + e.getMessage(), e);
+        } finally {
+            if (insertMedicine != null) insertMedicine.close();
+            if (insertHistory != null) insertHistory.close();
+            db.endTransaction();
+        }
+        return new Result(medicines, history);
+    }
+
+    private void readMedicine(JsonReader json, SQLiteStatement insert) throws IOException {
+        String name = null;
+        String dosage = null;
+        String instructions = null;
+        String time = null;
+        String date = null;
+        String frequency = null;
+        String recurrence = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "name": name = nextString(json); break;
+                case "dosage": dosage = nextString(json); break;
+                case "instructions": instructions = nextString(json); break;
+                case "time": time = nextString(json); break;
+                case "date": date = nextString(json); break;
+                case "frequency": frequency = nextString(json); break;
+                case "recurrence": recurrence = nextString(json); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+
+        // Older backups have no recurrence; the frequency text is parsed instead
+        Recurrence parsed = Recurrence.fromSpec(recurrence);
+        insert.bindString(1, required(name, "name"));
+        insert.bindString(2, required(dosage, "dosage"));
+        bindNullable(insert, 3, instructions);
+        insert.bindString(4, required(time, "time"));
+        insert.bindString(5, required(date, "date"));
+        insert.bindString(6, required(frequency, "frequency"));
+        bindNullable(insert, 7, parsed != null ? parsed.toSpec() : null);
+        insert.executeInsert();
+    }
+
+    private void readHistory(JsonReader json, SQLiteStatement insert) throws IOException {
+        String medicine = null;
+        String date = null;
+        String time = null;
+        String status = null;
+        long takenAt = 0;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            switch (json.nextName()) {
+                case "medicine": medicine = nextString(json); break;
+                case "date": date = nextString(json); break;
+                case "time": time = nextString(json); break;
+                case "status": status = nextString(json); break;
+                case "taken_at": takenAt = json.nextLong(); break;
+                default: json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (takenAt <= 0) {
+            // Backups from before taken_at was exported: parsed like backfillTakenAt(), and rows
+            // that can't be read keep 0 rather than counting as taken today
+            takenAt = Math.max(0, DatabaseHelper.parseLegacyTimestamp(date, time));
+        }
+        insert.bindString(1, required(medicine, "medicine"));
+        insert.bindString(2, required(date, "date"));
+        insert.bindString(3, required(time, "time"));
+        insert.bindString(4, required(status, "status"));
+        insert.bindLong(5, takenAt);
+        insert.executeInsert();
+    }
+
+    private void report(Progress progress) {
+        done++;
+        if (progress != null && done % BackupWriter.PROGRESS_EVERY == 0) {
+            progress.onProgress(done);
+        }
+    }
+
+    private static String nextString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    private static String required(String value, String field) throws IOException {
+        if (value == null) {
+            throw new IOException("Backup row without \"" + field + "\"");
+        }
+        return value;
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.AbdulPaito.medtrack.database;
+
+import androidx.annotation.NonNull;
+
+import java.util.UUID;
+
+/**
+ * BackupSegment - One file of an incremental backup chain (see IncrementalBackup)
+ * The base (sequence 0) holds all history up to upToHistoryId, each delta the rows after the
+ * previous segment's upToHistoryId. history_id is AUTOINCREMENT and history is append-only, so
+ * that watermark is all a delta needs. Every segment also carries a full medicines snapshot
+ * (a handful of rows, edited in place), and historyFloor - the oldest history id still in the
+ * database - so a delta can replay a "delete all history" made since the previous one.
+ */
+public class BackupSegment {
+    private final String chain;          // random id shared by a base and its deltas
+    private final int sequence;          // 0 = base
+    private final long afterHistoryId;   // exclusive
+    private final long upToHistoryId;    // inclusive; the watermark the next delta starts from
+    private final long historyFloor;
+    private final long createdAt;        // epoch millis
+
+    public BackupSegment(String chain, int sequence, long afterHistoryId, long upToHistoryId,
+                         long historyFloor, long createdAt) {
+        this.chain = chain;
+        this.sequence = sequence;
+        this.afterHistoryId = afterHistoryId;
+        this.upToHistoryId = upToHistoryId;
+        this.historyFloor = historyFloor;
+        this.createdAt = createdAt;
+    }
+
+    /** First segment of a new chain, covering history ids up to {@code maxHistoryId}. */
+    static BackupSegment base(long minHistoryId, long maxHistoryId, long now) {
+        return new BackupSegment(UUID.randomUUID().toString(), 0, 0, maxHistoryId,
+                floor(minHistoryId, maxHistoryId), now);
+    }
+
+    /** The delta after this segment. Ids never go backwards, even once history has been cleared. */
+    BackupSegment next(long minHistoryId, long maxHistoryId, long now) {
+        long upTo = Math.max(upToHistoryId, maxHistoryId);
+        return new BackupSegment(chain, sequence + 1, upToHistoryId, upTo,
+                floor(minHistoryId, upTo), now);
+    }
+
+    // Empty history: everything up to the watermark is gone
+    private static long floor(long minHistoryId, long upTo) {
+        return minHistoryId > 0 ? minHistoryId : upTo + 1;
+    }
+
+    public boolean isBase() {
+        return sequence == 0;
+    }
+
+    public String getChain() {
+        return chain;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public long getAfterHistoryId() {
+        return afterHistoryId;
+    }
+
+    public long getUpToHistoryId() {
+        return upToHistoryId;
+    }
+
+    public long getHistoryFloor() {
+        return historyFloor;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return (isBase() ? "base" : "delta #" + sequence) + " of " + chain
+                + " (history " + afterHistoryId + ".." + upToHistoryId + ", floor " + historyFloor + ")";
+    }
+}
@@ -0,0 +1,114 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * BackupWriter - Streams the JSON backup straight from DatabaseHelper cursors
+ * Rows are written one at a time through a buffered JsonWriter, so memory use doesn't grow
+ * with the history. The document has the same shape as the old JSONObject export
+ * ({"medicines": [...], "history": [...]}, null fields left out), so older builds can still
+ * restore it; history rows additionally carry taken_at. Run it off the main thread.
+ */
+public final class BackupWriter {
+
+    /** Called every {@link #PROGRESS_EVERY} rows and once at the end, on the writing thread. */
+    public interface Progress {
+        void onProgress(int done, int total);
+    }
+
+    static final int PROGRESS_EVERY = 500;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DatabaseHelper db;
+
+    public BackupWriter(DatabaseHelper db) {
+        this.db = db;
+    }
+
+    /**
+     * Write the whole backup to {@code out}, which is flushed but not closed.
+     * Returns the number of rows written.
+     */
+    public int write(OutputStream out, Progress progress) throws IOException {
+        // One read transaction for both cursors, so the export is a single consistent snapshot
+        SQLiteDatabase database = db.getWritableDatabase();
+        database.beginTransactionNonExclusive();
+        Cursor medicines = null;
+        Cursor history = null;
+        try {
+            medicines = db.queryMedicinesForBackup();
+            history = db.queryHistoryForBackup();
+            int total = medicines.getCount() + history.getCount();
+            int done = 0;
+
+            JsonWriter json = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+            json.setIndent("    ");
+            json.beginObject();
+
+            json.name("medicines").beginArray();
+            while (medicines.moveToNext()) {
+                json.beginObject();
+                field(json, "name", medicines.getString(0));
+                field(json, "dosage", medicines.getString(1));
+                field(json, "instructions", medicines.getString(2));
+                field(json, "time", medicines.getString(3));
+                field(json, "date", medicines.getString(4));
+                field(json, "frequency", medicines.getString(5));
+                field(json, "recurrence", medicines.getString(6));
+                json.endObject();
+                report(progress, ++done, total);
+            }
+            json.endArray();
+
+            json.name("history").beginArray();
+            while (history.moveToNext()) {
+                json.beginObject();
+                field(json, "medicine", history.getString(0));
+                field(json, "date", history.getString(1));
+                field(json, "time", history.getString(2));
+                field(json, "status", history.getString(3));
+                json.name("taken_at").value(history.getLong(4));
+                json.endObject();
+                report(progress, ++done, total);
+            }
+            json.endArray();
+
+            json.endObject();
+            json.flush();
+            if (progress != null) {
+                progress.onProgress(done, total);
+            }
+            return done;
+        } finally {
+            if (medicines != null) {
+                medicines.close();
+            }
+            if (history != null) {
+                history.close();
+            }
+            database.endTransaction();
+        }
+    }
+
+    // JSONObject.put(name, null) dropped the key; keep that so old restores still parse
+    private static void field(JsonWriter json, String name, String value) throws IOException {
+        if (value != null) {
+            json.name(name).value(value);
+        }
+    }
+
+    private static void report(Progress progress, int done, int total) {
+        if (progress != null && done % PROGRESS_EVERY == 0) {
+            progress.onProgress(done, total);
+        }
+    }
+}
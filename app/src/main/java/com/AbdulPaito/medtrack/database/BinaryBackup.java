@@ -0,0 +1,329 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BinaryBackup - Compact backup (.mtbk) of medicines and history in the BackupCodec format
+ * Unlike the JSON backup it keeps every column, ids included, so history stays linked to its
+ * medicines and inactive medicines come back too. Columns are matched by name on restore:
+ * ones this schema doesn't have are skipped, missing ones get their defaults. Like
+ * BackupReader, a restore is one transaction that is only committed once the checksum at the
+ * end of the file has been verified. The same file layout, led by a backup_segment table,
+ * carries the segments of an incremental backup (see IncrementalBackup). Run it off the main thread.
+ */
+public final class BinaryBackup {
+
+    private static final String TAG = "BinaryBackup";
+
+    /** Extension and MIME type for the document picker. */
+    public static final String FILE_EXTENSION = ".mtbk";
+    public static final String MIME_TYPE = "application/octet-stream";
+
+    static final String SEGMENT_TABLE = "backup_segment";
+    private static final String[] SEGMENT_COLUMNS = {"chain", "sequence", "after_history_id",
+            "up_to_history_id", "history_floor", "created_at"};
+
+    private final DatabaseHelper helper;
+    private int done;
+    private int medicines;
+    private int history;
+    private boolean historyDeleted;
+
+    public BinaryBackup(DatabaseHelper helper) {
+        this.helper = helper;
+    }
+
+    // ============================
+    // 💾 Backup
+    // ============================
+
+    /**
+     * Write the whole backup to {@code out}, which is flushed but not closed.
+     * Returns the number of rows written.
+     */
+    public int write(OutputStream out, BackupWriter.Progress progress) throws IOException {
+        return write(out, progress, null);
+    }
+
+    /** As above, or one incremental segment: its header, all medicines and its history range. */
+    int write(OutputStream out, BackupWriter.Progress progress, BackupSegment segment) throws IOException {
+        String[] tables = DatabaseHelper.BINARY_BACKUP_TABLES;
+        Cursor[] cursors = new Cursor[tables.length];
+        // One read transaction for every cursor, so history never refers to a medicine the
+        // medicines table no longer has (the restore runs with foreign keys on)
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            int total = 0;
+            for (int i = 0; i < tables.length; i++) {
+                cursors[i] = segment != null && i == tables.length - 1
+                        ? helper.queryHistoryRangeForBackup(segment.getAfterHistoryId(), segment.getUpToHistoryId())
+                        : helper.queryTableForBackup(tables[i]);
+                total += cursors[i].getCount();
+            }
+
+            BackupCodec.Writer writer = new BackupCodec.Writer(out);
+            if (segment != null) {
+                writeSegment(writer, segment);
+            }
+            done = 0;
+            for (int i = 0; i < tables.length; i++) {
+                Cursor cursor = cursors[i];
+                String[] columns = cursor.getColumnNames();
+                writer.beginTable(tables[i], columns, cursor.getCount());
+                while (cursor.moveToNext()) {
+                    for (int c = 0; c < columns.length; c++) {
+                        switch (cursor.getType(c)) {
+                            case Cursor.FIELD_TYPE_NULL:
+                                writer.writeNull();
+                                break;
+                            case Cursor.FIELD_TYPE_INTEGER:
+                                writer.writeLong(cursor.getLong(c));
+                                break;
+                            default:
+                                // TEXT; no REAL or BLOB columns in these tables
+                                writer.writeText(cursor.getString(c));
+                        }
+                    }
+                    done++;
+                    if (progress != null && done % BackupWriter.PROGRESS_EVERY == 0) {
+                        progress.onProgress(done, total);
+                    }
+                }
+            }
+            writer.finish();
+            out.flush();
+            if (progress != null) {
+                progress.onProgress(done, total);
+            }
+            return done;
+        } finally {
+            for (Cursor cursor : cursors) {
+                if (cursor != null) cursor.close();
+            }
+            db.endTransaction();
+        }
+    }
+
+    private static void writeSegment(BackupCodec.Writer writer, BackupSegment segment) throws IOException {
+        writer.beginTable(SEGMENT_TABLE, SEGMENT_COLUMNS, 1);
+        writer.writeText(segment.getChain());
+        writer.writeLong(segment.getSequence());
+        writer.writeLong(segment.getAfterHistoryId());
+        writer.writeLong(segment.getUpToHistoryId());
+        writer.writeLong(segment.getHistoryFloor());
+        writer.writeLong(segment.getCreatedAt());
+    }
+
+    // ============================
+    // ♻️ Restore
+    // ============================
+
+    /**
+     * Replace medicines and history with the backup in {@code in} (not closed).
+     * Throws, with the database rolled back, when the file is corrupt, not a backup, or an
+     * incremental delta (those only restore on top of their base, see IncrementalBackup).
+     */
+    public BackupReader.Result read(InputStream in, BackupReader.Progress progress) throws IOException {
+        BackupCodec.Reader reader = new BackupCodec.Reader(in);
+        SQLiteDatabase db = helper.getWritableDatabase();
+        reset();
+
+        db.beginTransaction();
+        try {
+            apply(db, reader, null, progress);
+            helper.finishRestore(db, historyDeleted);
+            db.setTransactionSuccessful();
+            Log.d(TAG, "✅ Restored " + medicines + " medicine(s), " + history + " history row(s)");
+        } finally {
+            db.endTransaction();
+        }
+        return new BackupReader.Result(medicines, history);
+    }
+
+    /**
+     * The segment header of an incremental backup file, or null for a plain full backup.
+     * Only the start of the file is read; its checksum is checked when it is applied.
+     */
+    static BackupSegment readSegment(InputStream in) throws IOException {
+        BackupCodec.Reader reader = new BackupCodec.Reader(in);
+        if (!SEGMENT_TABLE.equals(reader.nextTable())) return null;
+        return readSegment(reader);
+    }
+
+    void reset() {
+        done = 0;
+        medicines = 0;
+        history = 0;
+        historyDeleted = false;
+    }
+
+    int medicines() {
+        return medicines;
+    }
+
+    int history() {
+        return history;
+    }
+
+    boolean historyDeleted() {
+        return historyDeleted;
+    }
+
+    /**
+     * Apply one whole file inside the caller's transaction. A full backup or base segment replaces
+     * everything; a delta is only accepted when it is {@code expected}, and then updates
+     * medicines in place and appends its history. Returns once the checksum has been verified.
+     */
+    void apply(SQLiteDatabase db, BackupCodec.Reader reader, BackupSegment expected,
+               BackupReader.Progress progress) throws IOException {
+        String table = reader.nextTable();
+        BackupSegment segment = null;
+        if (SEGMENT_TABLE.equals(table)) {
+            segment = readSegment(reader);
+            table = reader.nextTable();
+        }
+        if (expected != null && (segment == null || !segment.getChain().equals(expected.getChain())
+                || segment.getSequence() != expected.getSequence())) {
+            throw new IOException("Backup file changed while restoring");
+        }
+
+        boolean delta = segment != null && !segment.isBase();
+        if (delta && expected == null) {
+            throw new IOException("This is incremental backup #" + segment.getSequence()
+                    + " - restore it together with its base and the backups before it");
+        }
+        if (delta) {
+            historyDeleted |= helper.deleteHistoryBefore(db, segment.getHistoryFloor()) > 0;
+        } else {
+            helper.clearForRestore(db);
+        }
+
+        for (; table != null; table = reader.nextTable()) {
+            if (DatabaseHelper.BINARY_BACKUP_TABLES[0].equals(table)) {
+                medicines = readTable(db, reader, delta, progress);
+            } else if (DatabaseHelper.BINARY_BACKUP_TABLES[1].equals(table)) {
+                history += readTable(db, reader, false, progress);
+            } else {
+                Log.w(TAG, "⚠️ Skipping unknown table " + table);
+                // nextTable() skips its rows
+            }
+        }
+        // nextTable() returned null: the checksum matched
+    }
+
+    private static BackupSegment readSegment(BackupCodec.Reader reader) throws IOException {
+        String[] columns = reader.columns();
+        Object[] row = reader.nextRow();
+        if (row == null) {
+            throw new IOException("Backup segment header is empty");
+        }
+        Object[] values = new Object[SEGMENT_COLUMNS.length];
+        for (int c = 0; c < columns.length; c++) {
+            for (int i = 0; i < SEGMENT_COLUMNS.length; i++) {
+                if (SEGMENT_COLUMNS[i].equals(columns[c])) values[i] = row[c];
+            }
+        }
+        for (int i = 1; i < values.length; i++) {
+            if (!(values[i] instanceof Long)) {
+                throw new IOException("Backup segment without " + SEGMENT_COLUMNS[i]);
+            }
+        }
+        if (!(values[0] instanceof String)) {
+            throw new IOException("Backup segment without chain");
+        }
+        return new BackupSegment((String) values[0], ((Long) values[1]).intValue(), (Long) values[2],
+                (Long) values[3], (Long) values[4], (Long) values[5]);
+    }
+
+    /**
+     * Insert the current table's rows; {@code upsert} updates rows that exist by primary key
+     * and deletes the ones the table no longer lists (a delta's medicines snapshot).
+     */
+    private int readTable(SQLiteDatabase db, BackupCodec.Reader reader, boolean upsert,
+                          BackupReader.Progress progress) throws IOException {
+        String table = reader.table();
+        String[] columns = reader.columns();
+        List<String> known = helper.columnsOf(db, table);
+
+        // Backup column index for each bound parameter
+        int[] source = new int[columns.length];
+        int bound = 0;
+        for (int c = 0; c < columns.length; c++) {
+            int at = known.indexOf(columns[c]);
+            if (at >= 0) {
+                known.set(at, null); // a duplicated column name binds once
+                source[bound++] = c;
+            }
+        }
+        if (bound == 0) {
+            throw new IOException("Backup table " + table + " has no known columns");
+        }
+        List<String> names = new ArrayList<>(bound);
+        for (int i = 0; i < bound; i++) {
+            names.add(columns[source[i]]);
+        }
+        int key = names.indexOf(DatabaseHelper.primaryKeyOf(table));
+        if (upsert && key < 0) {
+            throw new IOException("Backup table " + table + " has no ids");
+        }
+
+        int rows = 0;
+        List<Long> ids = new ArrayList<>();
+        SQLiteStatement update = upsert ? helper.compileRowUpdate(db, table, names) : null;
+        try (SQLiteStatement insert = helper.compileRowRestore(db, table, names)) {
+            Object[] row;
+            while ((row = reader.nextRow()) != null) {
+                boolean updated = false;
+                if (update != null) {
+                    bindRow(update, row, source, bound);
+                    bindValue(update, bound + 1, row[source[key]]);
+                    updated = update.executeUpdateDelete() > 0;
+                    ids.add((Long) row[source[key]]);
+                }
+                if (!updated) {
+                    bindRow(insert, row, source, bound);
+                    insert.executeInsert();
+                }
+                rows++;
+                done++;
+                if (progress != null && done % BackupWriter.PROGRESS_EVERY == 0) {
+                    progress.onProgress(done);
+                }
+            }
+        } catch (ClassCastException e) {
+            throw new IOException("Backup table " + table + " has a non-numeric id", e);
+        } finally {
+            if (update != null) update.close();
+        }
+        if (upsert) {
+            helper.deleteMedicinesExcept(db, ids);
+        }
+        return rows;
+    }
+
+    private static void bindRow(SQLiteStatement statement, Object[] row, int[] source, int bound) {
+        for (int i = 0; i < bound; i++) {
+            bindValue(statement, i + 1, row[source[i]]);
+        }
+    }
+
+    private static void bindValue(SQLiteStatement statement, int index, Object value) {
+        if (value instanceof Long) {
+            statement.bindLong(index, (Long) value);
+        } else if (value != null) {
+            statement.bindString(index, (String) value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
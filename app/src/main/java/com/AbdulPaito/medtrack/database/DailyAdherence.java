@@ -0,0 +1,37 @@
+package com.AbdulPaito.medtrack.database;
+
+import java.time.LocalDate;
+
+/**
+ * DailyAdherence - Taken/missed counts for one calendar day (device time zone)
+ */
+public class DailyAdherence {
+    private final LocalDate day;
+    private final int takenCount;
+    private final int missedCount;
+
+    public DailyAdherence(LocalDate day, int takenCount, int missedCount) {
+        this.day = day;
+        this.takenCount = takenCount;
+        this.missedCount = missedCount;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public int getTakenCount() {
+        return takenCount;
+    }
+
+    public int getMissedCount() {
+        return missedCount;
+    }
+
+    // 0-100, or 0 when nothing was recorded that day
+    public int getAdherenceRate() {
+        int total = takenCount + missedCount;
+        if (total == 0) return 0;
+        return (int) ((takenCount * 100.0) / total);
+    }
+}
@@ -0,0 +1,259 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.StrictMode;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DatabaseExecutor - Runs DatabaseHelper queries off the main thread
+ * Results are delivered back on the main looper, and pending work is cancelled
+ * automatically when the owning activity is destroyed.
+ */
+public final class DatabaseExecutor {
+
+    private static final String TAG = "DatabaseExecutor";
+    private static final int POOL_SIZE = 2;
+    private static final int QUEUE_CAPACITY = 64;
+
+    private static volatile DatabaseExecutor instance;
+
+    private final DatabaseHelper databaseHelper;
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor writer;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Work run on a database thread. */
+    public interface Query<T> {
+        T run(DatabaseHelper db) throws Exception;
+    }
+
+    /** Result delivered on the main thread. */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    /** Failure delivered on the main thread, instead of the result. */
+    public interface ErrorCallback {
+        void onError(Exception error);
+    }
+
+    public static DatabaseExecutor getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseExecutor.class) {
+                if (instance == null) {
+                    instance = new DatabaseExecutor(DatabaseHelper.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private DatabaseExecutor(DatabaseHelper databaseHelper) {
+        this.databaseHelper = databaseHelper;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                POOL_SIZE, POOL_SIZE,
+                30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "medtrack-db-" + threadCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.writer = new ThreadPoolExecutor(
+                1, 1,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "medtrack-db-write"));
+        this.writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Run a query in the background and hand the result to the callback on the main thread.
+     * The task is cancelled when the owner reaches ON_DESTROY. Must be called on the main thread.
+     */
+    public <T> Task execute(@NonNull LifecycleOwner owner, @NonNull Query<T> query, Callback<T> callback) {
+        return execute(owner, query, callback, null);
+    }
+
+    /**
+     * As above, and tell {@code onError} when the query throws or the queue is full, so callers
+     * holding the task can reset and try again. Not called for cancelled tasks.
+     */
+    public <T> Task execute(@NonNull LifecycleOwner owner, @NonNull Query<T> query, Callback<T> callback,
+                            ErrorCallback onError) {
+        Task task = new Task(owner.getLifecycle());
+        if (owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            task.cancel();
+            return task;
+        }
+        owner.getLifecycle().addObserver(task);
+
+        try {
+            task.future = executor.submit(() -> {
+                if (task.isCancelled()) return;
+                try {
+                    T result = query.run(databaseHelper);
+                    mainHandler.post(() -> {
+                        if (task.isCancelled()) return;
+                        task.detach();
+                        if (callback != null) {
+                            callback.onResult(result);
+                        }
+                    });
+                } catch (OperationCanceledException e) {
+                    // Caller cancelled the query through its CancellationSignal; nothing to deliver
+                    mainHandler.post(task::detach);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Database query failed", e);
+                    postError(task, onError, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "❌ Database queue full, dropping query", e);
+            if (onError != null) {
+                postError(task, onError, e); // the caller retries, so keep the task pending until then
+            } else {
+                task.cancel();
+            }
+        }
+        return task;
+    }
+
+    private void postError(Task task, ErrorCallback onError, Exception error) {
+        mainHandler.post(() -> {
+            if (task.isCancelled()) return;
+            task.detach();
+            if (onError != null) {
+                onError.onError(error);
+            }
+        });
+    }
+
+    /**
+     * App-scoped work that must finish and report even if the screen that started it goes away,
+     * e.g. backup and restore. Both callbacks run on the main thread; {@code onError} also gets
+     * a RejectedExecutionException when the queue is full, so the caller is never left waiting.
+     */
+    public <T> void execute(@NonNull Query<T> query, @NonNull Callback<T> callback, @NonNull ErrorCallback onError) {
+        try {
+            executor.execute(() -> {
+                try {
+                    T result = query.run(databaseHelper);
+                    mainHandler.post(() -> callback.onResult(result));
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Database task failed", e);
+                    mainHandler.post(() -> onError.onError(e));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.e(TAG, "❌ Database queue full, rejecting task", e);
+            mainHandler.post(() -> onError.onError(e));
+        }
+    }
+
+    /**
+     * Fire-and-forget write with no owner, e.g. logging a dose or deleting a medicine.
+     * Writes are never dropped: they run in order on their own lane, whose queue is unbounded,
+     * so a full query pool can't lose a dose record or leave a deleted medicine behind.
+     */
+    public void execute(@NonNull Query<?> query) {
+        writer.execute(() -> {
+            try {
+                query.run(databaseHelper);
+            } catch (Exception e) {
+                Log.e(TAG, "❌ Database write failed", e);
+            }
+        });
+    }
+
+    /**
+     * Droppable bookkeeping such as wake lock and receiver statistics. Shares the bounded
+     * query pool, and is skipped when its queue is full rather than delaying real work.
+     */
+    public void record(@NonNull Query<?> query) {
+        try {
+            executor.execute(() -> {
+                try {
+                    query.run(databaseHelper);
+                } catch (Exception e) {
+                    Log.e(TAG, "❌ Database stats write failed", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "⚠️ Database queue full, skipping stats write");
+        }
+    }
+
+    /**
+     * Test mode: crash the app on any disk read or write made from the main thread.
+     * Used by the instrumented tests to prove screens only touch SQLite through this executor.
+     */
+    public static void enableStrictMainThreadMode() {
+        Runnable enable = () -> StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectDiskReads()
+                .detectDiskWrites()
+                .penaltyLog()
+                .penaltyDeath()
+                .build());
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            enable.run();
+        } else {
+            new Handler(Looper.getMainLooper()).post(enable);
+        }
+    }
+
+    /** Handle to a running query; cancelled automatically on ON_DESTROY. */
+    public static final class Task implements LifecycleEventObserver {
+        private final Lifecycle lifecycle;
+        private volatile boolean cancelled;
+        private volatile Future<?> future;
+
+        private Task(Lifecycle lifecycle) {
+            this.lifecycle = lifecycle;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(false);
+            }
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                detach();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void detach() {
+            lifecycle.removeObserver(this);
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY) {
+                cancel();
+            }
+        }
+    }
+}
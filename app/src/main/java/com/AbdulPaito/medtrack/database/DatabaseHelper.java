@@ -5,15 +5,29 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.CancellationSignal;
+import android.util.Log;
 
 import com.AbdulPaito.medtrack.HistoryItem;
+import com.AbdulPaito.medtrack.TimeUtils;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class DatabaseHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = "DatabaseHelper";
+
     private static final String DATABASE_NAME = "medtrack.db";
-    private static final int DATABASE_VERSION = 5; // 🔼 bumped for history date column
+    static final int DATABASE_VERSION = 17; // 🔼 bumped to re-derive whole-day hour intervals
 
     // ===== Medicines Table =====
     private static final String TABLE_MEDICINES = "medicines";
@@ -24,9 +38,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String KEY_REMINDER_TIME = "reminder_time";
     private static final String KEY_DATE = "date"; // ✅ added column
     private static final String KEY_FREQUENCY = "frequency";
+    private static final String KEY_RECURRENCE = "recurrence"; // Recurrence.toSpec()
     private static final String KEY_IS_ACTIVE = "is_active";
     private static final String KEY_CREATED_AT = "created_at";
 
+    // 🔎 Full-text index over medicines (external content, rowid = medicines.id)
+    private static final String TABLE_MEDICINES_FTS = "medicines_fts";
+
     // ===== History Table =====
     private static final String TABLE_HISTORY = "history";
     private static final String KEY_HISTORY_ID = "history_id";
@@ -35,9 +53,100 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String KEY_HISTORY_DATE = "date";
     private static final String KEY_HISTORY_TIME = "time_taken";
     private static final String KEY_HISTORY_STATUS = "status";
+    private static final String KEY_HISTORY_TAKEN_AT = "taken_at";       // epoch millis
+    private static final String KEY_HISTORY_MEDICINE_ID = "medicine_id"; // FK -> medicines.id
+
+    // ===== Daily Summary Tables (maintained by triggers on history) =====
+    private static final String TABLE_DAILY_SUMMARY = "daily_summary";
+    private static final String TABLE_DAILY_MEDICINE_SUMMARY = "daily_medicine_summary";
+    private static final String KEY_SUMMARY_DAY = "day";            // yyyy-MM-dd, device time zone
+    private static final String KEY_SUMMARY_MEDICINE = "medicine_name";
+    private static final String KEY_SUMMARY_TAKEN = "taken";
+    private static final String KEY_SUMMARY_MISSED = "missed";
+
+    // 🔥 Streak table (single row, see StreakState)
+    private static final String TABLE_STREAK = "streak";
+    private static final String KEY_STREAK_ID = "id";
+    private static final String KEY_STREAK_LAST_DAY = "last_day";   // epoch day, StreakState.EMPTY = none
+    private static final String KEY_STREAK_RUN_BEFORE = "run_before";
+    private static final String KEY_STREAK_CURRENT = "current_run";
+    private static final String KEY_STREAK_BEST_BEFORE = "best_before";
+    private static final String KEY_STREAK_BEST = "best_run";
+    private static final String KEY_STREAK_STALE = "stale";        // 1 = recompute before next read
+
+    // Alarm ledger - every PendingIntent slot handed to AlarmManager (see AlarmLedgerEntry)
+    private static final String TABLE_ALARM_LEDGER = "alarm_ledger";
+    private static final String KEY_LEDGER_REQUEST_CODE = "request_code";
+    private static final String KEY_LEDGER_MEDICINE_ID = "medicine_id"; // 0 = app-wide
+    private static final String KEY_LEDGER_KIND = "kind";
+    private static final String KEY_LEDGER_TRIGGER_AT = "trigger_at";   // epoch millis
+    private static final String KEY_LEDGER_STATE = "state";
+    private static final String KEY_LEDGER_UPDATED_AT = "updated_at";
+    public static final int BATCH_REQUEST_CODE = 0; // reserved slot of the next-due batch alarm
+
+    // 🔋 Wake-lock hold time per (day, tag), booked by WakeLocks on release
+    private static final String TABLE_WAKE_LOCK_STATS = "wake_lock_stats";
+    private static final String KEY_WAKE_DAY = "day";                   // yyyy-MM-dd, device time zone
+    private static final String KEY_WAKE_TAG = "tag";
+    private static final String KEY_WAKE_HOLD_MS = "hold_ms";
+    private static final String KEY_WAKE_ACQUISITIONS = "acquisitions";
+
+    // ⏱️ Broadcast latency per (day, receiver, LatencyHistogram bucket), booked by AsyncReceiver
+    private static final String TABLE_RECEIVER_LATENCY = "receiver_latency";
+    private static final String KEY_LATENCY_DAY = "day";                // yyyy-MM-dd, device time zone
+    private static final String KEY_LATENCY_RECEIVER = "receiver";
+    private static final String KEY_LATENCY_BUCKET = "bucket";
+    private static final String KEY_LATENCY_CALLS = "calls";
+    private static final String KEY_LATENCY_TIMEOUTS = "timeouts";
+    private static final String KEY_LATENCY_MAX_MS = "max_ms";
+
+    // 💾 Last incremental backup written (single row, see BackupSegment)
+    private static final String TABLE_BACKUP_CHAIN = "backup_chain";
+    private static final String KEY_CHAIN_ID = "id";
+    private static final String KEY_CHAIN = "chain";
+    private static final String KEY_CHAIN_SEQUENCE = "sequence";
+    private static final String KEY_CHAIN_AFTER = "after_history_id";
+    private static final String KEY_CHAIN_UP_TO = "up_to_history_id";
+    private static final String KEY_CHAIN_FLOOR = "history_floor";
+    private static final String KEY_CHAIN_CREATED_AT = "created_at";
+
+    // Legacy history strings: dates were written as dd/MM/yyyy or yyyy-MM-dd,
+    // times as "h:mm a" or "HH:mm" depending on the caller
+    private static final DateTimeFormatter LEGACY_DATE_DMY = DateTimeFormatter.ofPattern("d/M/yyyy", Locale.US);
+    private static final DateTimeFormatter LEGACY_TIME_12H = new DateTimeFormatterBuilder()
+            .parseCaseInsensitive().appendPattern("h:mm a").toFormatter(Locale.US);
+    private static final DateTimeFormatter LEGACY_TIME_24H = DateTimeFormatter.ofPattern("H:mm", Locale.US);
+
+    // One helper (and one open connection) per process - see getInstance()
+    private static volatile DatabaseHelper instance;
+
+    /**
+     * Returns the process-wide helper. The first call is made by MedTrackApplication,
+     * every other caller shares the same long-lived connection instead of reopening
+     * medtrack.db per operation.
+     */
+    public static DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            synchronized (DatabaseHelper.class) {
+                if (instance == null) {
+                    instance = new DatabaseHelper(context.getApplicationContext(), DATABASE_NAME);
+                }
+            }
+        }
+        return instance;
+    }
 
-    public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    // Also opens the staging copy of a snapshot restore (see SnapshotBackup), and test databases
+    DatabaseHelper(Context context, String databaseName) {
+        super(context, databaseName, null, DATABASE_VERSION);
+        // WAL lets readers run alongside the writer on the shared connection pool
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.setForeignKeyConstraintsEnabled(true);
     }
 
     @Override
@@ -50,6 +159,7 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + KEY_REMINDER_TIME + " TEXT NOT NULL,"
                 + KEY_DATE + " TEXT NOT NULL," // ✅ date column
                 + KEY_FREQUENCY + " TEXT NOT NULL,"
+                + KEY_RECURRENCE + " TEXT,"
                 + KEY_IS_ACTIVE + " INTEGER DEFAULT 1,"
                 + KEY_CREATED_AT + " DATETIME DEFAULT CURRENT_TIMESTAMP"
                 + ")";
@@ -59,15 +169,49 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 + KEY_HISTORY_MEDICINE_NAME + " TEXT NOT NULL,"
                 + KEY_HISTORY_DATE + " TEXT NOT NULL,"
                 + KEY_HISTORY_TIME + " TEXT NOT NULL,"
-                + KEY_HISTORY_STATUS + " TEXT NOT NULL"
+                + KEY_HISTORY_STATUS + " TEXT NOT NULL,"
+                + KEY_HISTORY_TAKEN_AT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_HISTORY_MEDICINE_ID + " INTEGER REFERENCES " + TABLE_MEDICINES + "(" + KEY_ID + ") ON DELETE SET NULL"
                 + ")";
 
         db.execSQL(CREATE_MEDICINES_TABLE);
         db.execSQL(CREATE_HISTORY_TABLE);
+        createHistoryIndexes(db);
+        createDailySummary(db);
+        createStreak(db);
+        createMedicinesFts(db);
+        createAlarmLedger(db);
+        createWakeLockStats(db);
+        createBackupChain(db);
+        createReceiverLatency(db);
+    }
+
+    private void createHistoryIndexes(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_taken_at ON "
+                + TABLE_HISTORY + "(" + KEY_HISTORY_TAKEN_AT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_status_taken_at ON "
+                + TABLE_HISTORY + "(" + KEY_HISTORY_STATUS + ", " + KEY_HISTORY_TAKEN_AT + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_medicine_id ON "
+                + TABLE_HISTORY + "(" + KEY_HISTORY_MEDICINE_ID + ")");
+        createHistoryPagingIndex(db);
+    }
+
+    // (status, rowid) lets a filtered keyset page walk the index without sorting
+    private void createHistoryPagingIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_history_status ON "
+                + TABLE_HISTORY + "(" + KEY_HISTORY_STATUS + ")");
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Very old schemas are recreated from scratch
+        if (oldVersion < 4) {
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MEDICINES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_HISTORY);
+            onCreate(db);
+            return;
+        }
+
         // Add date column to history table if upgrading from version < 5
         if (oldVersion < 5) {
             try {
@@ -76,15 +220,353 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 // Column might already exist, ignore
             }
         }
-        
-        // For other upgrades, recreate tables
-        if (oldVersion < 4) {
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MEDICINES);
-            db.execSQL("DROP TABLE IF EXISTS " + TABLE_HISTORY);
-            onCreate(db);
+
+        // v6: typed, indexed timestamp + medicine reference on history
+        if (oldVersion < 6) {
+            db.execSQL("ALTER TABLE " + TABLE_HISTORY + " ADD COLUMN "
+                    + KEY_HISTORY_TAKEN_AT + " INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE " + TABLE_HISTORY + " ADD COLUMN "
+                    + KEY_HISTORY_MEDICINE_ID + " INTEGER REFERENCES "
+                    + TABLE_MEDICINES + "(" + KEY_ID + ") ON DELETE SET NULL");
+            backfillTakenAt(db);
+            createHistoryIndexes(db);
+        }
+
+        // v7: materialized per-day counts, filled from existing history
+        if (oldVersion < 7) {
+            createDailySummary(db);
+            rebuildDailySummary(db);
+        }
+
+        // v8: persisted day-based streak, folded from daily_summary
+        if (oldVersion < 8) {
+            createStreak(db);
+            recomputeStreak(db);
+        }
+
+        // v9: index for status-filtered history pages
+        if (oldVersion < 9) {
+            createHistoryPagingIndex(db);
+        }
+
+        // v10: FTS4 search index over existing medicines
+        if (oldVersion < 10) {
+            createMedicinesFts(db);
+            db.execSQL("INSERT INTO " + TABLE_MEDICINES_FTS + "(" + TABLE_MEDICINES_FTS + ") VALUES ('rebuild')");
+        }
+
+        // v11: structured recurrence parsed once from the free-text frequency
+        if (oldVersion < 11) {
+            db.execSQL("ALTER TABLE " + TABLE_MEDICINES + " ADD COLUMN " + KEY_RECURRENCE + " TEXT");
+            backfillRecurrence(db);
+        }
+
+        // v12: ledger of armed alarms; starts empty and fills on the next reschedule
+        if (oldVersion < 12) {
+            createAlarmLedger(db);
+        }
+
+        // v13: wake-lock hold time per day and tag
+        if (oldVersion < 13) {
+            createWakeLockStats(db);
+        }
+
+        // v14: incremental backup watermark; the first incremental backup is a full base
+        if (oldVersion < 14) {
+            createBackupChain(db);
+        }
+
+        // v15: an empty streak row was last_day 0, which is also a real day; rebuild it
+        if (oldVersion < 15) {
+            recomputeStreak(db);
+        }
+
+        // v16: receiver latency histograms, so the :alarm and :reminder numbers outlive their process
+        if (oldVersion < 16) {
+            createReceiverLatency(db);
+        }
+
+        // v17: "Every 48 hours" was stored as daily; recurrence only ever comes from the
+        // frequency text, so deriving it again is safe for every row
+        if (oldVersion < 17) {
+            backfillRecurrence(db);
+        }
+    }
+
+    /**
+     * daily_summary holds one row per day and daily_medicine_summary one row per (day, medicine).
+     * An AFTER INSERT trigger on history keeps both current inside the inserting transaction,
+     * so statistics read a few hundred summary rows instead of re-aggregating raw history.
+     * (Plain INSERT OR IGNORE + UPDATE because UPSERT needs a newer SQLite than minSdk ships.)
+     */
+    private void createDailySummary(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DAILY_SUMMARY + "("
+                + KEY_SUMMARY_DAY + " TEXT PRIMARY KEY,"
+                + KEY_SUMMARY_TAKEN + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_SUMMARY_MISSED + " INTEGER NOT NULL DEFAULT 0"
+                + ")");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_DAILY_MEDICINE_SUMMARY + "("
+                + KEY_SUMMARY_DAY + " TEXT NOT NULL,"
+                + KEY_SUMMARY_MEDICINE + " TEXT NOT NULL,"
+                + KEY_SUMMARY_TAKEN + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_SUMMARY_MISSED + " INTEGER NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY (" + KEY_SUMMARY_DAY + ", " + KEY_SUMMARY_MEDICINE + ")"
+                + ")");
+
+        String day = sqlLocalDay("NEW." + KEY_HISTORY_TAKEN_AT);
+        String taken = "(NEW." + KEY_HISTORY_STATUS + " = 'Taken')";
+        String missed = "(NEW." + KEY_HISTORY_STATUS + " = 'Missed')";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_history_daily_summary AFTER INSERT ON "
+                + TABLE_HISTORY + " BEGIN "
+                + "INSERT OR IGNORE INTO " + TABLE_DAILY_SUMMARY + "(" + KEY_SUMMARY_DAY + ") VALUES (" + day + "); "
+                + "UPDATE " + TABLE_DAILY_SUMMARY + " SET "
+                + KEY_SUMMARY_TAKEN + " = " + KEY_SUMMARY_TAKEN + " + " + taken + ", "
+                + KEY_SUMMARY_MISSED + " = " + KEY_SUMMARY_MISSED + " + " + missed
+                + " WHERE " + KEY_SUMMARY_DAY + " = " + day + "; "
+                + "INSERT OR IGNORE INTO " + TABLE_DAILY_MEDICINE_SUMMARY + "(" + KEY_SUMMARY_DAY + ", "
+                + KEY_SUMMARY_MEDICINE + ") VALUES (" + day + ", NEW." + KEY_HISTORY_MEDICINE_NAME + "); "
+                + "UPDATE " + TABLE_DAILY_MEDICINE_SUMMARY + " SET "
+                + KEY_SUMMARY_TAKEN + " = " + KEY_SUMMARY_TAKEN + " + " + taken + ", "
+                + KEY_SUMMARY_MISSED + " = " + KEY_SUMMARY_MISSED + " + " + missed
+                + " WHERE " + KEY_SUMMARY_DAY + " = " + day
+                + " AND " + KEY_SUMMARY_MEDICINE + " = NEW." + KEY_HISTORY_MEDICINE_NAME + "; "
+                + "END");
+    }
+
+    // Local calendar day (yyyy-MM-dd) of an epoch-millis column, as SQL
+    private static String sqlLocalDay(String millisColumn) {
+        return "strftime('%Y-%m-%d', " + millisColumn + " / 1000, 'unixepoch', 'localtime')";
+    }
+
+    /** Recompute both summary tables (and the streak) from raw history, e.g. after a restore. */
+    public void rebuildDailySummary() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            rebuildDailySummary(db);
+            recomputeStreak(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
     }
 
+    private void rebuildDailySummary(SQLiteDatabase db) {
+        String day = sqlLocalDay(KEY_HISTORY_TAKEN_AT);
+        String counts = "SUM(" + KEY_HISTORY_STATUS + " = 'Taken'), SUM(" + KEY_HISTORY_STATUS + " = 'Missed')";
+        db.execSQL("DELETE FROM " + TABLE_DAILY_SUMMARY);
+        db.execSQL("DELETE FROM " + TABLE_DAILY_MEDICINE_SUMMARY);
+        db.execSQL("INSERT INTO " + TABLE_DAILY_SUMMARY + "(" + KEY_SUMMARY_DAY + ", "
+                + KEY_SUMMARY_TAKEN + ", " + KEY_SUMMARY_MISSED + ") "
+                + "SELECT " + day + " AS d, " + counts + " FROM " + TABLE_HISTORY + " GROUP BY d");
+        db.execSQL("INSERT INTO " + TABLE_DAILY_MEDICINE_SUMMARY + "(" + KEY_SUMMARY_DAY + ", "
+                + KEY_SUMMARY_MEDICINE + ", " + KEY_SUMMARY_TAKEN + ", " + KEY_SUMMARY_MISSED + ") "
+                + "SELECT " + day + " AS d, " + KEY_HISTORY_MEDICINE_NAME + ", " + counts
+                + " FROM " + TABLE_HISTORY + " GROUP BY d, " + KEY_HISTORY_MEDICINE_NAME);
+    }
+
+    /**
+     * medicines_fts is an FTS4 external-content index: it stores only the token index and reads
+     * the text back from medicines. Triggers keep it in step with every insert, update and delete.
+     * FTS4 rather than FTS5 because FTS5 isn't compiled into the platform SQLite on older devices.
+     */
+    private void createMedicinesFts(SQLiteDatabase db) {
+        String columns = KEY_MEDICINE_NAME + ", " + KEY_DOSAGE + ", " + KEY_INSTRUCTIONS;
+        String newValues = "new." + KEY_ID + ", new." + KEY_MEDICINE_NAME + ", new." + KEY_DOSAGE
+                + ", new." + KEY_INSTRUCTIONS;
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + TABLE_MEDICINES_FTS + " USING fts4("
+                + "content=\"" + TABLE_MEDICINES + "\", " + columns + ")");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_medicines_fts_bu BEFORE UPDATE ON " + TABLE_MEDICINES
+                + " BEGIN DELETE FROM " + TABLE_MEDICINES_FTS + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_medicines_fts_bd BEFORE DELETE ON " + TABLE_MEDICINES
+                + " BEGIN DELETE FROM " + TABLE_MEDICINES_FTS + " WHERE docid = old." + KEY_ID + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_medicines_fts_au AFTER UPDATE ON " + TABLE_MEDICINES
+                + " BEGIN INSERT INTO " + TABLE_MEDICINES_FTS + "(docid, " + columns + ") VALUES ("
+                + newValues + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS trg_medicines_fts_ai AFTER INSERT ON " + TABLE_MEDICINES
+                + " BEGIN INSERT INTO " + TABLE_MEDICINES_FTS + "(docid, " + columns + ") VALUES ("
+                + newValues + "); END");
+    }
+
+    /**
+     * Turn free text into an FTS prefix query: every word must prefix-match some column.
+     * Punctuation is dropped so quotes, '*' or '-' typed by the user can't break the MATCH syntax.
+     * Returns null when nothing searchable is left.
+     */
+    static String toFtsPrefixQuery(String text) {
+        if (text == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String word : text.split("[^\\p{L}\\p{N}]+")) {
+            if (word.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append(word).append('*');
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    private void createStreak(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_STREAK + "("
+                + KEY_STREAK_ID + " INTEGER PRIMARY KEY CHECK (" + KEY_STREAK_ID + " = 1),"
+                + KEY_STREAK_LAST_DAY + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_STREAK_RUN_BEFORE + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_STREAK_CURRENT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_STREAK_BEST_BEFORE + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_STREAK_BEST + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_STREAK_STALE + " INTEGER NOT NULL DEFAULT 0"
+                + ")");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_STREAK + "(" + KEY_STREAK_ID + ", " + KEY_STREAK_LAST_DAY
+                + ") VALUES (1, " + StreakState.EMPTY + ")");
+    }
+
+    /**
+     * One row per (medicine, kind) slot. request_code is the allocator: AUTOINCREMENT never hands
+     * out a code twice, so PendingIntents can't collide however large medicine ids grow.
+     * Code 0 is reserved for the batch alarm, which predates the ledger.
+     */
+    private void createAlarmLedger(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_ALARM_LEDGER + "("
+                + KEY_LEDGER_REQUEST_CODE + " INTEGER PRIMARY KEY AUTOINCREMENT,"
+                + KEY_LEDGER_MEDICINE_ID + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_LEDGER_KIND + " TEXT NOT NULL,"
+                + KEY_LEDGER_TRIGGER_AT + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_LEDGER_STATE + " TEXT NOT NULL DEFAULT '" + AlarmLedgerEntry.STATE_IDLE + "',"
+                + KEY_LEDGER_UPDATED_AT + " INTEGER NOT NULL DEFAULT 0,"
+                + "UNIQUE (" + KEY_LEDGER_MEDICINE_ID + ", " + KEY_LEDGER_KIND + ")"
+                + ")");
+        db.execSQL("CREATE INDEX IF NOT EXISTS idx_alarm_ledger_state ON "
+                + TABLE_ALARM_LEDGER + "(" + KEY_LEDGER_STATE + ")");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ALARM_LEDGER + "(" + KEY_LEDGER_REQUEST_CODE + ", "
+                + KEY_LEDGER_MEDICINE_ID + ", " + KEY_LEDGER_KIND + ") VALUES ("
+                + BATCH_REQUEST_CODE + ", 0, '" + AlarmLedgerEntry.KIND_BATCH + "')");
+    }
+
+    private void createWakeLockStats(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_WAKE_LOCK_STATS + "("
+                + KEY_WAKE_DAY + " TEXT NOT NULL,"
+                + KEY_WAKE_TAG + " TEXT NOT NULL,"
+                + KEY_WAKE_HOLD_MS + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_WAKE_ACQUISITIONS + " INTEGER NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY (" + KEY_WAKE_DAY + ", " + KEY_WAKE_TAG + ")"
+                + ")");
+    }
+
+    private void createReceiverLatency(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_RECEIVER_LATENCY + "("
+                + KEY_LATENCY_DAY + " TEXT NOT NULL,"
+                + KEY_LATENCY_RECEIVER + " TEXT NOT NULL,"
+                + KEY_LATENCY_BUCKET + " INTEGER NOT NULL,"
+                + KEY_LATENCY_CALLS + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_LATENCY_TIMEOUTS + " INTEGER NOT NULL DEFAULT 0,"
+                + KEY_LATENCY_MAX_MS + " INTEGER NOT NULL DEFAULT 0,"
+                + "PRIMARY KEY (" + KEY_LATENCY_DAY + ", " + KEY_LATENCY_RECEIVER + ", " + KEY_LATENCY_BUCKET + ")"
+                + ")");
+    }
+
+    private void createBackupChain(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_BACKUP_CHAIN + "("
+                + KEY_CHAIN_ID + " INTEGER PRIMARY KEY CHECK (" + KEY_CHAIN_ID + " = 1),"
+                + KEY_CHAIN + " TEXT NOT NULL,"
+                + KEY_CHAIN_SEQUENCE + " INTEGER NOT NULL,"
+                + KEY_CHAIN_AFTER + " INTEGER NOT NULL,"
+                + KEY_CHAIN_UP_TO + " INTEGER NOT NULL,"
+                + KEY_CHAIN_FLOOR + " INTEGER NOT NULL,"
+                + KEY_CHAIN_CREATED_AT + " INTEGER NOT NULL"
+                + ")");
+    }
+
+    /**
+     * Fill taken_at for rows written before v6 by parsing the legacy date/time strings.
+     * Rows whose strings can't be parsed keep 0 and simply fall outside every date range.
+     */
+    private void backfillTakenAt(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT " + KEY_HISTORY_ID + ", " + KEY_HISTORY_DATE + ", "
+                + KEY_HISTORY_TIME + " FROM " + TABLE_HISTORY, null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_HISTORY + " SET "
+                + KEY_HISTORY_TAKEN_AT + " = ? WHERE " + KEY_HISTORY_ID + " = ?");
+        try {
+            while (cursor.moveToNext()) {
+                long takenAt = parseLegacyTimestamp(cursor.getString(1), cursor.getString(2));
+                if (takenAt <= 0) continue;
+                update.bindLong(1, takenAt);
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /**
+     * Fill recurrence for medicines saved before v11 from frequency/time/date.
+     * Rows whose time can't be read keep NULL and are skipped by the scheduler as before.
+     */
+    private void backfillRecurrence(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT " + KEY_ID + ", " + KEY_FREQUENCY + ", "
+                + KEY_REMINDER_TIME + ", " + KEY_DATE + " FROM " + TABLE_MEDICINES, null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_MEDICINES + " SET "
+                + KEY_RECURRENCE + " = ? WHERE " + KEY_ID + " = ?");
+        try {
+            while (cursor.moveToNext()) {
+                Recurrence recurrence = Recurrence.fromFrequency(
+                        cursor.getString(1), cursor.getString(2), cursor.getString(3));
+                if (recurrence == null) continue;
+                update.bindString(1, recurrence.toSpec());
+                update.bindLong(2, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+    }
+
+    /** Epoch millis for a legacy (date, time) pair in the device zone, or 0 if the date is unreadable. */
+    static long parseLegacyTimestamp(String date, String time) {
+        LocalDate day = parseLegacyDate(date);
+        if (day == null) return 0;
+        LocalTime clock = parseLegacyTime(time);
+        return day.atTime(clock != null ? clock : LocalTime.MIDNIGHT)
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static LocalDate parseLegacyDate(String date) {
+        if (date == null || date.trim().isEmpty()) return null;
+        String value = date.trim();
+        try {
+            return value.indexOf('/') >= 0
+                    ? LocalDate.parse(value, LEGACY_DATE_DMY)
+                    : LocalDate.parse(value, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalTime parseLegacyTime(String time) {
+        if (time == null) return null;
+        String value = time.trim();
+        DateTimeFormatter[] formats = value.length() > 5
+                ? new DateTimeFormatter[]{LEGACY_TIME_12H, LEGACY_TIME_12H.withLocale(Locale.getDefault())}
+                : new DateTimeFormatter[]{LEGACY_TIME_24H};
+        for (DateTimeFormatter format : formats) {
+            try {
+                return LocalTime.parse(value, format);
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    /** [start, end) of a calendar day in the device zone, as epoch millis. */
+    private static long[] dayRange(LocalDate day) {
+        ZoneId zone = ZoneId.systemDefault();
+        return new long[]{
+                day.atStartOfDay(zone).toInstant().toEpochMilli(),
+                day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli()
+        };
+    }
+
     // ============================
     // 💊 Medicine Methods
     // ============================
@@ -98,10 +580,10 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_REMINDER_TIME, medicine.getReminderTime());
         values.put(KEY_DATE, medicine.getReminderDate());
         values.put(KEY_FREQUENCY, medicine.getFrequency());
+        putRecurrence(values, medicine);
         values.put(KEY_IS_ACTIVE, medicine.isActive() ? 1 : 0);
 
         long id = db.insert(TABLE_MEDICINES, null, values);
-        db.close();
         return id;
     }
 
@@ -115,9 +597,9 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_REMINDER_TIME, medicine.getReminderTime());
         values.put(KEY_DATE, medicine.getReminderDate());
         values.put(KEY_FREQUENCY, medicine.getFrequency());
+        putRecurrence(values, medicine);
         values.put(KEY_IS_ACTIVE, medicine.isActive() ? 1 : 0);
         db.insert(TABLE_MEDICINES, null, values);
-        db.close();
     }
 
     public List<Medicine> getAllMedicines() {
@@ -131,39 +613,56 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         if (cursor.moveToFirst()) {
             do {
-                Medicine medicine = new Medicine(
-                        cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_MEDICINE_NAME)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_DOSAGE)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_INSTRUCTIONS)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_REMINDER_TIME)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)), // ✅ added
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_FREQUENCY)),
-                        cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1
-                );
+                Medicine medicine = medicineFromCursor(cursor);
                 medicineList.add(medicine);
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        db.close();
         return medicineList;
     }
 
+    private static Medicine medicineFromCursor(Cursor cursor) {
+        Medicine medicine = new Medicine(
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_MEDICINE_NAME)),
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_DOSAGE)),
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_INSTRUCTIONS)),
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_REMINDER_TIME)),
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)), // ✅ added
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_FREQUENCY)),
+                cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1
+        );
+        medicine.setRecurrence(Recurrence.fromSpec(
+                cursor.getString(cursor.getColumnIndexOrThrow(KEY_RECURRENCE))));
+        return medicine;
+    }
+
+    // Persist the structured schedule next to the free-text frequency it was built from
+    private static void putRecurrence(ContentValues values, Medicine medicine) {
+        Recurrence recurrence = medicine.getRecurrence();
+        if (recurrence != null) {
+            values.put(KEY_RECURRENCE, recurrence.toSpec());
+        } else {
+            values.putNull(KEY_RECURRENCE);
+        }
+    }
+
     public void deleteMedicine(int id) {
         SQLiteDatabase db = this.getWritableDatabase();
         db.delete(TABLE_MEDICINES, KEY_ID + " = ?", new String[]{String.valueOf(id)});
-        db.close();
     }
 
     public int getMedicineCount() {
-        String countQuery = "SELECT * FROM " + TABLE_MEDICINES +
+        String countQuery = "SELECT COUNT(*) FROM " + TABLE_MEDICINES +
                 " WHERE " + KEY_IS_ACTIVE + " = 1";
         SQLiteDatabase db = this.getReadableDatabase();
         Cursor cursor = db.rawQuery(countQuery, null);
-        int count = cursor.getCount();
+        int count = 0;
+        if (cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+        }
         cursor.close();
-        db.close();
         return count;
     }
 
@@ -171,22 +670,58 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // 🕒 History Methods
     // ============================
 
-    public void addHistory(String medicineName, String date, String time, String status) {
+    /**
+     * Insert a history row. date/time are kept for display, taken_at is what queries use.
+     * medicineId may be 0 when the dose isn't linked to a stored medicine (e.g. restored history).
+     */
+    public long addHistory(int medicineId, String medicineName, String date, String time,
+                           String status, long takenAt) {
         SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            long id = insertHistory(db, medicineId, medicineName, date, time, status, takenAt);
+            if (id != -1) {
+                updateStreak(db, toLocalDay(takenAt));
+            }
+            db.setTransactionSuccessful();
+            return id;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private long insertHistory(SQLiteDatabase db, int medicineId, String medicineName, String date,
+                               String time, String status, long takenAt) {
         ContentValues values = new ContentValues();
         values.put(KEY_HISTORY_MEDICINE_NAME, medicineName);
         values.put(KEY_HISTORY_DATE, date);
         values.put(KEY_HISTORY_TIME, time);
         values.put(KEY_HISTORY_STATUS, status);
-        db.insert(TABLE_HISTORY, null, values);
-        db.close();
+        values.put(KEY_HISTORY_TAKEN_AT, takenAt);
+        if (medicineId > 0) {
+            values.put(KEY_HISTORY_MEDICINE_ID, medicineId);
+        } else {
+            values.putNull(KEY_HISTORY_MEDICINE_ID);
+        }
+        return db.insert(TABLE_HISTORY, null, values);
+    }
+
+    public void addHistory(String medicineName, String date, String time, String status) {
+        long takenAt = parseLegacyTimestamp(date, time);
+        addHistory(0, medicineName, date, time, status, takenAt > 0 ? takenAt : System.currentTimeMillis());
+    }
+
+    // Today's dose for a known medicine
+    public void addHistory(int medicineId, String medicineName, String time, String status) {
+        String currentDate = TimeUtils.formatHistoryDate(LocalDate.now());
+        long takenAt = parseLegacyTimestamp(currentDate, time);
+        addHistory(medicineId, medicineName, currentDate, time, status,
+                takenAt > 0 ? takenAt : System.currentTimeMillis());
     }
     
     // Overload for backward compatibility
     public void addHistory(String medicineName, String time, String status) {
-        String currentDate = new java.text.SimpleDateFormat("dd/MM/yyyy", 
-            java.util.Locale.getDefault()).format(new java.util.Date());
-        addHistory(medicineName, currentDate, time, status);
+        addHistory(0, medicineName, time, status);
     }
 
     public List<HistoryItem> getAllHistory() {
@@ -202,43 +737,121 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 String date = cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_DATE));
                 String time = cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_TIME));
                 String status = cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_STATUS));
+                long takenAt = cursor.getLong(cursor.getColumnIndexOrThrow(KEY_HISTORY_TAKEN_AT));
 
-                historyList.add( new HistoryItem(id, name, date, time, status));
+                historyList.add( new HistoryItem(id, name, date, time, status, takenAt));
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        db.close();
         return historyList;
     }
 
+    /**
+     * One keyset page of history, newest first: rows with history_id below {@code beforeId}.
+     * Pass Long.MAX_VALUE for the first page and the last item's id for the next one.
+     * A null status returns every row; otherwise only rows with that status.
+     */
+    public List<HistoryItem> getHistoryPage(String status, long beforeId, int limit) {
+        List<HistoryItem> page = new ArrayList<>(limit);
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        String selection = KEY_HISTORY_ID + " < ?";
+        String[] args = {String.valueOf(beforeId)};
+        if (status != null) {
+            selection = KEY_HISTORY_STATUS + " = ? AND " + selection;
+            args = new String[]{status, String.valueOf(beforeId)};
+        }
+        Cursor cursor = db.query(TABLE_HISTORY,
+                new String[]{KEY_HISTORY_ID, KEY_HISTORY_MEDICINE_NAME, KEY_HISTORY_DATE,
+                        KEY_HISTORY_TIME, KEY_HISTORY_STATUS, KEY_HISTORY_TAKEN_AT},
+                selection, args, null, null,
+                KEY_HISTORY_ID + " DESC", String.valueOf(limit));
+
+        while (cursor.moveToNext()) {
+            page.add(new HistoryItem(cursor.getInt(0), cursor.getString(1), cursor.getString(2),
+                    cursor.getString(3), cursor.getString(4), cursor.getLong(5)));
+        }
+        cursor.close();
+        return page;
+    }
+
+    // Number of history rows for a status (null = all), from daily_summary
+    public int getHistoryCount(String status) {
+        String column;
+        if (status == null) {
+            column = KEY_SUMMARY_TAKEN + " + " + KEY_SUMMARY_MISSED;
+        } else if (status.equals("Taken")) {
+            column = KEY_SUMMARY_TAKEN;
+        } else if (status.equals("Missed")) {
+            column = KEY_SUMMARY_MISSED;
+        } else {
+            return 0;
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT COALESCE(SUM(" + column + "), 0) FROM "
+                + TABLE_DAILY_SUMMARY, null);
+        int count = 0;
+        if (cursor.moveToFirst()) {
+            count = cursor.getInt(0);
+        }
+        cursor.close();
+        return count;
+    }
+
     // ============================
     // 📊 Statistics Methods
     // ============================
 
+    /**
+     * Taken/missed totals, active medicine count and streak.
+     * Totals are summed from daily_summary (one row per day); the streak is the
+     * persisted single row, so no query here touches raw history.
+     */
+    public StatsSnapshot getStatsSnapshot() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT "
+                + "COALESCE(SUM(" + KEY_SUMMARY_TAKEN + "), 0), "
+                + "COALESCE(SUM(" + KEY_SUMMARY_MISSED + "), 0), "
+                + "(SELECT COUNT(*) FROM " + TABLE_MEDICINES + " WHERE " + KEY_IS_ACTIVE + " = 1) "
+                + "FROM " + TABLE_DAILY_SUMMARY, null);
+
+        int taken = 0;
+        int missed = 0;
+        int active = 0;
+        if (cursor.moveToFirst()) {
+            taken = cursor.getInt(0);
+            missed = cursor.getInt(1);
+            active = cursor.getInt(2);
+        }
+        cursor.close();
+
+        StreakState streak = readStreak();
+        return new StatsSnapshot(taken, missed,
+                streak.currentStreak(LocalDate.now().toEpochDay()), streak.bestRun, active);
+    }
+
     public int getTotalTakenCount() {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_HISTORY +
-                " WHERE " + KEY_HISTORY_STATUS + " = 'Taken'", null);
+        Cursor cursor = db.rawQuery("SELECT COALESCE(SUM(" + KEY_SUMMARY_TAKEN + "), 0) FROM "
+                + TABLE_DAILY_SUMMARY, null);
         int count = 0;
         if (cursor.moveToFirst()) {
             count = cursor.getInt(0);
         }
         cursor.close();
-        db.close();
         return count;
     }
 
     public int getTotalMissedCount() {
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_HISTORY +
-                " WHERE " + KEY_HISTORY_STATUS + " = 'Missed'", null);
+        Cursor cursor = db.rawQuery("SELECT COALESCE(SUM(" + KEY_SUMMARY_MISSED + "), 0) FROM "
+                + TABLE_DAILY_SUMMARY, null);
         int count = 0;
         if (cursor.moveToFirst()) {
             count = cursor.getInt(0);
         }
         cursor.close();
-        db.close();
         return count;
     }
 
@@ -250,26 +863,138 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         return (int) ((taken * 100.0) / total);
     }
 
+    // Consecutive clean days (taken, nothing missed) up to today - one primary-key read
     public int getCurrentStreak() {
-        // Simple streak calculation - count consecutive "Taken" entries
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor cursor = db.rawQuery("SELECT " + KEY_HISTORY_STATUS + " FROM " + TABLE_HISTORY +
-                " ORDER BY " + KEY_HISTORY_ID + " DESC", null);
-        
-        int streak = 0;
+        return readStreak().currentStreak(LocalDate.now().toEpochDay());
+    }
+
+    public int getBestStreak() {
+        return readStreak().bestRun;
+    }
+
+    // ============================
+    // 🔥 Streak Maintenance
+    // ============================
+
+    /**
+     * Fold the day's latest daily_summary counts into the streak row. Runs inside the
+     * addHistory transaction, after the summary trigger. A dose logged for an earlier day
+     * than the row has seen (e.g. a restore writing newest-first) only marks it stale.
+     */
+    private void updateStreak(SQLiteDatabase db, LocalDate day) {
+        StreakState state = new StreakState();
+        if (!loadStreak(db, state)) {
+            return; // already stale, the next read recomputes
+        }
+        long epochDay = day.toEpochDay();
+        if (epochDay < state.lastDay) {
+            db.execSQL("UPDATE " + TABLE_STREAK + " SET " + KEY_STREAK_STALE + " = 1");
+            return;
+        }
+
+        Cursor cursor = db.rawQuery("SELECT " + KEY_SUMMARY_TAKEN + ", " + KEY_SUMMARY_MISSED
+                + " FROM " + TABLE_DAILY_SUMMARY + " WHERE " + KEY_SUMMARY_DAY + " = ?",
+                new String[]{day.toString()});
+        int taken = 0;
+        int missed = 0;
         if (cursor.moveToFirst()) {
-            do {
-                String status = cursor.getString(0);
-                if (status.equals("Taken")) {
-                    streak++;
-                } else {
-                    break; // Streak broken
-                }
-            } while (cursor.moveToNext());
+            taken = cursor.getInt(0);
+            missed = cursor.getInt(1);
+        }
+        cursor.close();
+
+        state.apply(epochDay, taken, missed);
+        saveStreak(db, state);
+    }
+
+    /** Rebuild the streak from daily_summary, for restores, deletes and upgrades. */
+    public void recomputeStreak() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            recomputeStreak(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private StreakState recomputeStreak(SQLiteDatabase db) {
+        StreakState state = new StreakState();
+        Cursor cursor = db.rawQuery("SELECT " + KEY_SUMMARY_DAY + ", " + KEY_SUMMARY_TAKEN + ", "
+                + KEY_SUMMARY_MISSED + " FROM " + TABLE_DAILY_SUMMARY
+                + " ORDER BY " + KEY_SUMMARY_DAY + " ASC", null);
+        while (cursor.moveToNext()) {
+            LocalDate day = parseLegacyDate(cursor.getString(0));
+            if (day == null) continue;
+            state.apply(day.toEpochDay(), cursor.getInt(1), cursor.getInt(2));
+        }
+        cursor.close();
+        saveStreak(db, state);
+        Log.d(TAG, "✅ Streak recomputed: current " + state.currentRun + ", best " + state.bestRun);
+        return state;
+    }
+
+    private StreakState readStreak() {
+        StreakState state = new StreakState();
+        if (!loadStreak(this.getReadableDatabase(), state)) {
+            state = recomputeStreakLocked();
+        }
+        return state;
+    }
+
+    // Stale row on a read path: recompute once under the class lock
+    private StreakState recomputeStreakLocked() {
+        synchronized (StreakState.class) {
+            SQLiteDatabase db = this.getWritableDatabase();
+            StreakState state = new StreakState();
+            if (loadStreak(db, state)) {
+                return state; // another reader got there first
+            }
+            db.beginTransaction();
+            try {
+                state = recomputeStreak(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            return state;
+        }
+    }
+
+    /** Fill {@code state} from the streak row; false if the row is stale and must be recomputed. */
+    private boolean loadStreak(SQLiteDatabase db, StreakState state) {
+        Cursor cursor = db.rawQuery("SELECT " + KEY_STREAK_LAST_DAY + ", " + KEY_STREAK_RUN_BEFORE + ", "
+                + KEY_STREAK_CURRENT + ", " + KEY_STREAK_BEST_BEFORE + ", " + KEY_STREAK_BEST + ", "
+                + KEY_STREAK_STALE + " FROM " + TABLE_STREAK + " WHERE " + KEY_STREAK_ID + " = 1", null);
+        boolean fresh = true;
+        if (cursor.moveToFirst()) {
+            state.lastDay = cursor.getLong(0);
+            state.runBefore = cursor.getInt(1);
+            state.currentRun = cursor.getInt(2);
+            state.bestBefore = cursor.getInt(3);
+            state.bestRun = cursor.getInt(4);
+            fresh = cursor.getInt(5) == 0;
         }
         cursor.close();
-        db.close();
-        return streak;
+        return fresh;
+    }
+
+    private void saveStreak(SQLiteDatabase db, StreakState state) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_STREAK_ID, 1);
+        values.put(KEY_STREAK_LAST_DAY, state.lastDay);
+        values.put(KEY_STREAK_RUN_BEFORE, state.runBefore);
+        values.put(KEY_STREAK_CURRENT, state.currentRun);
+        values.put(KEY_STREAK_BEST_BEFORE, state.bestBefore);
+        values.put(KEY_STREAK_BEST, state.bestRun);
+        values.put(KEY_STREAK_STALE, 0);
+        db.insertWithOnConflict(TABLE_STREAK, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // Calendar day of an epoch-millis timestamp, matching sqlLocalDay() in the summary trigger
+    private static LocalDate toLocalDay(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
     }
 
     // ============================
@@ -285,11 +1010,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         values.put(KEY_REMINDER_TIME, medicine.getReminderTime());
         values.put(KEY_DATE, medicine.getReminderDate());
         values.put(KEY_FREQUENCY, medicine.getFrequency());
+        putRecurrence(values, medicine);
         values.put(KEY_IS_ACTIVE, medicine.isActive() ? 1 : 0);
 
         int rowsAffected = db.update(TABLE_MEDICINES, values, 
                 KEY_ID + " = ?", new String[]{String.valueOf(medicine.getId())});
-        db.close();
         return rowsAffected;
     }
 
@@ -301,32 +1026,31 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         Medicine medicine = null;
         if (cursor != null && cursor.moveToFirst()) {
-            medicine = new Medicine(
-                    cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_MEDICINE_NAME)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_DOSAGE)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_INSTRUCTIONS)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_REMINDER_TIME)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_FREQUENCY)),
-                    cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1
-            );
-            cursor.close();
+            medicine = medicineFromCursor(cursor);
+        }
+        if (cursor != null) {
+            cursor.close(); // connection stays open now, so never leak the cursor
         }
-        db.close();
         return medicine;
     }
 
     public void deleteAllMedicines() {
         SQLiteDatabase db = this.getWritableDatabase();
         db.delete(TABLE_MEDICINES, null, null);
-        db.close();
     }
 
     public void deleteAllHistory() {
         SQLiteDatabase db = this.getWritableDatabase();
-        db.delete(TABLE_HISTORY, null, null);
-        db.close();
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_HISTORY, null, null);
+            db.delete(TABLE_DAILY_SUMMARY, null, null);
+            db.delete(TABLE_DAILY_MEDICINE_SUMMARY, null, null);
+            saveStreak(db, new StreakState());
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
     }
 
     // ============================
@@ -334,44 +1058,64 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     // ============================
     
     public int[] getLast7DaysAdherence() {
-        int[] adherenceData = new int[7];
-        SQLiteDatabase db = this.getReadableDatabase();
-        
-        // Get data for last 7 days
-        for (int i = 0; i < 7; i++) {
-            // Calculate date for each day (today - i days)
-            String query = "SELECT " +
-                    "(SELECT COUNT(*) FROM " + TABLE_HISTORY + " WHERE " + KEY_HISTORY_STATUS + " = 'Taken') as taken, " +
-                    "(SELECT COUNT(*) FROM " + TABLE_HISTORY + " WHERE " + KEY_HISTORY_STATUS + " = 'Missed') as missed";
-            
-            Cursor cursor = db.rawQuery(query, null);
-            
-            if (cursor.moveToFirst()) {
-                int taken = cursor.getInt(0);
-                int missed = cursor.getInt(1);
-                int total = taken + missed;
-                
-                if (total > 0) {
-                    adherenceData[6 - i] = (int) ((taken * 100.0) / total);
-                } else {
-                    adherenceData[6 - i] = 0;
-                }
-            }
-            cursor.close();
+        List<DailyAdherence> series = getAdherenceSeries(7);
+        int[] adherenceData = new int[series.size()];
+        for (int i = 0; i < adherenceData.length; i++) {
+            adherenceData[i] = series.get(i).getAdherenceRate();
         }
-        
-        db.close();
         return adherenceData;
     }
 
-    // Get history by specific date for calendar view
+    /**
+     * Per-day taken/missed buckets for the last {@code days} days (oldest first, today last).
+     * Reads at most {@code days} rows from daily_summary; days with no history come back as zero buckets.
+     */
+    public List<DailyAdherence> getAdherenceSeries(int days) {
+        LocalDate today = LocalDate.now();
+        LocalDate first = today.minusDays(days - 1);
+
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + KEY_SUMMARY_DAY + ", " + KEY_SUMMARY_TAKEN + ", "
+                + KEY_SUMMARY_MISSED + " FROM " + TABLE_DAILY_SUMMARY
+                + " WHERE " + KEY_SUMMARY_DAY + " BETWEEN ? AND ?",
+                new String[]{first.toString(), today.toString()});
+
+        int[] taken = new int[days];
+        int[] missed = new int[days];
+        while (cursor.moveToNext()) {
+            LocalDate day = parseLegacyDate(cursor.getString(0));
+            if (day == null) continue;
+            int index = (int) (day.toEpochDay() - first.toEpochDay());
+            if (index < 0 || index >= days) continue;
+            taken[index] = cursor.getInt(1);
+            missed[index] = cursor.getInt(2);
+        }
+        cursor.close();
+
+        List<DailyAdherence> series = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            series.add(new DailyAdherence(first.plusDays(i), taken[i], missed[i]));
+        }
+        return series;
+    }
+
+    // Get history by specific date (dd/MM/yyyy or yyyy-MM-dd) for calendar view
     public List<HistoryItem> getHistoryByDate(String date) {
+        LocalDate day = parseLegacyDate(date);
+        if (day == null) return new ArrayList<>();
+        long[] range = dayRange(day);
+        return getHistoryBetween(range[0], range[1]);
+    }
+
+    // History in [fromMillis, toMillis), newest first - an index range scan on taken_at
+    public List<HistoryItem> getHistoryBetween(long fromMillis, long toMillis) {
         List<HistoryItem> list = new ArrayList<>();
         SQLiteDatabase db = this.getReadableDatabase();
         
         Cursor cursor = db.query(TABLE_HISTORY, null,
-                KEY_HISTORY_DATE + " = ?", new String[]{date},
-                null, null, KEY_HISTORY_TIME + " DESC");
+                KEY_HISTORY_TAKEN_AT + " >= ? AND " + KEY_HISTORY_TAKEN_AT + " < ?",
+                new String[]{String.valueOf(fromMillis), String.valueOf(toMillis)},
+                null, null, KEY_HISTORY_TAKEN_AT + " DESC");
         
         if (cursor.moveToFirst()) {
             do {
@@ -380,49 +1124,457 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                     cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_MEDICINE)),
                     cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_DATE)),
                     cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_TIME)),
-                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_STATUS))
+                    cursor.getString(cursor.getColumnIndexOrThrow(KEY_HISTORY_STATUS)),
+                    cursor.getLong(cursor.getColumnIndexOrThrow(KEY_HISTORY_TAKEN_AT))
                 );
                 list.add(item);
             } while (cursor.moveToNext());
         }
         cursor.close();
-        db.close();
         return list;
     }
 
     public List<Medicine> searchMedicines(String query) {
+        return searchMedicines(query, null);
+    }
+
+    /**
+     * Active medicines whose name, dosage or instructions contain a word starting with each
+     * typed word, answered from the FTS index. A cancelled signal aborts the query with
+     * OperationCanceledException, so superseded searches stop early.
+     */
+    public List<Medicine> searchMedicines(String query, CancellationSignal cancellationSignal) {
         List<Medicine> medicineList = new ArrayList<>();
+        String match = toFtsPrefixQuery(query);
+        if (match == null) return medicineList;
+
         SQLiteDatabase db = this.getReadableDatabase();
-        
         String selectQuery = "SELECT * FROM " + TABLE_MEDICINES +
-                " WHERE " + KEY_IS_ACTIVE + " = 1 AND (" +
-                KEY_MEDICINE_NAME + " LIKE ? OR " +
-                KEY_DOSAGE + " LIKE ? OR " +
-                KEY_INSTRUCTIONS + " LIKE ?)" +
+                " WHERE " + KEY_IS_ACTIVE + " = 1 AND " + KEY_ID + " IN (" +
+                "SELECT docid FROM " + TABLE_MEDICINES_FTS + " WHERE " + TABLE_MEDICINES_FTS + " MATCH ?)" +
                 " ORDER BY " + KEY_REMINDER_TIME + " ASC";
-        
-        String searchPattern = "%" + query + "%";
-        Cursor cursor = db.rawQuery(selectQuery, 
-                new String[]{searchPattern, searchPattern, searchPattern});
+        Cursor cursor = db.rawQuery(selectQuery, new String[]{match}, cancellationSignal);
 
         if (cursor.moveToFirst()) {
             do {
-                Medicine medicine = new Medicine(
-                        cursor.getInt(cursor.getColumnIndexOrThrow(KEY_ID)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_MEDICINE_NAME)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_DOSAGE)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_INSTRUCTIONS)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_REMINDER_TIME)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_DATE)),
-                        cursor.getString(cursor.getColumnIndexOrThrow(KEY_FREQUENCY)),
-                        cursor.getInt(cursor.getColumnIndexOrThrow(KEY_IS_ACTIVE)) == 1
-                );
+                Medicine medicine = medicineFromCursor(cursor);
                 medicineList.add(medicine);
             } while (cursor.moveToNext());
         }
 
         cursor.close();
-        db.close();
         return medicineList;
     }
+
+    // ============================
+    // 💾 Backup
+    // ============================
+
+    /**
+     * Active medicines for BackupWriter, one row at a time: name, dosage, instructions,
+     * reminder_time, date, frequency, recurrence. The caller closes the cursor.
+     */
+    Cursor queryMedicinesForBackup() {
+        return this.getReadableDatabase().query(TABLE_MEDICINES,
+                new String[]{KEY_MEDICINE_NAME, KEY_DOSAGE, KEY_INSTRUCTIONS, KEY_REMINDER_TIME,
+                        KEY_DATE, KEY_FREQUENCY, KEY_RECURRENCE},
+                KEY_IS_ACTIVE + " = 1", null, null, null, KEY_REMINDER_TIME + " ASC");
+    }
+
+    /**
+     * All history for BackupWriter, oldest first so a restore hands out history ids in the
+     * original order: medicine_name, date, time_taken, status, taken_at. The cursor window is
+     * refilled as it is walked, so memory stays flat however long the history is.
+     * The caller closes the cursor.
+     */
+    Cursor queryHistoryForBackup() {
+        return this.getReadableDatabase().query(TABLE_HISTORY,
+                new String[]{KEY_HISTORY_MEDICINE_NAME, KEY_HISTORY_DATE, KEY_HISTORY_TIME,
+                        KEY_HISTORY_STATUS, KEY_HISTORY_TAKEN_AT},
+                null, null, null, null, KEY_HISTORY_ID + " ASC");
+    }
+
+    /**
+     * Restore step 1, inside BackupReader's transaction: drop medicines, history and the summaries.
+     * The incremental chain is dropped too - the next incremental backup starts a new base.
+     */
+    void clearForRestore(SQLiteDatabase db) {
+        db.delete(TABLE_MEDICINES, null, null);
+        db.delete(TABLE_HISTORY, null, null);
+        db.delete(TABLE_DAILY_SUMMARY, null, null);
+        db.delete(TABLE_DAILY_MEDICINE_SUMMARY, null, null);
+        db.delete(TABLE_BACKUP_CHAIN, null, null);
+    }
+
+    /** Bind name, dosage, instructions, reminder_time, date, frequency, recurrence (1-7). */
+    SQLiteStatement compileMedicineRestore(SQLiteDatabase db) {
+        return db.compileStatement("INSERT INTO " + TABLE_MEDICINES + "(" + KEY_MEDICINE_NAME + ", "
+                + KEY_DOSAGE + ", " + KEY_INSTRUCTIONS + ", " + KEY_REMINDER_TIME + ", " + KEY_DATE + ", "
+                + KEY_FREQUENCY + ", " + KEY_RECURRENCE + ", " + KEY_IS_ACTIVE + ") VALUES (?, ?, ?, ?, ?, ?, ?, 1)");
+    }
+
+    /**
+     * Bind medicine_name, date, time_taken, status, taken_at (1-5). Restored history isn't
+     * linked to a medicine id; the summary trigger still fires for every row.
+     */
+    SQLiteStatement compileHistoryRestore(SQLiteDatabase db) {
+        return db.compileStatement("INSERT INTO " + TABLE_HISTORY + "(" + KEY_HISTORY_MEDICINE_NAME + ", "
+                + KEY_HISTORY_DATE + ", " + KEY_HISTORY_TIME + ", " + KEY_HISTORY_STATUS + ", "
+                + KEY_HISTORY_TAKEN_AT + ") VALUES (?, ?, ?, ?, ?)");
+    }
+
+    /**
+     * Tables in the binary backup (see BinaryBackup), parents first so history's medicine_id
+     * finds its row on restore.
+     */
+    static final String[] BINARY_BACKUP_TABLES = {TABLE_MEDICINES, TABLE_HISTORY};
+
+    /** Every column of a binary backup table, in primary key order. The caller closes the cursor. */
+    Cursor queryTableForBackup(String table) {
+        return this.getReadableDatabase().query(table, null, null, null, null, null,
+                primaryKeyOf(table) + " ASC");
+    }
+
+    /** Columns {@code table} has in this schema version, for mapping an older or newer backup. */
+    List<String> columnsOf(SQLiteDatabase db, String table) {
+        primaryKeyOf(table); // only backup tables get this far
+        List<String> columns = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("PRAGMA table_info(" + table + ")", null)) {
+            while (cursor.moveToNext()) {
+                columns.add(cursor.getString(1));
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Insert of {@code columns} (from {@link #columnsOf}) into a binary backup table, bound 1..n
+     * in the same order. Ids are kept, so medicine_id links and alarm slots survive the restore.
+     */
+    SQLiteStatement compileRowRestore(SQLiteDatabase db, String table, List<String> columns) {
+        primaryKeyOf(table);
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append('(');
+        StringBuilder values = new StringBuilder(") VALUES (");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                values.append(", ");
+            }
+            sql.append(columns.get(i));
+            values.append('?');
+        }
+        return db.compileStatement(sql.append(values).append(')').toString());
+    }
+
+    /**
+     * UPDATE by primary key of {@code columns}, bound 1..n like {@link #compileRowRestore},
+     * then the key itself at n+1. Used to apply a delta's medicines snapshot in place.
+     */
+    SQLiteStatement compileRowUpdate(SQLiteDatabase db, String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(table).append(" SET ");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(columns.get(i)).append(" = ?");
+        }
+        sql.append(" WHERE ").append(primaryKeyOf(table)).append(" = ?");
+        return db.compileStatement(sql.toString());
+    }
+
+    static String primaryKeyOf(String table) {
+        if (TABLE_MEDICINES.equals(table)) return KEY_ID;
+        if (TABLE_HISTORY.equals(table)) return KEY_HISTORY_ID;
+        throw new IllegalArgumentException("Not a backup table: " + table);
+    }
+
+    /**
+     * History rows of one incremental segment: ids in (afterId, upToId], all columns, oldest
+     * first. The caller closes the cursor.
+     */
+    Cursor queryHistoryRangeForBackup(long afterId, long upToId) {
+        return this.getReadableDatabase().query(TABLE_HISTORY, null,
+                KEY_HISTORY_ID + " > ? AND " + KEY_HISTORY_ID + " <= ?",
+                new String[]{String.valueOf(afterId), String.valueOf(upToId)},
+                null, null, KEY_HISTORY_ID + " ASC");
+    }
+
+    /** {min, max} history_id, {0, 0} when history is empty. */
+    long[] getHistoryIdRange() {
+        Cursor cursor = this.getReadableDatabase().rawQuery("SELECT MIN(" + KEY_HISTORY_ID + "), MAX("
+                + KEY_HISTORY_ID + ") FROM " + TABLE_HISTORY, null);
+        try {
+            return cursor.moveToFirst()
+                    ? new long[]{cursor.getLong(0), cursor.getLong(1)} // NULL reads as 0
+                    : new long[]{0, 0};
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /** Delta restore: medicines absent from the snapshot were deleted (history keeps them as NULL). */
+    void deleteMedicinesExcept(SQLiteDatabase db, List<Long> ids) {
+        StringBuilder keep = new StringBuilder();
+        for (Long id : ids) {
+            if (keep.length() > 0) keep.append(',');
+            keep.append(id.longValue());
+        }
+        db.delete(TABLE_MEDICINES, ids.isEmpty() ? null : KEY_ID + " NOT IN (" + keep + ")", null);
+    }
+
+    /** Delta restore: replay a history wipe. Returns the rows deleted; the summaries then need a rebuild. */
+    int deleteHistoryBefore(SQLiteDatabase db, long historyId) {
+        return db.delete(TABLE_HISTORY, KEY_HISTORY_ID + " < ?", new String[]{String.valueOf(historyId)});
+    }
+
+    /** Path of the database file, for SnapshotBackup. */
+    String getDatabaseFilePath() {
+        return this.getReadableDatabase().getPath();
+    }
+
+    /**
+     * Copy everything in the WAL into the database file and truncate the WAL to zero bytes.
+     * Returns false when another connection was still reading or writing and some frames stayed.
+     */
+    boolean checkpointWal() {
+        Cursor cursor = this.getWritableDatabase().rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null);
+        try {
+            // busy, frames in the WAL, frames checkpointed
+            return cursor.moveToFirst() && cursor.getInt(0) == 0 && cursor.getInt(1) <= 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /** Consistent, compacted copy of the whole database into {@code path} (SQLite 3.27+, API 30+). */
+    void vacuumInto(String path) {
+        this.getWritableDatabase().execSQL("VACUUM INTO ?", new Object[]{path});
+    }
+
+    /** Restore last step, still inside the transaction: one streak rebuild instead of one per row. */
+    void finishRestore(SQLiteDatabase db) {
+        finishRestore(db, false);
+    }
+
+    /** As above; {@code historyDeleted} when rows were removed, which the insert trigger can't follow. */
+    void finishRestore(SQLiteDatabase db, boolean historyDeleted) {
+        if (historyDeleted) {
+            rebuildDailySummary(db);
+        }
+        recomputeStreak(db);
+    }
+
+    /** The last incremental backup written, or null when the next one must be a new base. */
+    public BackupSegment getLastBackupSegment() {
+        Cursor cursor = this.getReadableDatabase().query(TABLE_BACKUP_CHAIN,
+                new String[]{KEY_CHAIN, KEY_CHAIN_SEQUENCE, KEY_CHAIN_AFTER, KEY_CHAIN_UP_TO,
+                        KEY_CHAIN_FLOOR, KEY_CHAIN_CREATED_AT},
+                null, null, null, null, null);
+        try {
+            if (!cursor.moveToFirst()) return null;
+            return new BackupSegment(cursor.getString(0), cursor.getInt(1), cursor.getLong(2),
+                    cursor.getLong(3), cursor.getLong(4), cursor.getLong(5));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /** Record {@code segment} as written; the next incremental backup continues from it. */
+    public void saveLastBackupSegment(BackupSegment segment) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_CHAIN_ID, 1);
+        values.put(KEY_CHAIN, segment.getChain());
+        values.put(KEY_CHAIN_SEQUENCE, segment.getSequence());
+        values.put(KEY_CHAIN_AFTER, segment.getAfterHistoryId());
+        values.put(KEY_CHAIN_UP_TO, segment.getUpToHistoryId());
+        values.put(KEY_CHAIN_FLOOR, segment.getHistoryFloor());
+        values.put(KEY_CHAIN_CREATED_AT, segment.getCreatedAt());
+        this.getWritableDatabase().insertWithOnConflict(TABLE_BACKUP_CHAIN, null, values,
+                SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // ============================
+    // ⏰ Alarm Ledger
+    // ============================
+
+    /**
+     * Request code of the (medicine, kind) slot, allocated on first use. The same slot always
+     * gets the same code, so re-arming replaces its PendingIntent instead of adding another.
+     */
+    public int allocateAlarmRequestCode(int medicineId, String kind) {
+        AlarmLedgerEntry entry = getAlarmLedgerEntry(medicineId, kind);
+        if (entry != null) return entry.getRequestCode();
+
+        // INSERT OR IGNORE + UNIQUE keeps this safe when the :alarm process allocates concurrently
+        // (checked first anyway: an ignored insert still burns an AUTOINCREMENT value)
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_ALARM_LEDGER + "(" + KEY_LEDGER_MEDICINE_ID + ", "
+                + KEY_LEDGER_KIND + ") VALUES (?, ?)", new Object[]{medicineId, kind});
+        entry = getAlarmLedgerEntry(medicineId, kind);
+        if (entry == null) {
+            throw new IllegalStateException("Ledger slot missing for " + kind + " of medicine " + medicineId);
+        }
+        return entry.getRequestCode();
+    }
+
+    public void recordAlarmArmed(int requestCode, long triggerAt) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_LEDGER_TRIGGER_AT, triggerAt);
+        values.put(KEY_LEDGER_STATE, AlarmLedgerEntry.STATE_ARMED);
+        values.put(KEY_LEDGER_UPDATED_AT, System.currentTimeMillis());
+        this.getWritableDatabase().update(TABLE_ALARM_LEDGER, values,
+                KEY_LEDGER_REQUEST_CODE + " = ?", new String[]{String.valueOf(requestCode)});
+    }
+
+    /** Mark a slot fired or cancelled; its trigger time is kept for diagnostics. */
+    public void recordAlarmState(int requestCode, String state) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_LEDGER_STATE, state);
+        values.put(KEY_LEDGER_UPDATED_AT, System.currentTimeMillis());
+        this.getWritableDatabase().update(TABLE_ALARM_LEDGER, values,
+                KEY_LEDGER_REQUEST_CODE + " = ?", new String[]{String.valueOf(requestCode)});
+    }
+
+    /**
+     * Alarms don't survive a reboot: everything still marked armed is marked cancelled.
+     * Returns how many rows changed.
+     */
+    public int forgetArmedAlarms() {
+        ContentValues values = new ContentValues();
+        values.put(KEY_LEDGER_STATE, AlarmLedgerEntry.STATE_CANCELLED);
+        values.put(KEY_LEDGER_UPDATED_AT, System.currentTimeMillis());
+        return this.getWritableDatabase().update(TABLE_ALARM_LEDGER, values,
+                KEY_LEDGER_STATE + " = ?", new String[]{AlarmLedgerEntry.STATE_ARMED});
+    }
+
+    // Unique (medicine_id, kind) index lookup; null when the slot was never allocated
+    public AlarmLedgerEntry getAlarmLedgerEntry(int medicineId, String kind) {
+        List<AlarmLedgerEntry> entries = queryAlarmLedger(
+                KEY_LEDGER_MEDICINE_ID + " = ? AND " + KEY_LEDGER_KIND + " = ?",
+                new String[]{String.valueOf(medicineId), kind});
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    /** Everything currently armed - one scan of idx_alarm_ledger_state. */
+    public List<AlarmLedgerEntry> getArmedAlarms() {
+        return queryAlarmLedger(KEY_LEDGER_STATE + " = ?", new String[]{AlarmLedgerEntry.STATE_ARMED});
+    }
+
+    public List<AlarmLedgerEntry> getArmedAlarms(int medicineId) {
+        return queryAlarmLedger(KEY_LEDGER_MEDICINE_ID + " = ? AND " + KEY_LEDGER_STATE + " = ?",
+                new String[]{String.valueOf(medicineId), AlarmLedgerEntry.STATE_ARMED});
+    }
+
+    /** Whole ledger, newest change first - for diagnostics. */
+    public List<AlarmLedgerEntry> getAlarmLedger() {
+        return queryAlarmLedger(null, null);
+    }
+
+    private List<AlarmLedgerEntry> queryAlarmLedger(String selection, String[] selectionArgs) {
+        List<AlarmLedgerEntry> entries = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_ALARM_LEDGER,
+                new String[]{KEY_LEDGER_REQUEST_CODE, KEY_LEDGER_MEDICINE_ID, KEY_LEDGER_KIND,
+                        KEY_LEDGER_TRIGGER_AT, KEY_LEDGER_STATE, KEY_LEDGER_UPDATED_AT},
+                selection, selectionArgs, null, null, KEY_LEDGER_UPDATED_AT + " DESC");
+        try {
+            while (cursor.moveToNext()) {
+                entries.add(new AlarmLedgerEntry(cursor.getInt(0), cursor.getInt(1), cursor.getString(2),
+                        cursor.getLong(3), cursor.getString(4), cursor.getLong(5)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return entries;
+    }
+
+    // ============================
+    // 🔋 Wake Lock Stats
+    // ============================
+
+    /**
+     * Add one hold to the (day, tag) totals. INSERT OR IGNORE + UPDATE in one transaction,
+     * so the :alarm, :reminder and main processes can all book into the same row.
+     */
+    public void addWakeLockHold(String day, String tag, long holdMs, int acquisitions) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_WAKE_LOCK_STATS + "(" + KEY_WAKE_DAY + ", "
+                    + KEY_WAKE_TAG + ") VALUES (?, ?)", new Object[]{day, tag});
+            db.execSQL("UPDATE " + TABLE_WAKE_LOCK_STATS + " SET "
+                    + KEY_WAKE_HOLD_MS + " = " + KEY_WAKE_HOLD_MS + " + ?, "
+                    + KEY_WAKE_ACQUISITIONS + " = " + KEY_WAKE_ACQUISITIONS + " + ?"
+                    + " WHERE " + KEY_WAKE_DAY + " = ? AND " + KEY_WAKE_TAG + " = ?",
+                    new Object[]{holdMs, acquisitions, day, tag});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Totals per day and tag since {@code fromDay} (yyyy-MM-dd), newest day first, longest hold first. */
+    public List<WakeLockUsage> getWakeLockUsage(String fromDay) {
+        List<WakeLockUsage> usage = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_WAKE_LOCK_STATS,
+                new String[]{KEY_WAKE_DAY, KEY_WAKE_TAG, KEY_WAKE_HOLD_MS, KEY_WAKE_ACQUISITIONS},
+                KEY_WAKE_DAY + " >= ?", new String[]{fromDay}, null, null,
+                KEY_WAKE_DAY + " DESC, " + KEY_WAKE_HOLD_MS + " DESC");
+        try {
+            while (cursor.moveToNext()) {
+                usage.add(new WakeLockUsage(cursor.getString(0), cursor.getString(1),
+                        cursor.getLong(2), cursor.getInt(3)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return usage;
+    }
+
+    // ============================
+    // ⏱️ Receiver Latency
+    // ============================
+
+    /**
+     * Add one broadcast to the (day, receiver, bucket) totals. INSERT OR IGNORE + UPDATE in one
+     * transaction, like the wake-lock stats, so every process books into the same rows.
+     */
+    public void addReceiverLatency(String day, String receiver, int bucket, long ms, boolean timedOut) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_RECEIVER_LATENCY + "(" + KEY_LATENCY_DAY + ", "
+                    + KEY_LATENCY_RECEIVER + ", " + KEY_LATENCY_BUCKET + ") VALUES (?, ?, ?)",
+                    new Object[]{day, receiver, bucket});
+            db.execSQL("UPDATE " + TABLE_RECEIVER_LATENCY + " SET "
+                    + KEY_LATENCY_CALLS + " = " + KEY_LATENCY_CALLS + " + 1, "
+                    + KEY_LATENCY_TIMEOUTS + " = " + KEY_LATENCY_TIMEOUTS + " + ?, "
+                    + KEY_LATENCY_MAX_MS + " = MAX(" + KEY_LATENCY_MAX_MS + ", ?)"
+                    + " WHERE " + KEY_LATENCY_DAY + " = ? AND " + KEY_LATENCY_RECEIVER + " = ?"
+                    + " AND " + KEY_LATENCY_BUCKET + " = ?",
+                    new Object[]{timedOut ? 1 : 0, ms, day, receiver, bucket});
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /** Bucket rows since {@code fromDay} (yyyy-MM-dd), ordered by receiver and bucket. */
+    public List<ReceiverLatency> getReceiverLatency(String fromDay) {
+        List<ReceiverLatency> rows = new ArrayList<>();
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.query(TABLE_RECEIVER_LATENCY,
+                new String[]{KEY_LATENCY_DAY, KEY_LATENCY_RECEIVER, KEY_LATENCY_BUCKET,
+                        KEY_LATENCY_CALLS, KEY_LATENCY_TIMEOUTS, KEY_LATENCY_MAX_MS},
+                KEY_LATENCY_DAY + " >= ?", new String[]{fromDay}, null, null,
+                KEY_LATENCY_RECEIVER + " ASC, " + KEY_LATENCY_BUCKET + " ASC");
+        try {
+            while (cursor.moveToNext()) {
+                rows.add(new ReceiverLatency(cursor.getString(0), cursor.getString(1), cursor.getInt(2),
+                        cursor.getLong(3), cursor.getLong(4), cursor.getLong(5)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
 }
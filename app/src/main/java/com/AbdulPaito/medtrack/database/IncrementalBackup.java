@@ -0,0 +1,156 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IncrementalBackup - Base + delta backups keyed on history_id (see BackupSegment)
+ * The first incremental backup writes a full base and records its watermark in the database;
+ * each later one writes only the history added since, plus the medicines snapshot, and moves
+ * the watermark once the file has been written. Restoring takes the base and its deltas in any
+ * order, checks that the chain is complete, and applies it in one transaction.
+ * Run it off the main thread.
+ */
+public final class IncrementalBackup {
+
+    private static final String TAG = "IncrementalBackup";
+
+    /** Deltas per chain before the next backup starts a new base, so a restore stays a few files. */
+    static final int MAX_DELTAS = 30;
+
+    /** Opens one of the files picked for restore; called twice per file. */
+    public interface Source {
+        InputStream open() throws IOException;
+    }
+
+    private final DatabaseHelper helper;
+
+    public IncrementalBackup(DatabaseHelper helper) {
+        this.helper = helper;
+    }
+
+    // ============================
+    // 💾 Backup
+    // ============================
+
+    /** The segment the next incremental backup will write. Nothing is recorded until {@link #commit}. */
+    public BackupSegment nextSegment() {
+        long[] range = helper.getHistoryIdRange();
+        long now = System.currentTimeMillis();
+        BackupSegment last = helper.getLastBackupSegment();
+        if (last == null || last.getSequence() >= MAX_DELTAS) {
+            return BackupSegment.base(range[0], range[1], now);
+        }
+        return last.next(range[0], range[1], now);
+    }
+
+    /** Write {@code segment} to {@code out} (flushed, not closed). Returns the rows written. */
+    public int write(BackupSegment segment, OutputStream out, BackupWriter.Progress progress) throws IOException {
+        int rows = new BinaryBackup(helper).write(out, progress, segment);
+        Log.d(TAG, "✅ Wrote " + segment + ": " + rows + " row(s)");
+        return rows;
+    }
+
+    /** Record {@code segment} as the new watermark. Only call once its file is safely closed. */
+    public void commit(BackupSegment segment) {
+        helper.saveLastBackupSegment(segment);
+    }
+
+    // ============================
+    // ♻️ Restore
+    // ============================
+
+    /**
+     * Replace medicines and history with a base and its deltas, picked in any order. Throws,
+     * with the database rolled back, when a file is corrupt, belongs to another chain, or a
+     * segment is missing.
+     */
+    public BackupReader.Result restore(List<? extends Source> files, BackupReader.Progress progress)
+            throws IOException {
+        List<Entry> chain = readChain(files);
+
+        BinaryBackup binary = new BinaryBackup(helper);
+        binary.reset();
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Entry entry : chain) {
+                try (InputStream in = open(entry.source)) {
+                    binary.apply(db, new BackupCodec.Reader(in), entry.segment, progress);
+                }
+            }
+            helper.finishRestore(db, binary.historyDeleted());
+            db.setTransactionSuccessful();
+            Log.d(TAG, "✅ Restored " + chain.size() + " segment(s): " + binary.medicines()
+                    + " medicine(s), " + binary.history() + " history row(s)");
+        } finally {
+            db.endTransaction();
+        }
+        return new BackupReader.Result(binary.medicines(), binary.history());
+    }
+
+    /** Read every header and order the files base first; throws unless they form one whole chain. */
+    static List<Entry> readChain(List<? extends Source> files) throws IOException {
+        List<Entry> chain = new ArrayList<>();
+        for (Source source : files) {
+            BackupSegment segment;
+            try (InputStream in = open(source)) {
+                segment = BinaryBackup.readSegment(in);
+            }
+            if (segment == null) {
+                throw new IOException("Only incremental backups can be restored together");
+            }
+            chain.add(new Entry(source, segment));
+        }
+        Collections.sort(chain, (a, b) -> Integer.compare(a.segment.getSequence(), b.segment.getSequence()));
+        checkChain(chain);
+        return chain;
+    }
+
+    static void checkChain(List<Entry> chain) throws IOException {
+        if (chain.isEmpty() || !chain.get(0).segment.isBase()) {
+            throw new IOException("The base backup of this chain is missing");
+        }
+        BackupSegment previous = chain.get(0).segment;
+        for (int i = 1; i < chain.size(); i++) {
+            BackupSegment segment = chain.get(i).segment;
+            if (!segment.getChain().equals(previous.getChain())) {
+                throw new IOException("These backups come from different chains");
+            }
+            if (segment.getSequence() == previous.getSequence()) {
+                throw new IOException("Incremental backup #" + segment.getSequence() + " was picked twice");
+            }
+            if (segment.getSequence() != previous.getSequence() + 1
+                    || segment.getAfterHistoryId() != previous.getUpToHistoryId()) {
+                throw new IOException("Incremental backup #" + (previous.getSequence() + 1) + " is missing");
+            }
+            previous = segment;
+        }
+    }
+
+    private static InputStream open(Source source) throws IOException {
+        InputStream in = source.open();
+        if (in == null) {
+            throw new IOException("Cannot open backup file");
+        }
+        return new BufferedInputStream(in);
+    }
+
+    static final class Entry {
+        final Source source;
+        final BackupSegment segment;
+
+        Entry(Source source, BackupSegment segment) {
+            this.source = source;
+            this.segment = segment;
+        }
+    }
+}
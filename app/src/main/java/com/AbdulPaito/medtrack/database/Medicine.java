@@ -1,5 +1,9 @@
 package com.AbdulPaito.medtrack.database;
 
+import com.AbdulPaito.medtrack.TimeUtils;
+
+import java.time.LocalTime;
+
 /**
  * Medicine - Represents a single medicine entry
  * This class holds all information about a medicine
@@ -12,6 +16,8 @@ public class Medicine {
     private String reminderTime;   // Format: HH:mm (e.g., "09:30")
     private String reminderDate;   // Format: yyyy-MM-dd or "Oct 20, 2025"
     private String frequency;      // daily, 12hours, custom
+    private Recurrence recurrence; // structured schedule; null = derived from frequency
+    private LocalTime reminderLocalTime; // parsed reminderTime, cached for binds and scheduling
     private boolean isActive;
     
     // New fields for advanced features
@@ -87,6 +93,15 @@ public class Medicine {
 
     public void setReminderTime(String reminderTime) {
         this.reminderTime = reminderTime;
+        this.reminderLocalTime = null;
+    }
+
+    /** reminderTime as an immutable LocalTime (parsed once), or null if it isn't "HH:mm". */
+    public LocalTime getReminderLocalTime() {
+        if (reminderLocalTime == null) {
+            reminderLocalTime = TimeUtils.parseReminderTime(reminderTime);
+        }
+        return reminderLocalTime;
     }
 
     public String getReminderDate() {
@@ -105,6 +120,19 @@ public class Medicine {
         this.frequency = frequency;
     }
 
+    /**
+     * Structured schedule for the scheduler and calendar. Rows saved before recurrences
+     * existed fall back to parsing frequency/time/date; null only if the time is unreadable.
+     */
+    public Recurrence getRecurrence() {
+        if (recurrence != null) return recurrence;
+        return Recurrence.fromFrequency(frequency, reminderTime, reminderDate);
+    }
+
+    public void setRecurrence(Recurrence recurrence) {
+        this.recurrence = recurrence;
+    }
+
     public boolean isActive() {
         return isActive;
     }
@@ -0,0 +1,56 @@
+package com.AbdulPaito.medtrack.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * ReceiverLatency - One row of receiver_latency: broadcasts of one receiver on one day that
+ * fell into one LatencyHistogram bucket (see DatabaseHelper "Receiver Latency" section and AsyncReceiver)
+ */
+public class ReceiverLatency {
+    private final String day;       // yyyy-MM-dd, device time zone
+    private final String receiver;  // simple class name
+    private final int bucket;       // LatencyHistogram bucket
+    private final long calls;
+    private final long timeouts;
+    private final long maxMs;
+
+    public ReceiverLatency(String day, String receiver, int bucket, long calls, long timeouts, long maxMs) {
+        this.day = day;
+        this.receiver = receiver;
+        this.bucket = bucket;
+        this.calls = calls;
+        this.timeouts = timeouts;
+        this.maxMs = maxMs;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public String getReceiver() {
+        return receiver;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return day + " " + receiver + " bucket " + bucket + ": " + calls + " call(s), "
+                + timeouts + " timeout(s), max " + maxMs + " ms";
+    }
+}
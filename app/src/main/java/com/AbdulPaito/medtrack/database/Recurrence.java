@@ -0,0 +1,441 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.AbdulPaito.medtrack.TimeUtils;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recurrence - When a medicine is due
+ * Every {@code intervalDays} days (counted from the start date) at each of the times of day,
+ * optionally limited to some weekdays, a date range and a course length.
+ * Stored in the medicines.recurrence column as a short spec, e.g.
+ * "every=1;times=09:00,21:00;days=MO,WE,FR;start=2025-10-20;course=7".
+ */
+public final class Recurrence {
+
+    private static final String TAG = "Recurrence";
+
+    public static final int ALL_WEEKDAYS = 0x7F; // bit 0 = Monday ... bit 6 = Sunday
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final String[] WEEKDAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    // Medicine dates come from the date picker as MM/dd/yyyy; older rows may be ISO or "Oct 20, 2025"
+    private static final DateTimeFormatter[] MEDICINE_DATE_FORMATS = {
+            DateTimeFormatter.ofPattern("M/d/yyyy", Locale.US),
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("MMM d, yyyy", Locale.US)
+    };
+
+    // Free-text frequencies typed into "Custom"
+    private static final Pattern EVERY_N_HOURS = Pattern.compile("every\\s+(\\d+)\\s*(?:hours?|hrs?|h)\\b");
+    private static final Pattern EVERY_N_DAYS = Pattern.compile("every\\s+(\\d+)\\s*days?\\b");
+    private static final Pattern TIMES_A_DAY = Pattern.compile("(\\d+|once|twice|thrice)\\s*(?:x|times)?\\s*(?:a|per)?\\s*(?:day|daily)\\b");
+    private static final Pattern FOR_N_DAYS = Pattern.compile("for\\s+(\\d+)\\s*days?\\b");
+    private static final Pattern FOR_N_WEEKS = Pattern.compile("for\\s+(\\d+)\\s*weeks?\\b");
+
+    private final int intervalDays;
+    private final int[] secondsOfDay;   // sorted, distinct - the per-day occurrence index
+    private final int weekdayMask;
+    @Nullable private final LocalDate startDate;
+    @Nullable private final LocalDate endDate;
+    private final int courseDays;       // 0 = open-ended
+
+    // Precomputed bounds so expansion is plain epoch-day arithmetic
+    private final long firstDay;
+    private final long lastDay;
+    private final long anchorDay;
+
+    public Recurrence(int intervalDays, LocalTime[] timesOfDay, int weekdayMask,
+                      @Nullable LocalDate startDate, @Nullable LocalDate endDate, int courseDays) {
+        if (timesOfDay == null || timesOfDay.length == 0) {
+            throw new IllegalArgumentException("A recurrence needs at least one time of day");
+        }
+        this.intervalDays = Math.max(1, intervalDays);
+        this.weekdayMask = (weekdayMask & ALL_WEEKDAYS) == 0 ? ALL_WEEKDAYS : weekdayMask & ALL_WEEKDAYS;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.courseDays = Math.max(0, courseDays);
+
+        int[] seconds = new int[timesOfDay.length];
+        for (int i = 0; i < seconds.length; i++) {
+            seconds[i] = timesOfDay[i].withNano(0).toSecondOfDay();
+        }
+        Arrays.sort(seconds);
+        int distinct = 0;
+        for (int i = 0; i < seconds.length; i++) {
+            if (i == 0 || seconds[i] != seconds[i - 1]) seconds[distinct++] = seconds[i];
+        }
+        this.secondsOfDay = Arrays.copyOf(seconds, distinct);
+
+        this.firstDay = startDate != null ? startDate.toEpochDay() : Long.MIN_VALUE;
+        this.anchorDay = startDate != null ? startDate.toEpochDay() : 0;
+        long last = endDate != null ? endDate.toEpochDay() : Long.MAX_VALUE;
+        if (startDate != null && this.courseDays > 0) {
+            last = Math.min(last, startDate.toEpochDay() + this.courseDays - 1);
+        }
+        this.lastDay = last;
+    }
+
+    /** Every day at one time, no bounds. */
+    public static Recurrence daily(LocalTime time) {
+        return new Recurrence(1, new LocalTime[]{time}, ALL_WEEKDAYS, null, null, 0);
+    }
+
+    public int getIntervalDays() {
+        return intervalDays;
+    }
+
+    public LocalTime[] getTimesOfDay() {
+        LocalTime[] times = new LocalTime[secondsOfDay.length];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = LocalTime.ofSecondOfDay(secondsOfDay[i]);
+        }
+        return times;
+    }
+
+    public int getWeekdayMask() {
+        return weekdayMask;
+    }
+
+    @Nullable
+    public LocalDate getStartDate() {
+        return startDate;
+    }
+
+    @Nullable
+    public LocalDate getEndDate() {
+        return endDate;
+    }
+
+    public int getCourseDays() {
+        return courseDays;
+    }
+
+    /** Doses per scheduled day. */
+    public int getDosesPerDay() {
+        return secondsOfDay.length;
+    }
+
+    /** True when any dose falls on {@code day}. */
+    public boolean isScheduledOn(LocalDate day) {
+        return isScheduledOn(day.toEpochDay());
+    }
+
+    private boolean isScheduledOn(long epochDay) {
+        if (epochDay < firstDay || epochDay > lastDay) return false;
+        if (Math.floorMod(epochDay - anchorDay, (long) intervalDays) != 0) return false;
+        return (weekdayMask & (1 << weekdayIndex(epochDay))) != 0;
+    }
+
+    // 1970-01-01 was a Thursday (index 3)
+    private static int weekdayIndex(long epochDay) {
+        return (int) Math.floorMod(epochDay + 3, 7L);
+    }
+
+    /**
+     * Doses strictly after {@code fromMillis}, earliest first, expanded lazily. Skipped days are
+     * stepped over with epoch-day arithmetic; only emitted doses touch the time zone rules.
+     */
+    public Occurrences occurrencesAfter(long fromMillis, ZoneId zone) {
+        return new Occurrences(fromMillis, zone);
+    }
+
+    /** Next dose strictly after {@code fromMillis}, or -1 when the course is over. */
+    public long nextAfter(long fromMillis, ZoneId zone) {
+        return occurrencesAfter(fromMillis, zone).next();
+    }
+
+    /** Lazy cursor over dose times; {@link #next()} returns epoch millis, or -1 once exhausted. */
+    public final class Occurrences {
+        private final long fromMillis;
+        private final ZoneId zone;
+        private final ZoneRules rules;
+        private final int fixedOffsetSeconds;
+        private final boolean fixedOffset;
+        private long day;
+        private int index;
+        private boolean done;
+
+        private Occurrences(long fromMillis, ZoneId zone) {
+            this.fromMillis = fromMillis;
+            this.zone = zone;
+            this.rules = zone.getRules();
+            this.fixedOffset = rules.isFixedOffset();
+            this.fixedOffsetSeconds = fixedOffset ? rules.getOffset(Instant.EPOCH).getTotalSeconds() : 0;
+            // Start a day early so a dose just before midnight across an offset change isn't missed
+            long fromDay = Math.floorDiv(fromMillis / 1000 + rules.getOffset(Instant.ofEpochMilli(fromMillis))
+                    .getTotalSeconds(), (long) SECONDS_PER_DAY) - 1;
+            this.day = Math.max(fromDay, firstDay);
+            this.index = 0;
+            this.done = !seekScheduledDay();
+        }
+
+        public long next() {
+            while (!done) {
+                long at = toEpochMillis(day, secondsOfDay[index]);
+                if (++index == secondsOfDay.length) {
+                    index = 0;
+                    day++;
+                    done = !seekScheduledDay();
+                }
+                if (at > fromMillis) return at;
+            }
+            return -1;
+        }
+
+        // Move day forward to the next scheduled day; false when none is left
+        private boolean seekScheduledDay() {
+            if (day < firstDay) day = firstDay;
+            long misses = 0;
+            long limit = 7L * intervalDays; // every weekday/interval combination repeats within this
+            while (day <= lastDay) {
+                long offset = Math.floorMod(day - anchorDay, (long) intervalDays);
+                if (offset != 0) {
+                    day += intervalDays - offset;
+                    continue;
+                }
+                if ((weekdayMask & (1 << weekdayIndex(day))) != 0) return true;
+                day += intervalDays;
+                misses += intervalDays;
+                if (misses > limit) return false;
+            }
+            return false;
+        }
+
+        private long toEpochMillis(long epochDay, int secondOfDay) {
+            long localSeconds = epochDay * SECONDS_PER_DAY + secondOfDay;
+            if (fixedOffset) {
+                return (localSeconds - fixedOffsetSeconds) * 1000L;
+            }
+            // Gaps (DST spring-forward) shift forward, overlaps keep the earlier offset
+            return LocalDateTime.ofEpochSecond(localSeconds, 0, ZoneOffset.UTC)
+                    .atZone(zone).toInstant().toEpochMilli();
+        }
+    }
+
+    // ============================
+    // 💾 Persistence
+    // ============================
+
+    /** Compact spec stored in medicines.recurrence (see class comment). */
+    @NonNull
+    public String toSpec() {
+        StringBuilder spec = new StringBuilder("every=").append(intervalDays).append(";times=");
+        for (int i = 0; i < secondsOfDay.length; i++) {
+            if (i > 0) spec.append(',');
+            int minutes = secondsOfDay[i] / 60;
+            spec.append(String.format(Locale.US, "%02d:%02d", minutes / 60, minutes % 60));
+        }
+        if (weekdayMask != ALL_WEEKDAYS) {
+            spec.append(";days=");
+            boolean first = true;
+            for (int i = 0; i < WEEKDAY_CODES.length; i++) {
+                if ((weekdayMask & (1 << i)) == 0) continue;
+                if (!first) spec.append(',');
+                spec.append(WEEKDAY_CODES[i]);
+                first = false;
+            }
+        }
+        if (startDate != null) spec.append(";start=").append(startDate);
+        if (endDate != null) spec.append(";end=").append(endDate);
+        if (courseDays > 0) spec.append(";course=").append(courseDays);
+        return spec.toString();
+    }
+
+    /** Parse a stored spec; null when it is missing or unreadable. */
+    @Nullable
+    public static Recurrence fromSpec(@Nullable String spec) {
+        if (spec == null || spec.trim().isEmpty()) return null;
+        int interval = 1;
+        LocalTime[] times = null;
+        int mask = ALL_WEEKDAYS;
+        LocalDate start = null;
+        LocalDate end = null;
+        int course = 0;
+        try {
+            for (String part : spec.split(";")) {
+                int eq = part.indexOf('=');
+                if (eq < 0) continue;
+                String key = part.substring(0, eq).trim();
+                String value = part.substring(eq + 1).trim();
+                switch (key) {
+                    case "every":
+                        interval = Integer.parseInt(value);
+                        break;
+                    case "times":
+                        String[] parts = value.split(",");
+                        times = new LocalTime[parts.length];
+                        for (int i = 0; i < parts.length; i++) {
+                            times[i] = LocalTime.parse(parts[i].trim());
+                        }
+                        break;
+                    case "days":
+                        mask = 0;
+                        for (String code : value.split(",")) {
+                            int index = Arrays.asList(WEEKDAY_CODES).indexOf(code.trim().toUpperCase(Locale.US));
+                            if (index >= 0) mask |= 1 << index;
+                        }
+                        break;
+                    case "start":
+                        start = LocalDate.parse(value);
+                        break;
+                    case "end":
+                        end = LocalDate.parse(value);
+                        break;
+                    case "course":
+                        course = Integer.parseInt(value);
+                        break;
+                    default:
+                        break; // unknown keys from newer versions are ignored
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        if (times == null || times.length == 0) return null;
+        return new Recurrence(interval, times, mask, start, end, course);
+    }
+
+    /**
+     * Best-effort structure for the legacy free-text frequency: "Daily", "Every 12 hours",
+     * "twice a day", "3 times daily", "every other day", "every 3 days", "weekly", "weekdays",
+     * "... for 7 days". "Every 48 hours" and other whole days become a day interval.
+     * Anything unrecognised stays daily at the reminder time, as before.
+     * Returns null only when the reminder time itself can't be read.
+     */
+    @Nullable
+    public static Recurrence fromFrequency(@Nullable String frequency, @Nullable String reminderTime,
+                                           @Nullable String reminderDate) {
+        LocalTime time = parseReminderTime(reminderTime);
+        if (time == null) return null;
+        LocalDate start = parseMedicineDate(reminderDate);
+        String text = frequency == null ? "" : frequency.trim().toLowerCase(Locale.US);
+
+        int interval = 1;
+        int perDay = 1;
+        int spacingHours = 0;
+        int mask = ALL_WEEKDAYS;
+        int course = 0;
+
+        Matcher m;
+        if ((m = EVERY_N_HOURS.matcher(text)).find()) {
+            spacingHours = Integer.parseInt(m.group(1));
+            if (spacingHours >= 24) {
+                // Whole days become a day interval: "Every 48 hours" is every other day
+                if (spacingHours % 24 == 0) {
+                    interval = spacingHours / 24;
+                } else {
+                    Log.w(TAG, "⚠️ \"" + frequency + "\" isn't a whole number of days, kept daily");
+                }
+                spacingHours = 0;
+            }
+        } else if ((m = EVERY_N_DAYS.matcher(text)).find()) {
+            interval = Integer.parseInt(m.group(1));
+        } else if (text.contains("every other day") || text.contains("alternate day")) {
+            interval = 2;
+        } else if (text.contains("weekly") || text.contains("once a week") || text.contains("every week")) {
+            interval = 7;
+        } else if (text.contains("weekday")) {
+            mask = 0x1F; // MO-FR
+        } else if (text.contains("weekend")) {
+            mask = 0x60; // SA, SU
+        } else if ((m = TIMES_A_DAY.matcher(text)).find()) {
+            perDay = countWord(m.group(1));
+        }
+
+        if ((m = FOR_N_DAYS.matcher(text)).find()) {
+            course = Integer.parseInt(m.group(1));
+        } else if ((m = FOR_N_WEEKS.matcher(text)).find()) {
+            course = Integer.parseInt(m.group(1)) * 7;
+        }
+
+        if (spacingHours <= 0 && perDay > 1) {
+            spacingHours = 24 / Math.min(perDay, 24);
+        }
+        LocalTime[] times;
+        if (spacingHours > 0 && spacingHours < 24) {
+            // Hour intervals are folded into times of day from the reminder time
+            times = new LocalTime[(23 / spacingHours) + 1];
+            int count = 0;
+            for (int h = 0; h < 24; h += spacingHours) {
+                times[count++] = time.plusHours(h);
+            }
+            times = Arrays.copyOf(times, count);
+        } else {
+            times = new LocalTime[]{time};
+        }
+        return new Recurrence(interval, times, mask, start, null, course);
+    }
+
+    private static int countWord(String word) {
+        switch (word) {
+            case "once":
+                return 1;
+            case "twice":
+                return 2;
+            case "thrice":
+                return 3;
+            default:
+                try {
+                    return Math.max(1, Integer.parseInt(word));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+        }
+    }
+
+    // Stored reminder times are "HH:mm"
+    @Nullable
+    public static LocalTime parseReminderTime(@Nullable String reminderTime) {
+        return TimeUtils.parseReminderTime(reminderTime == null ? null : reminderTime.trim());
+    }
+
+    @Nullable
+    static LocalDate parseMedicineDate(@Nullable String date) {
+        if (date == null || date.trim().isEmpty()) return null;
+        for (DateTimeFormatter format : MEDICINE_DATE_FORMATS) {
+            try {
+                return LocalDate.parse(date.trim(), format);
+            } catch (DateTimeParseException ignored) {
+                // try the next format
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Recurrence)) return false;
+        return toSpec().equals(((Recurrence) o).toSpec());
+    }
+
+    @Override
+    public int hashCode() {
+        return toSpec().hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return toSpec();
+    }
+}
@@ -0,0 +1,283 @@
+package com.AbdulPaito.medtrack.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * SnapshotBackup - The database file itself as the backup (.db)
+ * Backup checkpoints the WAL into medtrack.db and, holding the write lock, copies the file into
+ * the cache dir with FileChannel.transferTo. Writers in every process are blocked for that local
+ * copy only; the lock is released before the copy is streamed to the (possibly slow) document
+ * provider. If other connections keep the WAL from emptying, API 30+ falls back to VACUUM INTO
+ * the cache file instead (SQLite on API 26-29 is too old for it). Restore checks the file is a SQLite database from this or an older schema
+ * version, upgrades a staging copy through DatabaseHelper's migrations, then copies medicines
+ * and history into the live database in one transaction. The live file isn't swapped: the
+ * :alarm and :reminder processes keep it open. Run it off the main thread.
+ */
+public final class SnapshotBackup {
+
+    private static final String TAG = "SnapshotBackup";
+
+    /** Extension and MIME type for the document picker. */
+    public static final String FILE_EXTENSION = ".db";
+    public static final String MIME_TYPE = "application/x-sqlite3";
+
+    private static final byte[] SQLITE_MAGIC = "SQLite format 3\0".getBytes(StandardCharsets.US_ASCII);
+    public static final int HEADER_LENGTH = 16;
+
+    private static final int LOCK_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 200;
+    private static final int OLDEST_RESTORABLE_VERSION = 4; // onUpgrade() recreates anything older
+    private static final String STAGING_DB_NAME = "medtrack_snapshot_restore.db";
+    private static final String SNAPSHOT_FILE_NAME = "medtrack_snapshot.db";
+    private static final long CHUNK = 8L * 1024 * 1024;
+
+    private final Context context;
+    private final DatabaseHelper helper;
+
+    public SnapshotBackup(Context context, DatabaseHelper helper) {
+        this.context = context.getApplicationContext();
+        this.helper = helper;
+    }
+
+    /** True when {@code header} (at least 16 bytes) starts like a SQLite database file. */
+    public static boolean isSnapshot(byte[] header, int length) {
+        if (length < SQLITE_MAGIC.length) return false;
+        for (int i = 0; i < SQLITE_MAGIC.length; i++) {
+            if (header[i] != SQLITE_MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    // ============================
+    // 💾 Backup
+    // ============================
+
+    /** Write a consistent copy of the database to {@code out} (flushed, not closed). Returns the bytes written. */
+    public long write(OutputStream out) throws IOException {
+        File snapshot = new File(context.getCacheDir(), SNAPSHOT_FILE_NAME);
+        snapshot.delete(); // VACUUM INTO refuses an existing file
+        try {
+            snapshotTo(snapshot);
+            // The lock is gone by now, so a slow document provider only holds up this thread
+            long bytes = copy(snapshot, out);
+            Log.d(TAG, "✅ Wrote " + bytes + " bytes");
+            return bytes;
+        } finally {
+            snapshot.delete();
+        }
+    }
+
+    // Consistent copy into a local cache file; the write lock is only held while copying to disk
+    private void snapshotTo(File snapshot) throws IOException {
+        File database = new File(helper.getDatabaseFilePath());
+        File wal = new File(database.getPath() + "-wal");
+        SQLiteDatabase db = helper.getWritableDatabase();
+
+        for (int attempt = 1; attempt <= LOCK_ATTEMPTS; attempt++) {
+            helper.checkpointWal();
+            // No commit can land while we hold the write lock, so an empty WAL means
+            // medtrack.db alone is the whole database for as long as the copy takes
+            db.beginTransaction();
+            try {
+                if (wal.length() == 0) {
+                    try (FileOutputStream local = new FileOutputStream(snapshot)) {
+                        long bytes = copy(database, local);
+                        Log.d(TAG, "✅ Snapshot of " + bytes + " bytes (attempt " + attempt + ")");
+                    }
+                    return;
+                }
+            } finally {
+                db.endTransaction();
+            }
+            Log.w(TAG, "⚠️ WAL still has frames, retrying (" + attempt + "/" + LOCK_ATTEMPTS + ")");
+            try {
+                Thread.sleep(RETRY_DELAY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted", e);
+            }
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            snapshot.delete();
+            helper.vacuumInto(snapshot.getPath());
+            Log.d(TAG, "✅ Snapshot via VACUUM INTO");
+            return;
+        }
+        throw new IOException("The database is busy, try again in a moment");
+    }
+
+    private static long copy(File file, OutputStream out) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel source = in.getChannel();
+            // SAF hands out FileOutputStreams: channel to channel stays in the kernel
+            WritableByteChannel target = out instanceof FileOutputStream
+                    ? ((FileOutputStream) out).getChannel()
+                    : Channels.newChannel(out);
+            long size = source.size();
+            long position = 0;
+            while (position < size) {
+                position += source.transferTo(position, size - position, target);
+            }
+            out.flush();
+            return size;
+        }
+    }
+
+    // ============================
+    // ♻️ Restore
+    // ============================
+
+    /**
+     * Replace medicines and history with those in the snapshot in {@code in} (not closed).
+     * Throws, with the database untouched, when the file isn't a MedTrack database or comes
+     * from a newer schema version than this build knows.
+     */
+    public BackupReader.Result restore(InputStream in, BackupReader.Progress progress) throws IOException {
+        context.deleteDatabase(STAGING_DB_NAME);
+        File staging = context.getDatabasePath(STAGING_DB_NAME);
+        DatabaseHelper staged = null;
+        try {
+            stage(in, staging);
+            int version = checkSnapshot(staging);
+
+            // Runs onUpgrade() from the snapshot's version, exactly as an app update would
+            staged = new DatabaseHelper(context, STAGING_DB_NAME);
+            staged.getWritableDatabase();
+            if (version < DatabaseHelper.DATABASE_VERSION) {
+                Log.d(TAG, "🔼 Migrated snapshot from v" + version + " to v" + DatabaseHelper.DATABASE_VERSION);
+            }
+            return importRows(staged, progress);
+        } finally {
+            if (staged != null) staged.close();
+            context.deleteDatabase(STAGING_DB_NAME);
+        }
+    }
+
+    private static void stage(InputStream in, File staging) throws IOException {
+        File dir = staging.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        try (FileOutputStream out = new FileOutputStream(staging)) {
+            FileChannel target = out.getChannel();
+            ReadableByteChannel source = in instanceof FileInputStream
+                    ? ((FileInputStream) in).getChannel()
+                    : Channels.newChannel(in);
+            long position = 0;
+            long copied;
+            while ((copied = target.transferFrom(source, position, CHUNK)) > 0) {
+                position += copied;
+            }
+            out.getFD().sync();
+        }
+    }
+
+    /** The snapshot's schema version; throws unless this build can open and upgrade it. */
+    private static int checkSnapshot(File staging) throws IOException {
+        byte[] header = new byte[HEADER_LENGTH];
+        int read;
+        try (FileInputStream in = new FileInputStream(staging)) {
+            read = in.read(header);
+        }
+        if (!isSnapshot(header, read)) {
+            throw new IOException("Not a MedTrack database snapshot");
+        }
+
+        SQLiteDatabase db;
+        try {
+            // Read-write: a read-only open of a WAL-mode file fails on API 26's SQLite
+            db = SQLiteDatabase.openDatabase(staging.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot open the snapshot: " + e.getMessage(), e);
+        }
+        try {
+            int version = db.getVersion();
+            if (version > DatabaseHelper.DATABASE_VERSION) {
+                throw new IOException("This snapshot is from a newer MedTrack (schema v" + version
+                        + "); update the app first");
+            }
+            if (version < OLDEST_RESTORABLE_VERSION) {
+                throw new IOException("Not a MedTrack database, or too old to restore (schema v" + version + ")");
+            }
+            try (Cursor cursor = db.rawQuery("PRAGMA quick_check", null)) {
+                if (!cursor.moveToFirst() || !"ok".equals(cursor.getString(0))) {
+                    throw new IOException("The snapshot is damaged");
+                }
+            }
+            return version;
+        } catch (RuntimeException e) {
+            throw new IOException("Cannot read the snapshot: " + e.getMessage(), e);
+        } finally {
+            db.close();
+        }
+    }
+
+    private BackupReader.Result importRows(DatabaseHelper staged, BackupReader.Progress progress)
+            throws IOException {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        int[] rows = new int[DatabaseHelper.BINARY_BACKUP_TABLES.length];
+        int done = 0;
+
+        db.beginTransaction();
+        try {
+            helper.clearForRestore(db);
+            for (int t = 0; t < rows.length; t++) {
+                String table = DatabaseHelper.BINARY_BACKUP_TABLES[t];
+                // Same version now, but columns added by ALTER TABLE sit in a different order
+                List<String> columns = helper.columnsOf(db, table);
+                try (Cursor cursor = staged.queryTableForBackup(table);
+                     SQLiteStatement insert = helper.compileRowRestore(db, table, columns)) {
+                    int[] source = new int[columns.size()];
+                    for (int i = 0; i < source.length; i++) {
+                        source[i] = cursor.getColumnIndex(columns.get(i));
+                    }
+                    while (cursor.moveToNext()) {
+                        for (int i = 0; i < source.length; i++) {
+                            int c = source[i];
+                            if (c < 0 || cursor.getType(c) == Cursor.FIELD_TYPE_NULL) {
+                                insert.bindNull(i + 1);
+                            } else if (cursor.getType(c) == Cursor.FIELD_TYPE_INTEGER) {
+                                insert.bindLong(i + 1, cursor.getLong(c));
+                            } else {
+                                insert.bindString(i + 1, cursor.getString(c));
+                            }
+                        }
+                        insert.executeInsert();
+                        rows[t]++;
+                        done++;
+                        if (progress != null && done % BackupWriter.PROGRESS_EVERY == 0) {
+                            progress.onProgress(done);
+                        }
+                    }
+                }
+            }
+            helper.finishRestore(db, false);
+            db.setTransactionSuccessful();
+            Log.d(TAG, "✅ Restored " + rows[0] + " medicine(s), " + rows[1] + " history row(s)");
+        } catch (RuntimeException e) {
+            throw new IOException("Restore failed: " + e.getMessage(), e);
+        } finally {
+            db.endTransaction();
+        }
+        return new BackupReader.Result(rows[0], rows[1]);
+    }
+}
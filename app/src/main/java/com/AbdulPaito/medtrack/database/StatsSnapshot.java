@@ -0,0 +1,49 @@
+package com.AbdulPaito.medtrack.database;
+
+/**
+ * StatsSnapshot - Dashboard numbers read together from the summary tables
+ * (see DatabaseHelper.getStatsSnapshot)
+ */
+public class StatsSnapshot {
+    private final int takenCount;
+    private final int missedCount;
+    private final int currentStreak;
+    private final int bestStreak;
+    private final int activeMedicineCount;
+
+    public StatsSnapshot(int takenCount, int missedCount, int currentStreak, int bestStreak,
+                         int activeMedicineCount) {
+        this.takenCount = takenCount;
+        this.missedCount = missedCount;
+        this.currentStreak = currentStreak;
+        this.bestStreak = bestStreak;
+        this.activeMedicineCount = activeMedicineCount;
+    }
+
+    public int getTakenCount() {
+        return takenCount;
+    }
+
+    public int getMissedCount() {
+        return missedCount;
+    }
+
+    // Same rounding as DatabaseHelper.getAdherenceRate()
+    public int getAdherenceRate() {
+        int total = takenCount + missedCount;
+        if (total == 0) return 0;
+        return (int) ((takenCount * 100.0) / total);
+    }
+
+    public int getCurrentStreak() {
+        return currentStreak;
+    }
+
+    public int getBestStreak() {
+        return bestStreak;
+    }
+
+    public int getActiveMedicineCount() {
+        return activeMedicineCount;
+    }
+}
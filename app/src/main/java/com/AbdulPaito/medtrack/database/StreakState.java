@@ -0,0 +1,44 @@
+package com.AbdulPaito.medtrack.database;
+
+/**
+ * StreakState - The single row of the streak table, folded one day at a time.
+ * A day counts towards the streak when at least one dose was taken and none were missed.
+ * Days are epoch days in the device zone (LocalDate.toEpochDay()).
+ */
+final class StreakState {
+    /** lastDay before any day is folded in; 0 and -1 are real days (legacy taken_at 0). */
+    static final long EMPTY = Long.MIN_VALUE;
+
+    long lastDay = EMPTY; // newest day folded in so far
+    int runBefore;    // clean days in a row ending the day before lastDay
+    int currentRun;   // clean days in a row ending on lastDay (0 if lastDay isn't clean)
+    int bestBefore;   // best run that finished before lastDay
+    int bestRun;      // max(bestBefore, currentRun)
+
+    /**
+     * Apply the latest counts for {@code day}. Calling it again for the same day
+     * replaces that day's contribution, so a late "Missed" can still break today's run.
+     * Days must arrive in ascending order; callers mark the row stale otherwise.
+     */
+    void apply(long day, int taken, int missed) {
+        if (lastDay == EMPTY || day > lastDay) {
+            runBefore = lastDay != EMPTY && day == lastDay + 1 ? currentRun : 0;
+            bestBefore = Math.max(bestBefore, currentRun);
+            lastDay = day;
+        }
+        boolean clean = taken > 0 && missed == 0;
+        currentRun = clean ? runBefore + 1 : 0;
+        bestRun = Math.max(bestBefore, currentRun);
+    }
+
+    /** Run still alive on {@code today}: ends today, or yesterday while today's doses are pending. */
+    int currentStreak(long today) {
+        if (lastDay == EMPTY) {
+            return 0;
+        }
+        if (lastDay == today || lastDay == today - 1) {
+            return currentRun;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,43 @@
+package com.AbdulPaito.medtrack.database;
+
+import androidx.annotation.NonNull;
+
+/**
+ * WakeLockUsage - One row of wake_lock_stats: how long a wake-lock tag was held on one day
+ * (see DatabaseHelper "Wake Lock Stats" section and WakeLocks)
+ */
+public class WakeLockUsage {
+    private final String day;       // yyyy-MM-dd, device time zone
+    private final String tag;       // WakeLocks.Tag name
+    private final long holdMs;
+    private final int acquisitions;
+
+    public WakeLockUsage(String day, String tag, long holdMs, int acquisitions) {
+        this.day = day;
+        this.tag = tag;
+        this.holdMs = holdMs;
+        this.acquisitions = acquisitions;
+    }
+
+    public String getDay() {
+        return day;
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getHoldMs() {
+        return holdMs;
+    }
+
+    public int getAcquisitions() {
+        return acquisitions;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return day + " " + tag + ": " + holdMs + " ms over " + acquisitions + " acquisition(s)";
+    }
+}
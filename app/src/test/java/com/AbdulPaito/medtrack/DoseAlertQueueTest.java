@@ -0,0 +1,162 @@
+package com.AbdulPaito.medtrack;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives bursts of dose alerts through the queue AlarmSoundService rings from, with a
+ * recording Session in place of the ringtone, vibrator and wake lock.
+ */
+public class DoseAlertQueueTest {
+
+    private static final long RING_MS = 60_000;
+    private static final long T0 = 1_760_950_800_000L;
+    private static final int BURST = 50;
+
+    /** Counts what the service would have done. */
+    private static final class RecordingSession implements DoseAlertQueue.Session {
+        int starts;
+        int stops;
+        int updates;
+        boolean ringing;
+        final List<Integer> autoRepeats = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void start() {
+            assertFalse("second sound session started", ringing);
+            ringing = true;
+            starts++;
+        }
+
+        @Override
+        public void update(DoseAlertQueue.Alert head, int size) {
+            assertTrue(ringing);
+            assertNotNull(head);
+            updates++;
+        }
+
+        @Override
+        public void expired(DoseAlertQueue.Alert alert) {
+            autoRepeats.add(alert.medicineId);
+        }
+
+        @Override
+        public void stop() {
+            assertTrue("stopped while not ringing", ringing);
+            ringing = false;
+            stops++;
+        }
+    }
+
+    private RecordingSession session;
+    private DoseAlertQueue queue;
+
+    @Before
+    public void setUp() {
+        session = new RecordingSession();
+        queue = new DoseAlertQueue(RING_MS, session);
+    }
+
+    private void burst(long now) {
+        for (int id = 1; id <= BURST; id++) {
+            queue.offer(id, "Med " + id, "1 tab", now);
+        }
+    }
+
+    @Test
+    public void burstSharesOneSession() {
+        burst(T0);
+
+        assertEquals(1, session.starts);
+        assertEquals(BURST, queue.size());
+        assertEquals(1, queue.peek().medicineId);
+    }
+
+    @Test
+    public void eachDoseIsAnsweredOnItsOwn() {
+        burst(T0);
+
+        for (int id = BURST; id > 1; id--) {
+            assertTrue(queue.resolve(id));
+            assertEquals("wake lock must outlive pending doses", 0, session.stops);
+        }
+        assertFalse(queue.resolve(BURST)); // already answered
+        assertTrue(queue.resolve(1));
+
+        assertEquals(1, session.stops);
+        assertTrue(queue.isEmpty());
+        assertTrue(session.autoRepeats.isEmpty());
+    }
+
+    @Test
+    public void unansweredDosesEachGetAnAutoRepeat() {
+        burst(T0);
+        for (int id = 1; id <= 10; id++) {
+            queue.resolve(id);
+        }
+        // A late arrival rings for its own full minute
+        queue.offer(99, "Late", "1 tab", T0 + 30_000);
+
+        assertEquals(T0 + RING_MS, queue.expire(T0 + RING_MS - 1));
+        long next = queue.expire(T0 + RING_MS);
+
+        assertEquals(BURST - 10, session.autoRepeats.size());
+        assertFalse(session.autoRepeats.contains(1));
+        assertEquals(T0 + 30_000 + RING_MS, next);
+        assertEquals(0, session.stops);
+
+        assertEquals(-1, queue.expire(next));
+        assertEquals(1, session.stops);
+        assertTrue(session.autoRepeats.contains(99));
+    }
+
+    @Test
+    public void repeatedDoseRestartsItsRingInsteadOfQueuingTwice() {
+        queue.offer(7, "Med 7", "1 tab", T0);
+        assertFalse(queue.offer(7, "Med 7", "1 tab", T0 + 45_000));
+
+        assertEquals(1, queue.size());
+        assertEquals(T0 + 45_000 + RING_MS, queue.nextDeadline());
+    }
+
+    @Test
+    public void concurrentBurstsKeepOneSession() throws InterruptedException {
+        // 50 alarms arriving at once from different threads, then all answered concurrently
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch offered = new CountDownLatch(BURST);
+        for (int id = 1; id <= BURST; id++) {
+            int medicineId = id;
+            pool.execute(() -> {
+                queue.offer(medicineId, "Med " + medicineId, "1 tab", T0);
+                offered.countDown();
+            });
+        }
+        assertTrue(offered.await(10, TimeUnit.SECONDS));
+        assertEquals(BURST, queue.size());
+        assertEquals(1, session.starts);
+
+        CountDownLatch resolved = new CountDownLatch(BURST);
+        for (int id = 1; id <= BURST; id++) {
+            int medicineId = id;
+            pool.execute(() -> {
+                queue.resolve(medicineId);
+                resolved.countDown();
+            });
+        }
+        assertTrue(resolved.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertTrue(queue.isEmpty());
+        assertEquals(1, session.stops);
+    }
+}
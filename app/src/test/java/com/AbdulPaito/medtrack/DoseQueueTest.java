@@ -0,0 +1,107 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.Medicine;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * DoseQueue ordering, reminder lead time and same-minute coalescing.
+ */
+public class DoseQueueTest {
+
+    private static final ZoneId ZONE = ZoneId.of("UTC");
+
+    private static long at(int hour, int minute) {
+        return LocalDateTime.of(2025, 10, 20, hour, minute).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    private static Medicine medicine(int id, String time) {
+        return new Medicine(id, "Med " + id, "1 tab", "", time, "2025-10-20", "daily", true);
+    }
+
+    @Test
+    public void headIsEarliestReminder() {
+        DoseQueue queue = DoseQueue.build(Arrays.asList(
+                medicine(1, "10:00"), medicine(2, "09:00")), at(8, 0), ZONE);
+
+        assertEquals(4, queue.size());
+        assertEquals(at(8, 55), queue.nextTriggerAt());
+    }
+
+    @Test
+    public void sameMinuteDosesDrainTogether() {
+        DoseQueue queue = DoseQueue.build(Arrays.asList(
+                medicine(1, "09:00"), medicine(2, "09:00"), medicine(3, "12:00")), at(8, 0), ZONE);
+
+        List<DoseEvent> reminders = queue.pollDue(at(8, 55));
+        assertEquals(2, reminders.size());
+        for (DoseEvent event : reminders) {
+            assertEquals(DoseEvent.Kind.REMINDER, event.getKind());
+        }
+
+        List<DoseEvent> doses = queue.pollDue(at(9, 0));
+        assertEquals(2, doses.size());
+        assertEquals(1, doses.get(0).getMedicineId());
+        assertEquals(2, doses.get(1).getMedicineId());
+        assertEquals(at(11, 55), queue.nextTriggerAt());
+    }
+
+    @Test
+    public void reminderSkippedWhenDoseIsImminent() {
+        DoseQueue queue = DoseQueue.build(Arrays.asList(medicine(1, "09:03")), at(9, 0), ZONE);
+
+        assertEquals(1, queue.size());
+        assertEquals(at(9, 3), queue.nextTriggerAt());
+    }
+
+    @Test
+    public void pastTimeRollsToTomorrow() {
+        DoseQueue queue = DoseQueue.build(Arrays.asList(medicine(1, "09:00")), at(9, 0), ZONE);
+
+        long day = 24 * 60 * 60 * 1000L;
+        assertEquals(at(8, 55) + day, queue.nextTriggerAt());
+        assertTrue(queue.pollDue(at(9, 0)).isEmpty());
+    }
+
+    @Test
+    public void inactiveAndMalformedAreIgnored() {
+        Medicine paused = medicine(1, "09:00");
+        paused.setActive(false);
+        DoseQueue queue = DoseQueue.build(Arrays.asList(paused, medicine(2, "nine")), at(8, 0), ZONE);
+
+        assertTrue(queue.isEmpty());
+        assertEquals(-1, queue.nextTriggerAt());
+    }
+
+    @Test
+    public void lateBatchStillFindsItsDoses() {
+        List<Medicine> medicines = Arrays.asList(medicine(1, "09:00"));
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(at(9, 10)), ZONE);
+
+        DoseQueue.Batch batch = DoseQueue.fire(medicines, at(9, 0), clock);
+        assertEquals(1, batch.due.size());
+        assertEquals(DoseEvent.Kind.DOSE, batch.due.get(0).getKind());
+    }
+
+    @Test
+    public void forgedTriggerTimeCannotReachBackPastTheLateWindow() {
+        // Doses at 06:00 and 09:00; a batch claiming to be armed at the epoch fires at 09:00
+        List<Medicine> medicines = Arrays.asList(medicine(1, "06:00"), medicine(2, "09:00"));
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(at(9, 0)), ZONE);
+
+        DoseQueue.Batch batch = DoseQueue.fire(medicines, 1, clock);
+        for (DoseEvent event : batch.due) {
+            assertEquals(2, event.getMedicineId());
+        }
+        assertFalse(batch.due.isEmpty());
+    }
+}
@@ -0,0 +1,181 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.Medicine;
+
+import org.junit.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the batch alarm loop (arm the queue head, fire it, re-arm) against a simulated clock
+ * for months at a time, across DST transitions and time zone changes.
+ */
+public class DoseScheduleSimulationTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+    private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+    /** Clock the test moves by hand; the zone can change mid-run like a traveller's phone. */
+    private static final class SimulatedClock extends Clock {
+        long millis;
+        ZoneId zone;
+
+        SimulatedClock(long millis, ZoneId zone) {
+            this.millis = millis;
+            this.zone = zone;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return new SimulatedClock(millis, zone);
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    private static Medicine medicine(int id, String time, String frequency) {
+        return new Medicine(id, "Med " + id, "1 tab", "", time, "2025-01-01", frequency, true);
+    }
+
+    private static long at(LocalDateTime local, ZoneId zone) {
+        return local.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    /** Fire the batch alarm until {@code endMillis}, returning every dose delivered. */
+    private static List<DoseEvent> run(List<Medicine> medicines, SimulatedClock clock, long endMillis,
+                                       long deliveryDelayMs) {
+        List<DoseEvent> delivered = new ArrayList<>();
+        long triggerAt = DoseQueue.build(medicines, clock).nextTriggerAt();
+        while (triggerAt >= 0 && triggerAt <= endMillis) {
+            assertTrue("alarm must move forward", triggerAt >= clock.millis());
+            clock.millis = triggerAt + deliveryDelayMs;
+            DoseQueue.Batch batch = DoseQueue.fire(medicines, triggerAt, clock);
+            assertFalse("an armed alarm always has something due", batch.due.isEmpty());
+            for (DoseEvent event : batch.due) {
+                if (event.getKind() == DoseEvent.Kind.DOSE) delivered.add(event);
+            }
+            triggerAt = batch.upcoming.nextTriggerAt();
+        }
+        return delivered;
+    }
+
+    private static Map<LocalDate, Integer> dosesPerDay(List<DoseEvent> doses, int medicineId, ZoneId zone) {
+        Map<LocalDate, Integer> perDay = new HashMap<>();
+        for (DoseEvent dose : doses) {
+            if (dose.getMedicineId() != medicineId) continue;
+            LocalDate day = Instant.ofEpochMilli(dose.getTriggerAt()).atZone(zone).toLocalDate();
+            perDay.merge(day, 1, Integer::sum);
+        }
+        return perDay;
+    }
+
+    @Test
+    public void yearAcrossDstKeepsWallClockTimes() {
+        List<Medicine> medicines = Arrays.asList(
+                medicine(1, "09:00", "Twice daily"),
+                medicine(2, "02:30", "Daily"),          // skipped hour in March, repeated hour in October
+                medicine(3, "21:15", "Every other day"));
+        long start = at(LocalDateTime.of(2025, 1, 1, 0, 0), BERLIN);
+        long end = at(LocalDateTime.of(2026, 1, 1, 0, 0), BERLIN);
+        SimulatedClock clock = new SimulatedClock(start, BERLIN);
+
+        List<DoseEvent> doses = run(medicines, clock, end, 0);
+
+        Map<LocalDate, Integer> twiceDaily = dosesPerDay(doses, 1, BERLIN);
+        Map<LocalDate, Integer> nightly = dosesPerDay(doses, 2, BERLIN);
+        Map<LocalDate, Integer> alternate = dosesPerDay(doses, 3, BERLIN);
+        assertEquals(365, twiceDaily.size());
+        assertEquals(365, nightly.size());
+        assertEquals(183, alternate.size());
+        for (int count : nightly.values()) assertEquals("no double dose in the repeated hour", 1, count);
+        for (int count : twiceDaily.values()) assertEquals(2, count);
+
+        for (DoseEvent dose : doses) {
+            LocalTime local = Instant.ofEpochMilli(dose.getTriggerAt()).atZone(BERLIN).toLocalTime();
+            LocalDate day = Instant.ofEpochMilli(dose.getTriggerAt()).atZone(BERLIN).toLocalDate();
+            switch (dose.getMedicineId()) {
+                case 1:
+                    assertTrue(local + " on " + day, local.equals(LocalTime.of(9, 0)) || local.equals(LocalTime.of(21, 0)));
+                    break;
+                case 2:
+                    // 02:30 doesn't exist on 2025-03-30 and shifts to 03:30
+                    LocalTime expected = day.equals(LocalDate.of(2025, 3, 30)) ? LocalTime.of(3, 30) : LocalTime.of(2, 30);
+                    assertEquals("nightly dose on " + day, expected, local);
+                    break;
+                default:
+                    assertEquals(LocalTime.of(21, 15), local);
+            }
+        }
+    }
+
+    @Test
+    public void fallBackOverlapFiresOnceAtEarlierOffset() {
+        Medicine nightly = medicine(1, "02:30", "Daily");
+        long start = at(LocalDateTime.of(2025, 10, 25, 12, 0), BERLIN);
+        SimulatedClock clock = new SimulatedClock(start, BERLIN);
+
+        List<DoseEvent> doses = run(Arrays.asList(nightly), clock, start + 2 * 24 * 3_600_000L, 0);
+
+        assertEquals(2, doses.size());
+        ZonedDateTime first = Instant.ofEpochMilli(doses.get(0).getTriggerAt()).atZone(BERLIN);
+        assertEquals(LocalDateTime.of(2025, 10, 26, 2, 30), first.toLocalDateTime());
+        assertEquals(2 * 3600, first.getOffset().getTotalSeconds()); // CEST, the first 02:30
+        assertEquals(at(LocalDateTime.of(2025, 10, 27, 2, 30), BERLIN), doses.get(1).getTriggerAt());
+    }
+
+    @Test
+    public void travellerGetsDosesAtLocalTimeInNewZone() {
+        Medicine morning = medicine(1, "08:00", "Daily");
+        long start = at(LocalDateTime.of(2025, 6, 1, 12, 0), BERLIN);
+        SimulatedClock clock = new SimulatedClock(start, BERLIN);
+
+        List<DoseEvent> doses = new ArrayList<>(run(Arrays.asList(morning), clock,
+                at(LocalDateTime.of(2025, 6, 10, 12, 0), BERLIN), 0));
+        // Fly to New York: TIMEZONE_CHANGED re-plans from the same instant in the new zone
+        long landed = at(LocalDateTime.of(2025, 6, 10, 12, 0), BERLIN);
+        clock.millis = landed;
+        clock.zone = NEW_YORK;
+        doses.addAll(run(Arrays.asList(morning), clock, at(LocalDateTime.of(2025, 6, 20, 12, 0), NEW_YORK), 0));
+
+        assertEquals(20, doses.size());
+        for (DoseEvent dose : doses) {
+            ZoneId zone = dose.getTriggerAt() < landed ? BERLIN : NEW_YORK;
+            assertEquals(LocalTime.of(8, 0), Instant.ofEpochMilli(dose.getTriggerAt()).atZone(zone).toLocalTime());
+        }
+        assertEquals(at(LocalDateTime.of(2025, 6, 10, 8, 0), NEW_YORK), doses.get(9).getTriggerAt());
+    }
+
+    @Test
+    public void lateDeliveryStillDeliversEveryDose() {
+        List<Medicine> medicines = Arrays.asList(medicine(1, "09:00", "Daily"), medicine(2, "09:00", "Daily"));
+        long start = at(LocalDateTime.of(2025, 3, 1, 0, 0), BERLIN);
+        SimulatedClock clock = new SimulatedClock(start, BERLIN);
+
+        // Doze can hold an alarm back; two minutes late must not lose or repeat a dose
+        List<DoseEvent> doses = run(medicines, clock, at(LocalDateTime.of(2025, 5, 1, 0, 0), BERLIN), 2 * 60 * 1000L);
+
+        assertEquals(61, dosesPerDay(doses, 1, BERLIN).size());
+        assertEquals(2 * 61, doses.size());
+    }
+}
@@ -0,0 +1,79 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.ReceiverLatency;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Bucketing and percentiles of the per-receiver latency histogram.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsArePowersOfTwo() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(0, LatencyHistogram.bucket(1));
+        assertEquals(1, LatencyHistogram.bucket(2));
+        assertEquals(2, LatencyHistogram.bucket(3));
+        assertEquals(2, LatencyHistogram.bucket(4));
+        assertEquals(3, LatencyHistogram.bucket(5));
+        assertEquals(14, LatencyHistogram.bucket(16_384));
+        assertEquals(15, LatencyHistogram.bucket(16_385));
+        assertEquals(15, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesReportBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(6);      // ≤8 ms
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(100);    // ≤128 ms
+        }
+        histogram.record(3_000);      // ≤4096 ms
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(8, histogram.percentile(0.5));
+        assertEquals(8, histogram.percentile(0.9));
+        assertEquals(128, histogram.percentile(0.99));
+        assertEquals(4096, histogram.percentile(1.0));
+        assertEquals(3_000, histogram.getMax());
+    }
+
+    @Test
+    public void timeoutsAreCountedAndRecorded() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(20);
+        histogram.recordTimeout(AsyncReceiver.DEADLINE_MS);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(1, histogram.getTimeouts());
+        assertEquals("n=2 p50≤32ms p90≤8192ms p99≤8192ms max=8000ms timeouts=1", histogram.toString());
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.99));
+        assertEquals(0, histogram.getMax());
+    }
+
+    @Test
+    public void reportMergesDaysPerReceiver() {
+        String report = LatencyHistogram.formatReport(Arrays.asList(
+                new ReceiverLatency("2025-10-20", "AlarmReceiver", 3, 9, 0, 7),
+                new ReceiverLatency("2025-10-21", "AlarmReceiver", 3, 90, 0, 8),
+                new ReceiverLatency("2025-10-21", "AlarmReceiver", 13, 1, 1, 8_000),
+                new ReceiverLatency("2025-10-21", "BootReceiver", 6, 2, 0, 40)));
+
+        assertEquals("• AlarmReceiver: n=100 p50≤8ms p90≤8ms p99≤8ms max=8000ms timeouts=1\n"
+                + "• BootReceiver: n=2 p50≤64ms p90≤64ms p99≤64ms max=40ms\n", report);
+        assertEquals("• No broadcasts recorded\n", LatencyHistogram.formatReport(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,81 @@
+package com.AbdulPaito.medtrack;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Alert-window and de-duplication rules of the grouped dose notification.
+ */
+public class NotificationAggregatorTest {
+
+    private static final long WINDOW = NotificationAggregator.DEFAULT_WINDOW_MS;
+    private static final long NOW = 1_760_950_800_000L;
+
+    private static DoseEvent dose(int id) {
+        return new DoseEvent(id, "Med " + id, "1 tab", NOW, DoseEvent.Kind.DOSE);
+    }
+
+    @Test
+    public void firstPostOpensGroupAndAlerts() {
+        NotificationAggregator.Plan plan = NotificationAggregator.plan(
+                Collections.emptyList(), 0, Arrays.asList(dose(1), dose(2), dose(3)), NOW, WINDOW);
+
+        assertTrue(plan.alert);
+        assertEquals(3, plan.added.size());
+        assertEquals(3, plan.groupSize);
+    }
+
+    @Test
+    public void dosesInsideWindowJoinSilently() {
+        NotificationAggregator.Plan plan = NotificationAggregator.plan(
+                Arrays.asList(1, 2), NOW - 20_000, Collections.singletonList(dose(3)), NOW, WINDOW);
+
+        assertFalse(plan.alert);
+        assertEquals(1, plan.added.size());
+        assertEquals(3, plan.groupSize);
+    }
+
+    @Test
+    public void repeatOfShowingDoseAlertsAfterWindowWithoutDuplicate() {
+        // Auto-repeat of an unanswered dose: nothing new to show, but it rings again
+        NotificationAggregator.Plan plan = NotificationAggregator.plan(
+                Arrays.asList(1, 2), NOW - 5 * 60_000, Collections.singletonList(dose(1)), NOW, WINDOW);
+
+        assertTrue(plan.alert);
+        assertTrue(plan.added.isEmpty());
+        assertEquals(2, plan.groupSize);
+    }
+
+    @Test
+    public void burstIsOneAlert() {
+        // 20 medicines at the same minute delivered as separate broadcasts a second apart
+        List<Integer> active = new java.util.ArrayList<>();
+        long alertedAt = 0;
+        int alerts = 0;
+        for (int id = 1; id <= 20; id++) {
+            long now = NOW + id * 1000L;
+            NotificationAggregator.Plan plan = NotificationAggregator.plan(
+                    active, alertedAt, Arrays.asList(dose(id), dose(id)), now, WINDOW);
+            assertEquals(1, plan.added.size());
+            if (plan.alert) {
+                alerts++;
+                alertedAt = now;
+            }
+            active.add(id);
+        }
+        assertEquals(1, alerts);
+    }
+
+    @Test
+    public void zeroWindowAlertsEveryPost() {
+        NotificationAggregator.Plan plan = NotificationAggregator.plan(
+                Collections.singletonList(1), NOW, Collections.singletonList(dose(2)), NOW, 0);
+
+        assertTrue(plan.alert);
+    }
+}
@@ -0,0 +1,166 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.Medicine;
+import com.AbdulPaito.medtrack.database.Recurrence;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * TimeUtils parsing/formatting, checked against the per-call SimpleDateFormat path it replaced,
+ * plus allocation microbenchmarks of both paths. The benchmarks only log their numbers: allocation
+ * counts vary by JDK, so they are a measurement, not a pass/fail gate.
+ */
+public class TimeUtilsTest {
+
+    private static final Logger LOG = Logger.getLogger("TimeUtilsTest");
+    private static final int ITERATIONS = 20_000;
+
+    private Locale previousLocale;
+
+    @Before
+    public void setUp() {
+        previousLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(previousLocale);
+    }
+
+    @Test
+    public void parsesStoredReminderTimes() {
+        assertEquals(LocalTime.of(9, 5), TimeUtils.parseReminderTime("09:05"));
+        assertEquals(LocalTime.of(9, 5), TimeUtils.parseReminderTime("9:05"));
+        assertEquals(LocalTime.of(23, 59), TimeUtils.parseReminderTime("23:59"));
+        assertNull(TimeUtils.parseReminderTime("24:00"));
+        assertNull(TimeUtils.parseReminderTime("6:19 PM"));
+        assertNull(TimeUtils.parseReminderTime("9:5"));
+        assertNull(TimeUtils.parseReminderTime(""));
+        assertNull(TimeUtils.parseReminderTime(null));
+    }
+
+    @Test
+    public void formatsTwelveHourTime() {
+        assertEquals("12:00 AM", TimeUtils.formatTime12h("00:00"));
+        assertEquals("6:19 PM", TimeUtils.formatTime12h("18:19"));
+        assertEquals("6:19 PM", TimeUtils.formatTime12h("6:19 PM")); // already formatted history rows
+    }
+
+    @Test
+    public void medicineCachesParsedReminderTime() {
+        Medicine medicine = new Medicine(1, "Med", "1 tab", "", "08:30", "2025-10-20", "daily", true);
+        LocalTime first = medicine.getReminderLocalTime();
+        assertEquals(LocalTime.of(8, 30), first);
+        assertSame(first, medicine.getReminderLocalTime());
+
+        medicine.setReminderTime("20:15");
+        assertEquals(LocalTime.of(20, 15), medicine.getReminderLocalTime());
+    }
+
+    @Test
+    public void formatsLikeTheOldSimpleDateFormatPath() {
+        // Every minute of the day, as MedicineAdapter and HistoryAdapter bind it
+        for (int minute = 0; minute < 24 * 60; minute++) {
+            String stored = String.format(Locale.US, "%02d:%02d", minute / 60, minute % 60);
+            Medicine medicine = new Medicine(1, "Med", "1 tab", "", stored, "2025-10-20", "daily", true);
+            assertEquals(stored, legacyFormatTo12Hour(stored),
+                    TimeUtils.formatTime12h(medicine.getReminderLocalTime()));
+        }
+    }
+
+    @Test
+    public void bindAllocationBenchmark() {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        Medicine medicine = new Medicine(1, "Med", "1 tab", "", "18:19", "2025-10-20", "daily", true);
+        long takenAt = 1_760_984_340_000L;
+        String[] sink = new String[2];
+
+        // MedicineAdapter's time and HistoryAdapter's time and date, before and after TimeUtils
+        Runnable legacy = () -> {
+            sink[0] = legacyFormatTo12Hour(medicine.getReminderTime());
+            sink[1] = new java.text.SimpleDateFormat("MMM dd, yyyy", Locale.getDefault())
+                    .format(new java.util.Date(takenAt));
+        };
+        Runnable cached = () -> {
+            LocalTime time = medicine.getReminderLocalTime();
+            sink[0] = time != null ? TimeUtils.formatTime12h(time) : medicine.getReminderTime();
+            sink[1] = TimeUtils.formatDisplayDate(takenAt);
+        };
+
+        LOG.info("bind: " + bytesPerCall(threads, legacy) + " -> " + bytesPerCall(threads, cached) + " bytes/row");
+    }
+
+    @Test
+    public void scheduleAllocationBenchmark() {
+        com.sun.management.ThreadMXBean threads = allocationCounter();
+        long now = 1_760_984_000_000L;
+        ZoneId zone = ZoneId.systemDefault();
+        Medicine medicine = new Medicine(1, "Med", "1 tab", "", "18:19", "2025-10-20", "daily", true);
+        // DatabaseHelper parses the stored recurrence once, when the row is loaded
+        medicine.setRecurrence(Recurrence.fromFrequency("daily", "18:19", "2025-10-20"));
+        String[] sink = new String[1];
+
+        // What scheduling used to do per call: split the time, build a Calendar and a
+        // SimpleDateFormat, and format the current and alarm timestamps for the debug log
+        Runnable legacy = () -> {
+            String[] parts = medicine.getReminderTime().split(":");
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(parts[0]));
+            calendar.set(Calendar.MINUTE, Integer.parseInt(parts[1]));
+            java.text.SimpleDateFormat sdf = new java.text.SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.getDefault());
+            sink[0] = sdf.format(new java.util.Date(now)) + sdf.format(new java.util.Date(calendar.getTimeInMillis()));
+        };
+        // scheduleMedicineAlarm now: find the next dose from the loaded Recurrence and format
+        // both debug timestamps through the cached formatter
+        Runnable cached = () -> {
+            Recurrence recurrence = medicine.getRecurrence();
+            long alarmTime = recurrence.nextAfter(now, zone);
+            sink[0] = TimeUtils.formatLogTimestamp(now) + TimeUtils.formatLogTimestamp(alarmTime);
+        };
+
+        LOG.info("schedule: " + bytesPerCall(threads, legacy) + " -> " + bytesPerCall(threads, cached) + " bytes/call");
+    }
+
+    // HistoryAdapter.formatTo12Hour before TimeUtils
+    private static String legacyFormatTo12Hour(String time) {
+        try {
+            java.text.SimpleDateFormat inputFormat = new java.text.SimpleDateFormat("HH:mm", Locale.getDefault());
+            java.text.SimpleDateFormat outputFormat = new java.text.SimpleDateFormat("h:mm a", Locale.getDefault());
+            return outputFormat.format(inputFormat.parse(time));
+        } catch (java.text.ParseException e) {
+            return time;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue("per-thread allocation counters unavailable",
+                bean instanceof com.sun.management.ThreadMXBean
+                        && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported());
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    private static long bytesPerCall(com.sun.management.ThreadMXBean threads, Runnable call) {
+        for (int i = 0; i < ITERATIONS; i++) call.run(); // warm up
+        long threadId = Thread.currentThread().getId();
+        long start = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) call.run();
+        return (threads.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+    }
+}
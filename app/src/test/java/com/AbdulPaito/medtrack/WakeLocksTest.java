@@ -0,0 +1,76 @@
+package com.AbdulPaito.medtrack;
+
+import com.AbdulPaito.medtrack.database.WakeLockUsage;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Per-day accounting of wake-lock hold time and the battery section of the report.
+ */
+public class WakeLocksTest {
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    private static long at(int year, int month, int day, int hour, int minute) {
+        return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, BERLIN).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void holdWithinOneDayIsBookedOnce() {
+        long from = at(2025, 6, 10, 8, 0);
+        Map<LocalDate, Long> byDay = WakeLocks.holdByDay(from, from + 65_000, BERLIN);
+
+        assertEquals(1, byDay.size());
+        assertEquals(65_000L, (long) byDay.get(LocalDate.of(2025, 6, 10)));
+    }
+
+    @Test
+    public void holdAcrossMidnightIsSplit() {
+        long from = at(2025, 6, 10, 23, 59);
+        Map<LocalDate, Long> byDay = WakeLocks.holdByDay(from, from + 120_000, BERLIN);
+
+        assertEquals(60_000L, (long) byDay.get(LocalDate.of(2025, 6, 10)));
+        assertEquals(60_000L, (long) byDay.get(LocalDate.of(2025, 6, 11)));
+    }
+
+    @Test
+    public void daylightSavingDayIsTwentyThreeHours() {
+        // Held the whole of spring-forward Sunday (a 23 hour day)
+        long from = at(2025, 3, 30, 0, 0);
+        long until = at(2025, 3, 31, 0, 0);
+        Map<LocalDate, Long> byDay = WakeLocks.holdByDay(from, until, BERLIN);
+
+        assertEquals(1, byDay.size());
+        assertEquals(23 * 3_600_000L, (long) byDay.get(LocalDate.of(2025, 3, 30)));
+    }
+
+    @Test
+    public void nothingHeldBooksNothing() {
+        long from = at(2025, 6, 10, 8, 0);
+        assertTrue(WakeLocks.holdByDay(from, from, BERLIN).isEmpty());
+    }
+
+    @Test
+    public void reportTotalsEachDay() {
+        String report = WakeLocks.formatReport(Arrays.asList(
+                new WakeLockUsage("2025-06-11", "ALARM_SERVICE", 125_000, 2),
+                new WakeLockUsage("2025-06-11", "ALARM_RECEIVER", 5_000, 1),
+                new WakeLockUsage("2025-06-10", "REMINDER_RECEIVER", 3_000, 1)));
+
+        assertEquals("• 2025-06-11: 2m 10s\n"
+                + "   - ALARM_SERVICE: 2m 05s (2x)\n"
+                + "   - ALARM_RECEIVER: 5s (1x)\n"
+                + "• 2025-06-10: 3s\n"
+                + "   - REMINDER_RECEIVER: 3s (1x)\n", report);
+        assertEquals("• No wake locks held\n", WakeLocks.formatReport(Collections.emptyList()));
+    }
+}
@@ -0,0 +1,162 @@
+package com.AbdulPaito.medtrack.database;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round trip and corruption handling of the binary backup format.
+ */
+public class BackupCodecTest {
+
+    private static final String[] MEDICINE_COLUMNS = {"id", "medicine_name", "instructions", "is_active"};
+    private static final String[] HISTORY_COLUMNS = {"history_id", "status", "taken_at", "medicine_id"};
+
+    private static final Object[][] MEDICINES = {
+            {1L, "Paracetamol", "After food", 1L},
+            {2L, "Ibuprofène 💊", null, 0L},
+            {7L, "", "Line\nbreak \"quoted\"", 1L},
+    };
+
+    private static Object[][] history(int rows) {
+        Object[][] history = new Object[rows][];
+        long takenAt = 1_735_718_400_000L;
+        for (int i = 0; i < rows; i++) {
+            takenAt += i % 3 == 0 ? 3_600_000L : 43_200_000L;
+            history[i] = new Object[]{(long) i + 1, i % 10 == 3 ? "Missed" : "Taken", takenAt,
+                    i % 4 == 0 ? null : (long) (i % 3) + 1};
+        }
+        return history;
+    }
+
+    private static byte[] encode(Object[][] history) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BackupCodec.Writer writer = new BackupCodec.Writer(out);
+        writeTable(writer, "medicines", MEDICINE_COLUMNS, MEDICINES);
+        writeTable(writer, "history", HISTORY_COLUMNS, history);
+        writer.finish();
+        return out.toByteArray();
+    }
+
+    private static void writeTable(BackupCodec.Writer writer, String name, String[] columns,
+                                   Object[][] rows) throws IOException {
+        writer.beginTable(name, columns, rows.length);
+        for (Object[] row : rows) {
+            for (Object value : row) {
+                if (value instanceof Long) {
+                    writer.writeLong((Long) value);
+                } else {
+                    writer.writeText((String) value);
+                }
+            }
+        }
+    }
+
+    private static List<Object[]> readTable(BackupCodec.Reader reader, String name, String[] columns)
+            throws IOException {
+        assertEquals(name, reader.nextTable());
+        assertArrayEquals(columns, reader.columns());
+        List<Object[]> rows = new ArrayList<>();
+        Object[] row;
+        while ((row = reader.nextRow()) != null) {
+            rows.add(row.clone());
+        }
+        return rows;
+    }
+
+    @Test
+    public void roundTripKeepsEveryValue() throws IOException {
+        Object[][] history = history(5_000);
+        BackupCodec.Reader reader = new BackupCodec.Reader(new ByteArrayInputStream(encode(history)));
+
+        List<Object[]> medicines = readTable(reader, "medicines", MEDICINE_COLUMNS);
+        List<Object[]> restored = readTable(reader, "history", HISTORY_COLUMNS);
+        assertNull(reader.nextTable()); // checksum verified here
+
+        assertEquals(MEDICINES.length, medicines.size());
+        for (int i = 0; i < MEDICINES.length; i++) {
+            assertArrayEquals(MEDICINES[i], medicines.get(i));
+        }
+        assertEquals(history.length, restored.size());
+        for (int i = 0; i < history.length; i++) {
+            assertArrayEquals("row " + i, history[i], restored.get(i));
+        }
+    }
+
+    @Test
+    public void extremeIntegersSurviveDeltaEncoding() throws IOException {
+        long[] values = {0, Long.MAX_VALUE, Long.MIN_VALUE, -1, 1, Long.MIN_VALUE, 42};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BackupCodec.Writer writer = new BackupCodec.Writer(out);
+        writer.beginTable("t", new String[]{"v"}, values.length);
+        for (long value : values) {
+            writer.writeLong(value);
+        }
+        writer.finish();
+
+        BackupCodec.Reader reader = new BackupCodec.Reader(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals("t", reader.nextTable());
+        for (long value : values) {
+            assertEquals(value, reader.nextRow()[0]);
+        }
+        assertNull(reader.nextTable());
+    }
+
+    @Test
+    public void unreadRowsAreSkipped() throws IOException {
+        BackupCodec.Reader reader = new BackupCodec.Reader(new ByteArrayInputStream(encode(history(100))));
+        assertEquals("medicines", reader.nextTable());
+        assertEquals("history", reader.nextTable());
+        assertEquals(100, reader.rowsLeft());
+        assertNull(reader.nextTable());
+    }
+
+    @Test
+    public void binaryIsMuchSmallerThanRowCountSuggests() throws IOException {
+        // 5k rows of 4 columns: deltas + deflate should land well under 4 bytes a row
+        byte[] bytes = encode(history(5_000));
+        assertTrue("binary backup is " + bytes.length + " bytes", bytes.length < 5_000 * 4);
+    }
+
+    @Test(expected = IOException.class)
+    public void flippedBitFailsChecksumOrInflate() throws IOException {
+        byte[] bytes = encode(history(1_000));
+        bytes[bytes.length / 2] ^= 0x10;
+        drain(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFileIsRejected() throws IOException {
+        byte[] bytes = encode(history(1_000));
+        drain(Arrays.copyOf(bytes, bytes.length - 8));
+    }
+
+    @Test(expected = IOException.class)
+    public void newerVersionIsRejected() throws IOException {
+        byte[] bytes = encode(history(1));
+        bytes[4] = (byte) (BackupCodec.VERSION + 1);
+        new BackupCodec.Reader(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void sniffsJsonVersusBinary() throws IOException {
+        byte[] binary = encode(history(1));
+        assertTrue(BackupCodec.isBinaryBackup(binary, binary.length));
+        byte[] json = "{\"medicines\": []}".getBytes("UTF-8");
+        assertFalse(BackupCodec.isBinaryBackup(json, json.length));
+    }
+
+    private static void drain(byte[] bytes) throws IOException {
+        BackupCodec.Reader reader = new BackupCodec.Reader(new ByteArrayInputStream(bytes));
+        while (reader.nextTable() != null) {
+            // nextTable() skips the rows
+        }
+    }
+}
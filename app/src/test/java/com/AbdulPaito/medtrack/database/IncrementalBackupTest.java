@@ -0,0 +1,114 @@
+package com.AbdulPaito.medtrack.database;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Watermarks of incremental backup segments and the chain checks done before a restore.
+ */
+public class IncrementalBackupTest {
+
+    @Test
+    public void deltaStartsAtPreviousWatermark() {
+        BackupSegment base = BackupSegment.base(1, 500, 0);
+        BackupSegment delta = base.next(1, 524, 0);
+
+        assertTrue(base.isBase());
+        assertEquals(0, base.getAfterHistoryId());
+        assertEquals(500, base.getUpToHistoryId());
+        assertEquals(1, delta.getSequence());
+        assertEquals(base.getChain(), delta.getChain());
+        assertEquals(500, delta.getAfterHistoryId());
+        assertEquals(524, delta.getUpToHistoryId());
+        assertEquals(1, delta.getHistoryFloor());
+    }
+
+    @Test
+    public void clearedHistoryMovesFloorPastWatermark() {
+        BackupSegment base = BackupSegment.base(1, 500, 0);
+
+        // "Delete all history", nothing added since: MIN/MAX read as 0
+        BackupSegment empty = base.next(0, 0, 0);
+        assertEquals(500, empty.getUpToHistoryId());
+        assertEquals(501, empty.getHistoryFloor());
+
+        // ...then three new doses; AUTOINCREMENT carries on after 500
+        BackupSegment refilled = empty.next(501, 503, 0);
+        assertEquals(500, refilled.getAfterHistoryId());
+        assertEquals(503, refilled.getUpToHistoryId());
+        assertEquals(501, refilled.getHistoryFloor());
+    }
+
+    @Test
+    public void chainInAnyOrderIsAccepted() throws IOException {
+        List<BackupSegment> segments = chain(4);
+        List<IncrementalBackup.Entry> entries = entries(segments.get(2), segments.get(0),
+                segments.get(3), segments.get(1));
+        entries.sort((a, b) -> Integer.compare(a.segment.getSequence(), b.segment.getSequence()));
+        IncrementalBackup.checkChain(entries);
+        assertSame(segments.get(0), entries.get(0).segment);
+    }
+
+    @Test
+    public void leadingPartOfChainIsAccepted() throws IOException {
+        // Restoring to an earlier point just leaves the newer deltas out
+        List<BackupSegment> segments = chain(4);
+        IncrementalBackup.checkChain(entries(segments.get(0), segments.get(1)));
+    }
+
+    @Test
+    public void missingDeltaIsRejected() {
+        List<BackupSegment> segments = chain(4);
+        assertRejected("Incremental backup #2 is missing",
+                entries(segments.get(0), segments.get(1), segments.get(3)));
+    }
+
+    @Test
+    public void missingBaseIsRejected() {
+        List<BackupSegment> segments = chain(3);
+        assertRejected("The base backup of this chain is missing",
+                entries(segments.get(1), segments.get(2)));
+    }
+
+    @Test
+    public void mixedChainsAreRejected() {
+        List<BackupSegment> one = chain(2);
+        List<BackupSegment> other = chain(2);
+        assertRejected("These backups come from different chains",
+                entries(one.get(0), other.get(1)));
+    }
+
+    private static List<BackupSegment> chain(int length) {
+        List<BackupSegment> segments = new ArrayList<>();
+        BackupSegment segment = BackupSegment.base(1, 100, 0);
+        segments.add(segment);
+        for (int i = 1; i < length; i++) {
+            segment = segment.next(1, 100 + i * 24, 0);
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private static List<IncrementalBackup.Entry> entries(BackupSegment... segments) {
+        List<IncrementalBackup.Entry> entries = new ArrayList<>();
+        for (BackupSegment segment : Arrays.asList(segments)) {
+            entries.add(new IncrementalBackup.Entry(null, segment));
+        }
+        return entries;
+    }
+
+    private static void assertRejected(String message, List<IncrementalBackup.Entry> entries) {
+        try {
+            IncrementalBackup.checkChain(entries);
+            fail("accepted " + entries.size() + " segment(s)");
+        } catch (IOException expected) {
+            assertEquals(message, expected.getMessage());
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.AbdulPaito.medtrack.database;
+
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recurrence parsing, spec round trips and lazy occurrence expansion.
+ */
+public class RecurrenceTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Berlin");
+
+    private static long at(int month, int day, int hour, int minute) {
+        return LocalDateTime.of(2025, month, day, hour, minute).atZone(ZONE).toInstant().toEpochMilli();
+    }
+
+    @Test
+    public void legacyFrequenciesAreStructured() {
+        Recurrence daily = Recurrence.fromFrequency("Daily", "09:30", "10/20/2025");
+        assertEquals("every=1;times=09:30;start=2025-10-20", daily.toSpec());
+
+        Recurrence twice = Recurrence.fromFrequency("Every 12 hours", "08:00", "10/20/2025");
+        assertEquals(2, twice.getDosesPerDay());
+        assertEquals(LocalTime.of(20, 0), twice.getTimesOfDay()[1]);
+
+        Recurrence course = Recurrence.fromFrequency("3 times a day for 5 days", "07:00", "2025-10-20");
+        assertEquals(3, course.getDosesPerDay());
+        assertEquals(5, course.getCourseDays());
+
+        assertEquals(2, Recurrence.fromFrequency("every other day", "09:00", null).getIntervalDays());
+        assertEquals(0x1F, Recurrence.fromFrequency("Weekdays only", "09:00", null).getWeekdayMask());
+        assertEquals(1, Recurrence.fromFrequency("whenever", "09:00", null).getIntervalDays());
+        assertNull(Recurrence.fromFrequency("Daily", "soon", null));
+    }
+
+    @Test
+    public void specRoundTrips() {
+        Recurrence recurrence = new Recurrence(2, new LocalTime[]{LocalTime.of(21, 0), LocalTime.of(9, 0)},
+                0x15, LocalDate.of(2025, 10, 20), LocalDate.of(2025, 12, 31), 14);
+        Recurrence parsed = Recurrence.fromSpec(recurrence.toSpec());
+
+        assertEquals("every=2;times=09:00,21:00;days=MO,WE,FR;start=2025-10-20;end=2025-12-31;course=14",
+                recurrence.toSpec());
+        assertEquals(recurrence, parsed);
+        assertNull(Recurrence.fromSpec("every=1"));
+        assertNull(Recurrence.fromSpec(null));
+    }
+
+    @Test
+    public void hourIntervalsOfWholeDaysBecomeDayIntervals() {
+        Recurrence everyTwoDays = Recurrence.fromFrequency("Every 48 hours", "08:00", "10/20/2025");
+        assertEquals(2, everyTwoDays.getIntervalDays());
+        assertEquals(1, everyTwoDays.getDosesPerDay());
+        assertEquals(3, Recurrence.fromFrequency("every 72 hours", "08:00", null).getIntervalDays());
+        assertEquals(1, Recurrence.fromFrequency("Every 24 hours", "08:00", null).getIntervalDays());
+
+        Recurrence.Occurrences doses = everyTwoDays.occurrencesAfter(at(10, 20, 9, 0), ZONE);
+        assertEquals(at(10, 22, 8, 0), doses.next());
+        assertEquals(at(10, 24, 8, 0), doses.next());
+    }
+
+    @Test
+    public void expandsAcrossDaysLazily() {
+        Recurrence recurrence = Recurrence.fromFrequency("Every 12 hours", "08:00", "10/20/2025");
+        Recurrence.Occurrences doses = recurrence.occurrencesAfter(at(10, 20, 12, 0), ZONE);
+
+        assertEquals(at(10, 20, 20, 0), doses.next());
+        assertEquals(at(10, 21, 8, 0), doses.next());
+        assertEquals(at(10, 21, 20, 0), doses.next());
+    }
+
+    @Test
+    public void startDateAndCourseBoundTheSchedule() {
+        Recurrence recurrence = Recurrence.fromFrequency("Daily for 2 days", "09:00", "10/22/2025");
+        Recurrence.Occurrences doses = recurrence.occurrencesAfter(at(10, 20, 0, 0), ZONE);
+
+        assertEquals(at(10, 22, 9, 0), doses.next());
+        assertEquals(at(10, 23, 9, 0), doses.next());
+        assertEquals(-1, doses.next());
+        assertFalse(recurrence.isScheduledOn(LocalDate.of(2025, 10, 24)));
+    }
+
+    @Test
+    public void weekdaysSkipWeekend() {
+        // 2025-10-24 is a Friday
+        Recurrence recurrence = Recurrence.fromFrequency("weekdays", "09:00", null);
+
+        assertEquals(at(10, 27, 9, 0), recurrence.nextAfter(at(10, 24, 10, 0), ZONE));
+        assertFalse(recurrence.isScheduledOn(LocalDate.of(2025, 10, 25)));
+        assertTrue(recurrence.isScheduledOn(LocalDate.of(2025, 10, 27)));
+    }
+
+    @Test
+    public void springForwardGapShiftsForward() {
+        // Berlin skips 02:00-03:00 on 2025-03-30
+        Recurrence recurrence = Recurrence.daily(LocalTime.of(2, 30));
+
+        assertEquals(at(3, 30, 3, 30), recurrence.nextAfter(at(3, 29, 12, 0), ZONE));
+        assertEquals(at(3, 31, 2, 30), recurrence.nextAfter(at(3, 30, 12, 0), ZONE));
+    }
+}
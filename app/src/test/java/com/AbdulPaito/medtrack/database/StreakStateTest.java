@@ -0,0 +1,100 @@
+package com.AbdulPaito.medtrack.database;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Day-by-day folding of the streak row: late corrections, gaps and best runs.
+ */
+public class StreakStateTest {
+
+    private static final long DAY = 20_000; // any epoch day
+
+    @Test
+    public void emptyStateHasNoStreak() {
+        StreakState state = new StreakState();
+        assertEquals(StreakState.EMPTY, state.lastDay);
+        assertEquals(0, state.currentStreak(DAY));
+        assertEquals(0, state.bestRun);
+    }
+
+    @Test
+    public void consecutiveCleanDaysExtendTheRun() {
+        StreakState state = new StreakState();
+        for (int i = 0; i < 3; i++) {
+            state.apply(DAY + i, 2, 0);
+        }
+        assertEquals(3, state.currentStreak(DAY + 2));
+        assertEquals(3, state.bestRun);
+    }
+
+    @Test
+    public void lateMissedReplacesToday() {
+        StreakState state = new StreakState();
+        state.apply(DAY, 1, 0);
+        state.apply(DAY + 1, 1, 0);
+        assertEquals(2, state.currentStreak(DAY + 1));
+
+        // Same day again with the updated counts: a missed dose breaks it...
+        state.apply(DAY + 1, 1, 1);
+        assertEquals(0, state.currentStreak(DAY + 1));
+        assertEquals(1, state.bestRun);
+
+        // ...and the day before is kept, so tomorrow starts a new run
+        state.apply(DAY + 2, 1, 0);
+        assertEquals(1, state.currentStreak(DAY + 2));
+    }
+
+    @Test
+    public void gapRestartsTheRun() {
+        StreakState state = new StreakState();
+        state.apply(DAY, 1, 0);
+        state.apply(DAY + 1, 1, 0);
+        state.apply(DAY + 3, 1, 0); // nothing logged on DAY + 2
+        assertEquals(1, state.currentStreak(DAY + 3));
+        assertEquals(2, state.bestRun);
+    }
+
+    @Test
+    public void runEndsOnceADayPassesWithoutDoses() {
+        StreakState state = new StreakState();
+        state.apply(DAY, 1, 0);
+        assertEquals(1, state.currentStreak(DAY + 1)); // today's doses still pending
+        assertEquals(0, state.currentStreak(DAY + 2));
+    }
+
+    @Test
+    public void bestRunSurvivesLaterRuns() {
+        StreakState state = new StreakState();
+        for (int i = 0; i < 4; i++) {
+            state.apply(DAY + i, 1, 0);
+        }
+        state.apply(DAY + 4, 0, 1);
+        state.apply(DAY + 5, 1, 0);
+        state.apply(DAY + 6, 1, 0);
+        assertEquals(2, state.currentStreak(DAY + 6));
+        assertEquals(4, state.bestRun);
+    }
+
+    @Test
+    public void epochDayZeroIsARealDay() {
+        // Legacy rows with taken_at 0 land on day 0, or -1 west of UTC
+        StreakState state = new StreakState();
+        state.apply(-1, 1, 0);
+        state.apply(0, 1, 0);
+        state.apply(1, 1, 0);
+        assertEquals(1, state.lastDay);
+        assertEquals(3, state.currentStreak(1));
+        assertEquals(3, state.bestRun);
+    }
+
+    @Test
+    public void firstDayAfterEmptyStartsAtOne() {
+        StreakState state = new StreakState();
+        state.apply(0, 1, 0);
+        assertEquals(0, state.lastDay);
+        assertEquals(0, state.runBefore);
+        assertEquals(1, state.currentStreak(0));
+    }
+}